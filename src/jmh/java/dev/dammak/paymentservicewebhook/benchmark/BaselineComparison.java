@@ -0,0 +1,102 @@
+package dev.dammak.paymentservicewebhook.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result file with the committed baseline and exits non-zero when a
+ * benchmark got slower, or allocates more per operation ({@code gc.alloc.rate.norm}), by
+ * more than the tolerance. Benchmarks missing from the baseline are reported, not failed;
+ * a missing baseline or result file fails the comparison.
+ *
+ * Usage: {@code BaselineComparison <baseline.json> <result.json> <tolerance-percent>}
+ */
+public final class BaselineComparison {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <result.json> <tolerance-percent>");
+            System.exit(2);
+        }
+
+        File baselineFile = new File(args[0]);
+        File resultFile = new File(args[1]);
+        if (!baselineFile.isFile()) {
+            // Passing without a baseline would let every regression through unnoticed
+            System.err.println("No baseline at " + baselineFile + "; record one on the reference machine"
+                    + " with -Djmh.result=" + baselineFile + " and commit it");
+            System.exit(2);
+        }
+        if (!resultFile.isFile()) {
+            System.err.println("No benchmark results at " + resultFile + "; run the benchmarks first");
+            System.exit(2);
+        }
+
+        Map<String, JsonNode> baseline = read(baselineFile);
+        Map<String, JsonNode> current = read(resultFile);
+        double tolerance = Double.parseDouble(args[2]) / 100;
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("NEW   %s%n", entry.getKey());
+                continue;
+            }
+
+            JsonNode after = entry.getValue();
+            boolean higherIsBetter = "thrpt".equals(after.path("mode").asText());
+            regressions += compare(entry.getKey(), "score",
+                    before.path("primaryMetric"), after.path("primaryMetric"), higherIsBetter, tolerance);
+            regressions += compare(entry.getKey(), ALLOCATION,
+                    before.path("secondaryMetrics").path(ALLOCATION),
+                    after.path("secondaryMetrics").path(ALLOCATION), false, tolerance);
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d regression(s) beyond %.0f%% of the baseline%n", regressions, tolerance * 100);
+            System.exit(1);
+        }
+    }
+
+    private static int compare(String benchmark, String metric, JsonNode before, JsonNode after,
+                               boolean higherIsBetter, double tolerance) {
+        if (before.isMissingNode() || after.isMissingNode()) {
+            return 0;
+        }
+
+        double baseline = before.path("score").asDouble();
+        double score = after.path("score").asDouble();
+        double change = baseline == 0 ? 0 : (score - baseline) / baseline;
+        boolean regressed = higherIsBetter ? change < -tolerance : change > tolerance;
+
+        System.out.printf("%-5s %s [%s] %.2f -> %.2f %s (%+.1f%%)%n",
+                regressed ? "WORSE" : "OK", benchmark, metric, baseline, score,
+                after.path("scoreUnit").asText(), change * 100);
+        return regressed ? 1 : 0;
+    }
+
+    /**
+     * Results keyed by benchmark name plus parameters, e.g. {@code ...routeEvent{endpointCount=100}}.
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            Map<String, String> params = new TreeMap<>();
+            result.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            results.put(result.path("benchmark").asText() + (params.isEmpty() ? "" : params.toString()), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,131 @@
+package dev.dammak.paymentservicewebhook.benchmark;
+
+import dev.dammak.paymentservicewebhook.entity.EventSubscription;
+import dev.dammak.paymentservicewebhook.entity.Merchant;
+import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import dev.dammak.paymentservicewebhook.entity.WebhookEvent;
+import dev.dammak.paymentservicewebhook.service.SignatureService;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Fixtures shared by the benchmarks: a realistic provider payload, endpoints with
+ * subscriptions, and services wired the way Spring would wire them.
+ */
+final class BenchmarkData {
+
+    static final String SECRET = "whsec_5f1b0c7e9a2d4c8b8e3f6a1d2c4b7e90";
+
+    static final List<String> EVENT_TYPES = List.of(
+            "payment.created", "payment.succeeded", "payment.failed", "refund.created",
+            "refund.succeeded", "dispute.opened", "dispute.closed", "payout.paid");
+
+    private BenchmarkData() {
+    }
+
+    static SignatureService signatureService() {
+        SignatureService signatureService = new SignatureService();
+        setField(signatureService, "signatureAlgorithm", "HmacSHA256");
+        setField(signatureService, "macCacheSize", 64);
+        return signatureService;
+    }
+
+    /**
+     * Roughly the shape and size (~1 KB) of a card payment notification.
+     */
+    static Map<String, Object> payload() {
+        Map<String, Object> card = new LinkedHashMap<>();
+        card.put("brand", "visa");
+        card.put("last4", "4242");
+        card.put("exp_month", 12);
+        card.put("exp_year", 2028);
+        card.put("country", "NG");
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("order_id", "ord_8f2c1d9e");
+        metadata.put("customer_reference", "cus_71ab0e4f");
+        metadata.put("channel", "web");
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", "pay_3b9f7c2a6e1d4f08");
+        data.put("amount", 1_250_000);
+        data.put("currency", "NGN");
+        data.put("status", "succeeded");
+        data.put("description", "Order ord_8f2c1d9e for customer cus_71ab0e4f");
+        data.put("card", card);
+        data.put("metadata", metadata);
+        data.put("fees", List.of(Map.of("type", "processing", "amount", 18_750),
+                Map.of("type", "vat", "amount", 1_406)));
+        data.put("created_at", "2026-10-17T09:15:27Z");
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", "payment.succeeded");
+        payload.put("livemode", true);
+        payload.put("api_version", "2026-09-01");
+        payload.put("data", data);
+        return payload;
+    }
+
+    static WebhookEvent event() {
+        WebhookEvent event = WebhookEvent.builder()
+                .eventType("payment.succeeded")
+                .provider("paystack")
+                .payload(payload())
+                .idempotencyKey("evt_3b9f7c2a6e1d4f08")
+                .status(WebhookEvent.EventStatus.PROCESSING)
+                .sourceIp("52.31.139.75")
+                .metadata(Map.of(WebhookEvent.METADATA_RECEIVED_AT, System.currentTimeMillis()))
+                .build();
+        event.setId(UUID.randomUUID());
+        event.setCreatedAt(LocalDateTime.now());
+        event.setUpdatedAt(LocalDateTime.now());
+        event.setVersion(0L);
+        return event;
+    }
+
+    /**
+     * Active endpoints, each subscribed to three of the {@link #EVENT_TYPES}.
+     */
+    static List<WebhookEndpoint> endpoints(int count) {
+        List<WebhookEndpoint> endpoints = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Merchant merchant = new Merchant();
+            merchant.setId(UUID.randomUUID());
+
+            WebhookEndpoint endpoint = new WebhookEndpoint();
+            endpoint.setId(UUID.randomUUID());
+            endpoint.setMerchant(merchant);
+            endpoint.setUrl("https://merchant-" + i + ".example.com/webhooks");
+            endpoint.setSecret(SECRET);
+            endpoint.setHeaders(Map.of("X-Merchant-Ref", "m-" + i, "Authorization", "Bearer token-" + i));
+
+            List<EventSubscription> subscriptions = new ArrayList<>();
+            for (int j = 0; j < 3; j++) {
+                EventSubscription subscription = new EventSubscription();
+                subscription.setWebhookEndpoint(endpoint);
+                subscription.setEventType(EVENT_TYPES.get((i + j) % EVENT_TYPES.size()));
+                subscription.setIsActive(true);
+                subscriptions.add(subscription);
+            }
+            endpoint.setSubscriptions(subscriptions);
+            endpoints.add(endpoint);
+        }
+        return endpoints;
+    }
+
+    private static void setField(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + name + " on " + target.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package dev.dammak.paymentservicewebhook.benchmark;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import dev.dammak.paymentservicewebhook.repository.WebhookEndpointRepository;
+import dev.dammak.paymentservicewebhook.routing.EndpointDescriptor;
+import dev.dammak.paymentservicewebhook.routing.EndpointRoutingIndex;
+import dev.dammak.paymentservicewebhook.service.DeliveryHeaders;
+import dev.dammak.paymentservicewebhook.service.PreparedPayload;
+import dev.dammak.paymentservicewebhook.service.SignatureService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event routing lookup and the per-attempt work done before a request is handed to the
+ * transport: resolving the endpoint, signing the shared body and building the headers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class DeliveryPathBenchmark {
+
+    @Param({"100", "10000"})
+    public int endpointCount;
+
+    private EndpointRoutingIndex routingIndex;
+    private SignatureService signatureService;
+    private PreparedPayload payload;
+    private EndpointDescriptor endpoint;
+    private UUID endpointId;
+
+    @Setup
+    public void setUp() {
+        List<WebhookEndpoint> endpoints = BenchmarkData.endpoints(endpointCount);
+        routingIndex = new EndpointRoutingIndex(repositoryOf(endpoints), new SimpleMeterRegistry());
+        routingIndex.rebuild();
+
+        signatureService = BenchmarkData.signatureService();
+        payload = PreparedPayload.of(BenchmarkData.event(), signatureService.canonicalize(BenchmarkData.payload()));
+        endpointId = endpoints.get(endpointCount / 2).getId();
+        endpoint = routingIndex.findEndpoint(endpointId).orElseThrow();
+    }
+
+    @Benchmark
+    public List<EndpointDescriptor> routeEvent() {
+        return routingIndex.lookup("payment.succeeded");
+    }
+
+    @Benchmark
+    public Optional<EndpointDescriptor> resolveEndpoint() {
+        return routingIndex.findEndpoint(endpointId);
+    }
+
+    @Benchmark
+    public Map<String, String> createHeaders() {
+        return DeliveryHeaders.create(payload, endpoint, signatureService.sign(payload.getBody(), endpoint.getSecret()));
+    }
+
+    /**
+     * Only the two queries the routing index issues are implemented; anything else fails loudly.
+     */
+    private static WebhookEndpointRepository repositoryOf(List<WebhookEndpoint> endpoints) {
+        return (WebhookEndpointRepository) Proxy.newProxyInstance(
+                WebhookEndpointRepository.class.getClassLoader(),
+                new Class<?>[]{WebhookEndpointRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findAllActiveWithSubscriptions" -> endpoints;
+                    case "findByIdWithSubscriptions" -> endpoints.stream()
+                            .filter(endpoint -> endpoint.getId().equals(args[0]))
+                            .findFirst();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
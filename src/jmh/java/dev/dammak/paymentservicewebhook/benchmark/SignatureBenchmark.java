@@ -0,0 +1,63 @@
+package dev.dammak.paymentservicewebhook.benchmark;
+
+import dev.dammak.paymentservicewebhook.service.SignatureService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HMAC signing and verification, and canonical payload serialisation: the per-request CPU
+ * cost of ingestion (verify) and of every delivery attempt (sign).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SignatureBenchmark {
+
+    private SignatureService signatureService;
+    private Map<String, Object> payload;
+    private byte[] body;
+    private byte[] signatureBytes;
+
+    @Setup
+    public void setUp() {
+        signatureService = BenchmarkData.signatureService();
+        payload = BenchmarkData.payload();
+        body = signatureService.canonicalize(payload);
+        signatureBytes = signatureService.sign(body, BenchmarkData.SECRET).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public byte[] canonicalize() {
+        return signatureService.canonicalize(payload);
+    }
+
+    @Benchmark
+    public String sign() {
+        return signatureService.sign(body, BenchmarkData.SECRET);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return signatureService.verifySignature(body, signatureBytes, BenchmarkData.SECRET);
+    }
+
+    @Benchmark
+    public String canonicalizeAndSign() {
+        return signatureService.generateSignature(payload, BenchmarkData.SECRET);
+    }
+}
@@ -0,0 +1,60 @@
+package dev.dammak.paymentservicewebhook.benchmark;
+
+import dev.dammak.paymentservicewebhook.dto.WebhookEndpointDTO;
+import dev.dammak.paymentservicewebhook.dto.WebhookEventDTO;
+import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import dev.dammak.paymentservicewebhook.entity.WebhookEvent;
+import dev.dammak.paymentservicewebhook.mapper.WebhookMapper;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MapStruct conversions used by the ingestion response and the endpoint API.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class WebhookMapperBenchmark {
+
+    private WebhookMapper mapper;
+    private WebhookEvent event;
+    private WebhookEndpoint endpoint;
+    private WebhookEndpointDTO endpointDTO;
+
+    @Setup
+    public void setUp() {
+        mapper = Mappers.getMapper(WebhookMapper.class);
+        event = BenchmarkData.event();
+        endpoint = BenchmarkData.endpoints(1).get(0);
+        endpointDTO = mapper.toEndpointDTO(endpoint);
+    }
+
+    @Benchmark
+    public WebhookEventDTO eventToDTO() {
+        return mapper.toEventDTO(event);
+    }
+
+    @Benchmark
+    public WebhookEndpointDTO endpointToDTO() {
+        return mapper.toEndpointDTO(endpoint);
+    }
+
+    @Benchmark
+    public WebhookEndpoint dtoToEndpoint() {
+        return mapper.toEndpointEntity(endpointDTO);
+    }
+}
@@ -0,0 +1,92 @@
+package dev.dammak.paymentservicewebhook.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every sample (in ms); a load test run records at most a few million, and exact
+ * percentiles are worth the memory here.
+ */
+class LatencyRecorder {
+
+    private static final long[] BUCKETS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 30_000, 60_000};
+
+    private long[] samples = new long[1 << 16];
+    private int count;
+
+    synchronized void record(long latencyMs) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = Math.max(0, latencyMs);
+    }
+
+    synchronized Snapshot snapshot() {
+        return new Snapshot(Arrays.copyOf(samples, count));
+    }
+
+    static final class Snapshot {
+
+        private final long[] sorted;
+
+        private Snapshot(long[] samples) {
+            this.sorted = samples;
+            Arrays.sort(this.sorted);
+        }
+
+        int count() {
+            return sorted.length;
+        }
+
+        long percentile(double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.min(sorted.length - 1, Math.max(0, index))];
+        }
+
+        long max() {
+            return sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+        }
+
+        String summary() {
+            return String.format("n=%d p50=%dms p95=%dms p99=%dms p99.9=%dms max=%dms",
+                    count(), percentile(50), percentile(95), percentile(99), percentile(99.9), max());
+        }
+
+        /**
+         * Cumulative distribution over fixed millisecond buckets, one line per non-empty bucket.
+         */
+        String histogram() {
+            StringBuilder out = new StringBuilder();
+            int from = 0;
+            for (long bucket : BUCKETS_MS) {
+                int to = upperIndex(bucket);
+                appendBucket(out, "<= " + bucket + "ms", to - from, to);
+                from = to;
+            }
+            appendBucket(out, "> " + BUCKETS_MS[BUCKETS_MS.length - 1] + "ms", sorted.length - from, sorted.length);
+            return out.toString();
+        }
+
+        private void appendBucket(StringBuilder out, String label, int inBucket, int cumulative) {
+            if (inBucket == 0) {
+                return;
+            }
+            double share = 100.0 * inBucket / sorted.length;
+            out.append(String.format("  %-10s %8d %6.2f%% %7.2f%% %s%n", label, inBucket, share,
+                    100.0 * cumulative / sorted.length, "#".repeat((int) Math.round(share / 2))));
+        }
+
+        private int upperIndex(long bucket) {
+            int index = Arrays.binarySearch(sorted, bucket + 1);
+            if (index < 0) {
+                return -index - 1;
+            }
+            while (index > 0 && sorted[index - 1] == bucket + 1) {
+                index--;
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package dev.dammak.paymentservicewebhook.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process merchant endpoints on one local HTTP server, one path per merchant
+ * ({@code /merchants/{n}}). Every merchant answers with the configured {@link Behaviour}:
+ * a base latency plus jitter, a share of 500 responses, and a share of slow-loris
+ * responses that send headers and then dribble the body out one byte at a time.
+ *
+ * Every request is counted; the first successful delivery of each (load id, merchant)
+ * records the end-to-end latency from the load id's intended send time.
+ */
+class StubMerchantFleet implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final byte[] OK_BODY = "{\"received\":true}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Behaviour behaviour;
+    private final LatencyRecorder endToEndLatency;
+    private final Map<String, Boolean> delivered = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder slowLoris = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final AtomicLong lastDeliveryAt = new AtomicLong();
+
+    StubMerchantFleet(int merchants, Behaviour behaviour, LatencyRecorder endToEndLatency) throws IOException {
+        this.behaviour = behaviour;
+        this.endToEndLatency = endToEndLatency;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newCachedThreadPool();
+        for (int merchant = 0; merchant < merchants; merchant++) {
+            int id = merchant;
+            server.createContext("/merchants/" + merchant, exchange -> handle(id, exchange));
+        }
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String url(int merchant) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/merchants/" + merchant;
+    }
+
+    long requests() {
+        return requests.sum();
+    }
+
+    long failures() {
+        return failures.sum();
+    }
+
+    long slowLorisResponses() {
+        return slowLoris.sum();
+    }
+
+    long duplicates() {
+        return duplicates.sum();
+    }
+
+    long deliveries() {
+        return delivered.size();
+    }
+
+    long lastDeliveryAt() {
+        return lastDeliveryAt.get();
+    }
+
+    private void handle(int merchant, HttpExchange exchange) throws IOException {
+        long receivedAt = System.currentTimeMillis();
+        requests.increment();
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            JsonNode payload = MAPPER.readTree(body);
+            sleep(behaviour.latencyMs() + (behaviour.jitterMs() > 0
+                    ? ThreadLocalRandom.current().nextLong(behaviour.jitterMs() + 1) : 0));
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < behaviour.errorRate()) {
+                failures.increment();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            if (roll < behaviour.errorRate() + behaviour.slowLorisRate()) {
+                slowLoris.increment();
+                dribble(exchange);
+                // Only reached if the client waited for the whole body
+                recordDelivery(merchant, payload, receivedAt);
+                return;
+            }
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, OK_BODY.length);
+            exchange.getResponseBody().write(OK_BODY);
+            recordDelivery(merchant, payload, receivedAt);
+        }
+    }
+
+    /**
+     * Sends the headers straight away and then one byte per interval, so the connection stays
+     * busy for {@code slowLorisMs} before the request completes (or the client gives up).
+     */
+    private void dribble(HttpExchange exchange) throws IOException {
+        int bytes = 16;
+        exchange.sendResponseHeaders(200, bytes);
+        OutputStream out = exchange.getResponseBody();
+        long interval = Math.max(1, behaviour.slowLorisMs() / bytes);
+        for (int i = 0; i < bytes; i++) {
+            out.write(' ');
+            out.flush();
+            sleep(interval);
+        }
+    }
+
+    private void recordDelivery(int merchant, JsonNode payload, long receivedAt) {
+        String loadId = payload.path("load_id").asText(null);
+        if (loadId == null) {
+            return;
+        }
+        if (delivered.putIfAbsent(loadId + "@" + merchant, Boolean.TRUE) != null) {
+            duplicates.increment();
+            return;
+        }
+        endToEndLatency.record(receivedAt - payload.path("sent_at_ms").asLong(receivedAt));
+        lastDeliveryAt.accumulateAndGet(receivedAt, Math::max);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        server.stop(0);
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param errorRate     share of requests answered with HTTP 500
+     * @param slowLorisRate share of requests answered with a slowly dribbled body
+     */
+    record Behaviour(long latencyMs, long jitterMs, double errorRate, double slowLorisRate, long slowLorisMs) {
+    }
+}
@@ -0,0 +1,260 @@
+package dev.dammak.paymentservicewebhook.loadtest;
+
+import dev.dammak.paymentservicewebhook.PaymentServiceWebhookApplication;
+import dev.dammak.paymentservicewebhook.entity.EventSubscription;
+import dev.dammak.paymentservicewebhook.entity.Merchant;
+import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import dev.dammak.paymentservicewebhook.repository.MerchantRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookEndpointRepository;
+import dev.dammak.paymentservicewebhook.routing.EndpointRoutingIndex;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.KafkaContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives ProviderWebhookController at a fixed arrival rate against PostgreSQL, Kafka and Redis
+ * in Testcontainers, delivering to a fleet of in-process stub merchants, and reports ingest
+ * and delivery throughput, latency distributions and retry amplification.
+ *
+ * Run with {@code ./mvnw -Ploadtest test}; every knob is a system property, e.g.
+ * {@code -Dloadtest.rate=500 -Dloadtest.error-rate=0.05 -Dloadtest.slow-loris-rate=0.01}.
+ * Requests are sent on schedule whether or not earlier ones have returned, and latency is
+ * measured from the scheduled send time, so a stalled server shows up in the percentiles
+ * instead of silently lowering the offered load.
+ */
+@SpringBootTest(classes = PaymentServiceWebhookApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class WebhookLoadTest {
+
+    private static final int RATE = Integer.getInteger("loadtest.rate", 200);
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("loadtest.duration-seconds", 60));
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(Integer.getInteger("loadtest.drain-seconds", 120));
+    private static final int MERCHANTS = Integer.getInteger("loadtest.merchants", 20);
+    // Endpoints subscribed to each event type, i.e. deliveries per ingested event
+    private static final int FANOUT = Integer.getInteger("loadtest.fanout", 2);
+    private static final String INGESTION_MODE = System.getProperty("loadtest.ingestion-mode", "sync");
+    // Fail the run when ingest p99 exceeds this (ms); 0 only reports
+    private static final long MAX_INGEST_P99_MS = Long.getLong("loadtest.max-ingest-p99-ms", 0);
+
+    private static final StubMerchantFleet.Behaviour BEHAVIOUR = new StubMerchantFleet.Behaviour(
+            Long.getLong("loadtest.latency-ms", 20),
+            Long.getLong("loadtest.jitter-ms", 30),
+            Double.parseDouble(System.getProperty("loadtest.error-rate", "0.02")),
+            Double.parseDouble(System.getProperty("loadtest.slow-loris-rate", "0.0")),
+            Long.getLong("loadtest.slow-loris-ms", 10_000));
+
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+    private static final KafkaContainer KAFKA = new KafkaContainer(DockerImageName.parse("confluentinc/cp-kafka:7.5.3"));
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static final LatencyRecorder INGEST_LATENCY = new LatencyRecorder();
+    private static final LatencyRecorder DELIVERY_LATENCY = new LatencyRecorder();
+    private static final StubMerchantFleet FLEET;
+
+    static {
+        POSTGRES.start();
+        KAFKA.start();
+        REDIS.start();
+        try {
+            FLEET = new StubMerchantFleet(MERCHANTS, BEHAVIOUR, DELIVERY_LATENCY);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to start stub merchants", e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void containers(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("spring.flyway.enabled", () -> "true");
+        registry.add("spring.kafka.bootstrap-servers", KAFKA::getBootstrapServers);
+        registry.add("spring.data.redis.host", REDIS::getHost);
+        registry.add("spring.data.redis.port", () -> REDIS.getMappedPort(6379));
+        registry.add("webhook.ingestion.mode", () -> INGESTION_MODE);
+        registry.add("webhook.ingestion.consumer.enabled", () -> "true");
+        registry.add("webhook.delivery.consumer.enabled", () -> "true");
+        registry.add("webhook.delivery.journal.write-behind", () -> "true");
+        registry.add("webhook.partitioning.enabled", () -> "true");
+        registry.add("logging.level.dev.dammak.paymentservicewebhook", () -> "WARN");
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MerchantRepository merchantRepository;
+
+    @Autowired
+    private WebhookEndpointRepository endpointRepository;
+
+    @Autowired
+    private EndpointRoutingIndex routingIndex;
+
+    @AfterAll
+    static void stopFleet() throws InterruptedException {
+        FLEET.close();
+    }
+
+    @Test
+    void ingestAndDeliverAtTargetRate() throws Exception {
+        // Given
+        List<String> eventTypes = seedMerchants();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        URI ingestUri = URI.create("http://localhost:" + port + "/api/v1/webhooks/providers/stripe/events");
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        LongAdder accepted = new LongAdder();
+
+        // When
+        long intervalNanos = 1_000_000_000L / RATE;
+        long total = RATE * DURATION.toSeconds();
+        long start = System.nanoTime();
+        long startMillis = System.currentTimeMillis();
+        for (long i = 0; i < total; i++) {
+            long scheduledAt = start + i * intervalNanos;
+            LockSupport.parkNanos(scheduledAt - System.nanoTime());
+            long scheduledAtMillis = startMillis + (scheduledAt - start) / 1_000_000;
+
+            String loadId = UUID.randomUUID().toString();
+            String body = "{\"type\":\"" + eventTypes.get((int) (i % eventTypes.size())) + "\","
+                    + "\"load_id\":\"" + loadId + "\",\"sent_at_ms\":" + scheduledAtMillis + ","
+                    + "\"data\":{\"id\":\"pay_" + i + "\",\"amount\":125000,\"currency\":\"NGN\"}}";
+            HttpRequest request = HttpRequest.newBuilder(ingestUri)
+                    .header("Content-Type", "application/json")
+                    .header("X-Idempotency-Key", loadId)
+                    .timeout(Duration.ofSeconds(30))
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        INGEST_LATENCY.record(System.currentTimeMillis() - scheduledAtMillis);
+                        int status = error != null ? -1 : response.statusCode();
+                        statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+                        if (status == 200 || status == 202) {
+                            accepted.increment();
+                        }
+                    });
+        }
+        double sendSeconds = (System.nanoTime() - start) / 1e9;
+
+        long expectedDeliveries = drain(accepted, total);
+        double deliverySeconds = Math.max(1, FLEET.lastDeliveryAt() - startMillis) / 1000.0;
+
+        // Then
+        report(statuses, accepted.sum(), sendSeconds, expectedDeliveries, deliverySeconds);
+        assertThat(accepted.sum()).isPositive();
+        if (MAX_INGEST_P99_MS > 0) {
+            assertThat(INGEST_LATENCY.snapshot().percentile(99)).isLessThanOrEqualTo(MAX_INGEST_P99_MS);
+        }
+    }
+
+    /**
+     * Waits for the outstanding ingest responses and then for every expected delivery, up to
+     * the drain timeout. Deliveries whose retries are scheduled beyond it stay undelivered.
+     */
+    private long drain(LongAdder accepted, long total) throws InterruptedException {
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (INGEST_LATENCY.snapshot().count() < total && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        long expected = accepted.sum() * FANOUT;
+        while (FLEET.deliveries() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(250);
+        }
+        return expected;
+    }
+
+    /**
+     * One endpoint per merchant; endpoints are spread over event types so that each type is
+     * subscribed by {@link #FANOUT} of them.
+     */
+    private List<String> seedMerchants() {
+        int typeCount = Math.max(1, MERCHANTS / FANOUT);
+        List<String> eventTypes = new ArrayList<>(typeCount);
+        for (int type = 0; type < typeCount; type++) {
+            eventTypes.add("load.event." + type);
+        }
+
+        for (int merchant = 0; merchant < MERCHANTS; merchant++) {
+            Merchant owner = new Merchant();
+            owner.setName("Load merchant " + merchant);
+            owner.setApiKey("load-api-key-" + merchant + "-" + UUID.randomUUID());
+            owner.setSecretKey("load-secret-key");
+            owner.setEmail("merchant" + merchant + "@load.test");
+            owner = merchantRepository.save(owner);
+
+            WebhookEndpoint endpoint = new WebhookEndpoint();
+            endpoint.setMerchant(owner);
+            endpoint.setUrl(FLEET.url(merchant));
+            endpoint.setSecret("whsec_load_" + merchant);
+            endpoint.setRetryEnabled(true);
+            endpoint.setMaxRetries(3);
+            endpoint.setTimeoutSeconds(5);
+
+            EventSubscription subscription = new EventSubscription();
+            subscription.setWebhookEndpoint(endpoint);
+            subscription.setEventType(eventTypes.get(merchant % typeCount));
+            subscription.setIsActive(true);
+            endpoint.setSubscriptions(new ArrayList<>(List.of(subscription)));
+            endpointRepository.save(endpoint);
+        }
+
+        routingIndex.rebuild();
+        return eventTypes;
+    }
+
+    private void report(Map<Integer, LongAdder> statuses, long accepted, double sendSeconds,
+                        long expectedDeliveries, double deliverySeconds) {
+        LatencyRecorder.Snapshot ingest = INGEST_LATENCY.snapshot();
+        LatencyRecorder.Snapshot delivery = DELIVERY_LATENCY.snapshot();
+        long delivered = FLEET.deliveries();
+
+        StringBuilder out = new StringBuilder("\n==== Webhook load test ====\n");
+        out.append(String.format("offered      %d events/s for %ds, %d merchants, fanout %d, ingestion %s%n",
+                RATE, DURATION.toSeconds(), MERCHANTS, FANOUT, INGESTION_MODE));
+        out.append(String.format("stubs        %s%n", BEHAVIOUR));
+        out.append(String.format("ingested     %d accepted, %.1f events/s, statuses %s%n",
+                accepted, accepted / sendSeconds, statuses));
+        out.append(String.format("ingest       %s%n%s", ingest.summary(), ingest.histogram()));
+        out.append(String.format("delivered    %d of %d (%.1f%%), %.1f deliveries/s%n",
+                delivered, expectedDeliveries, expectedDeliveries == 0 ? 0 : 100.0 * delivered / expectedDeliveries,
+                delivered / deliverySeconds));
+        out.append(String.format("end-to-end   %s%n%s", delivery.summary(), delivery.histogram()));
+        out.append(String.format("stub calls   %d requests, %d HTTP 500, %d slow-loris, %d duplicate deliveries%n",
+                FLEET.requests(), FLEET.failures(), FLEET.slowLorisResponses(), FLEET.duplicates()));
+        out.append(String.format("retry amplification %.3f requests per expected delivery%n",
+                expectedDeliveries == 0 ? 0 : (double) FLEET.requests() / expectedDeliveries));
+        System.out.println(out);
+    }
+}
@@ -1,5 +1,8 @@
 package dev.dammak.paymentservicewebhook.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
@@ -8,11 +11,14 @@ import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.retry.annotation.EnableRetry;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
 /**
  * Created By damola.adekoya on 01/09/2025
@@ -28,10 +34,20 @@ import java.util.concurrent.ThreadPoolExecutor;
 @EnableAsync
 @EnableScheduling
 @EnableRetry
+@Slf4j
 public class AsyncConfig {
     @Value("${webhook.delivery.timeout:30000}")
     private int deliveryTimeout;
 
+    @Value("${webhook.delivery.executor.mode:pool}")
+    private String executorMode;
+
+    @Value("${webhook.delivery.executor.max-concurrency:1000}")
+    private int maxConcurrency;
+
+    @Value("${webhook.delivery.executor.acquire-timeout:30000}")
+    private long acquireTimeout;
+
     @Bean
     public RestTemplate restTemplate(RestTemplateBuilder builder) {
         return builder.connectTimeout(Duration.ofMillis(deliveryTimeout)).readTimeout(Duration.ofMillis(deliveryTimeout))
@@ -45,7 +61,11 @@ public class AsyncConfig {
     }
 
     @Bean(name = "webhookExecutor")
-    public Executor webhookExecutor() {
+    public Executor webhookExecutor(MeterRegistry meterRegistry) {
+        if ("virtual".equalsIgnoreCase(executorMode)) {
+            return new ConcurrencyLimitedExecutor(threadPerTaskExecutor(), maxConcurrency, acquireTimeout, meterRegistry);
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(10);
         executor.setMaxPoolSize(50);
@@ -55,6 +75,31 @@ public class AsyncConfig {
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(60);
         executor.initialize();
+
+        Gauge.builder("webhook.delivery.executor.queue", executor, pool -> pool.getThreadPoolExecutor().getQueue().size())
+                .description("Delivery tasks waiting for a webhook executor thread")
+                .register(meterRegistry);
+        Gauge.builder("webhook.delivery.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Webhook executor threads currently running a task")
+                .register(meterRegistry);
         return executor;
     }
+
+    /**
+     * Uses a virtual thread per task when the runtime supports it (Java 21+). The build
+     * still targets Java 17, so the factory is resolved reflectively and falls back to
+     * an unbounded platform thread per task; ConcurrencyLimitedExecutor caps concurrency either way.
+     */
+    private ExecutorService threadPerTaskExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            log.info("Webhook deliveries will run on virtual threads (max concurrency: {})", maxConcurrency);
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not available on this runtime, using a platform thread per delivery");
+            return Executors.newCachedThreadPool(new CustomizableThreadFactory("Webhook-"));
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package dev.dammak.paymentservicewebhook.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every submitted task on its own thread, bounded by a semaphore instead of a
+ * fixed pool and queue. Submitters block until a permit is free, so a burst of slow
+ * merchant endpoints applies back-pressure to the caller rather than running the
+ * HTTP call on the caller's thread.
+ */
+@Slf4j
+public class ConcurrencyLimitedExecutor implements Executor, DisposableBean {
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer permitWait;
+
+    public ConcurrencyLimitedExecutor(ExecutorService delegate,
+                                      int maxConcurrency,
+                                      long acquireTimeoutMs,
+                                      MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrency);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+
+        Gauge.builder("webhook.delivery.executor.inflight", inFlight, AtomicInteger::get)
+                .description("Deliveries currently executing")
+                .register(meterRegistry);
+        Gauge.builder("webhook.delivery.executor.permits.available", permits, Semaphore::availablePermits)
+                .description("Delivery slots still available before submitters block")
+                .register(meterRegistry);
+        this.permitWait = Timer.builder("webhook.delivery.executor.permit.wait")
+                .description("Time submitters spent waiting for a delivery slot")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new TaskRejectedException("No delivery slot available within " + acquireTimeoutMs + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TaskRejectedException("Interrupted while waiting for a delivery slot", e);
+        } finally {
+            permitWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            delegate.execute(() -> {
+                inFlight.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    inFlight.decrementAndGet();
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw new TaskRejectedException("Delivery executor rejected task", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        delegate.shutdown();
+        if (!delegate.awaitTermination(60, TimeUnit.SECONDS)) {
+            log.warn("Delivery executor did not terminate within 60 seconds, {} deliveries still in flight",
+                    inFlight.get());
+            delegate.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package dev.dammak.paymentservicewebhook.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+/**
+ * Populates {@code createdAt}/{@code updatedAt} on every entity. created_at is the partition
+ * key of webhook_events and webhook_deliveries, so it must be set by the application rather
+ * than written as null.
+ */
+
+@Configuration
+@EnableJpaAuditing
+public class JpaAuditingConfig {
+}
@@ -1,9 +1,26 @@
 package dev.dammak.paymentservicewebhook.config;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.util.backoff.ExponentialBackOff;
+import org.springframework.util.backoff.FixedBackOff;
 
 /**
  * Created By damola.adekoya on 01/09/2025
@@ -19,6 +36,116 @@ import org.springframework.kafka.config.TopicBuilder;
 @EnableKafka
 public class KafkaConfig {
 
+    public static final String DLT_SUFFIX = "-dlt";
+
+    // Stays well inside max.poll.interval.ms, since the container thread sleeps between attempts
+    private static final long MAX_RETRY_INTERVAL_MS = 60_000;
+
+    @Value("${webhook.delivery.consumer.concurrency:3}")
+    private int deliveryConsumerConcurrency;
+
+    @Value("${webhook.delivery.consumer.retry-backoff:5000}")
+    private long deliveryConsumerRetryBackoff;
+
+    @Value("${webhook.delivery.consumer.max-retries:8}")
+    private int deliveryConsumerMaxRetries;
+
+    @Value("${webhook.ingestion.consumer.concurrency:3}")
+    private int ingestionConsumerConcurrency;
+
+    @Value("${webhook.ingestion.consumer.retry-backoff:1000}")
+    private long ingestionConsumerRetryBackoff;
+
+    /**
+     * Sends records that can never be processed to {@code <topic>-dlt}, leaving the partition
+     * choice to the producer.
+     */
+    @Bean
+    public DeadLetterPublishingRecoverer deadLetterPublishingRecoverer(KafkaTemplate<String, Object> kafkaTemplate) {
+        return new DeadLetterPublishingRecoverer(kafkaTemplate,
+                (record, exception) -> new TopicPartition(record.topic() + DLT_SUFFIX, -1));
+    }
+
+    /**
+     * Batch listener factory for the webhook-deliveries topic. Offsets are committed
+     * manually once every delivery in the polled batch has been persisted.
+     *
+     * Failed deliveries are settled by the listener itself (parked for the retry scheduler, or
+     * dead-lettered when the event or endpoint is gone), so a batch is only polled again when
+     * a record is unparseable or a failure could not be settled. The listener then reports
+     * that record with a {@link BatchListenerFailedException}; the records before it are
+     * committed and only it and the records after it are polled again. Retries back off
+     * exponentially and are capped, after which the record is dead-lettered. Records that
+     * cannot succeed (unparseable, event or endpoint deleted) are dead-lettered straight away.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> deliveryBatchListenerContainerFactory(
+            ConsumerFactory<Object, Object> consumerFactory,
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(deliveryConsumerConcurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(deliveryConsumerMaxRetries);
+        backOff.setInitialInterval(deliveryConsumerRetryBackoff);
+        backOff.setMultiplier(2.0);
+        backOff.setMaxInterval(MAX_RETRY_INTERVAL_MS);
+
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(deadLetterPublishingRecoverer, backOff);
+        errorHandler.addNotRetryableExceptions(ResourceNotFoundException.class);
+        errorHandler.setCommitRecovered(true);
+        factory.setCommonErrorHandler(errorHandler);
+        return factory;
+    }
+
+    /**
+     * Record listener factory for the webhook-events topic. Events on it have already been
+     * acknowledged to the provider, so the offset is committed only once the event is
+     * persisted, and database or transaction failures are retried with exponential backoff
+     * for as long as the outage lasts. Anything else is retried twice and then dead-lettered
+     * to webhook-events-dlt; malformed records are dead-lettered straight away.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> ingestionListenerContainerFactory(
+            ConsumerFactory<Object, Object> consumerFactory,
+            DeadLetterPublishingRecoverer deadLetterPublishingRecoverer) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setConcurrency(ingestionConsumerConcurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+
+        ExponentialBackOff untilRecovered = new ExponentialBackOff(ingestionConsumerRetryBackoff, 2.0);
+        untilRecovered.setMaxInterval(MAX_RETRY_INTERVAL_MS);
+
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(deadLetterPublishingRecoverer,
+                new FixedBackOff(ingestionConsumerRetryBackoff, 2));
+        errorHandler.setBackOffFunction((record, exception) ->
+                isTransientDatabaseFailure(exception) ? untilRecovered : null);
+        errorHandler.setCommitRecovered(true);
+        factory.setCommonErrorHandler(errorHandler);
+        return factory;
+    }
+
+    /**
+     * Whether {@code exception} is caused by the database being briefly unreachable or
+     * overloaded, as opposed to a record that can never be stored.
+     */
+    static boolean isTransientDatabaseFailure(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof CannotCreateTransactionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Bean
     public NewTopic webhookDeliveriesTopic() {
         return TopicBuilder.name("webhook-deliveries")
@@ -37,6 +164,24 @@ public class KafkaConfig {
                 .build();
     }
 
+    @Bean
+    public NewTopic webhookDeliveriesDeadLetterTopic() {
+        return TopicBuilder.name("webhook-deliveries" + DLT_SUFFIX)
+                .partitions(1)
+                .replicas(1)
+                .config("retention.ms", "2592000000") // 30 days
+                .build();
+    }
+
+    @Bean
+    public NewTopic webhookEventsDeadLetterTopic() {
+        return TopicBuilder.name("webhook-events" + DLT_SUFFIX)
+                .partitions(1)
+                .replicas(1)
+                .config("retention.ms", "2592000000") // 30 days
+                .build();
+    }
+
     @Bean
     public NewTopic dlqTopic() {
         return TopicBuilder.name("webhook-dlq")
@@ -0,0 +1,78 @@
+package dev.dammak.paymentservicewebhook.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caps the distinct values of tags that come from outside the service. Spring Boot applies
+ * every {@link MeterFilter} bean to each registry before any meter is registered; event types
+ * or endpoint hosts beyond the limits are recorded under the tag value {@code other}, so their
+ * traffic still shows up without growing the registry without bound.
+ */
+
+@Configuration
+public class MetricsConfig {
+
+    static final String OVERFLOW_TAG_VALUE = "other";
+
+    @Value("${webhook.metrics.max-event-types:200}")
+    private int maxEventTypes;
+
+    @Value("${webhook.metrics.max-endpoint-hosts:500}")
+    private int maxEndpointHosts;
+
+    @Bean
+    public MeterFilter ingestEventTypeLimit() {
+        return maximumTagValues("webhook.ingest", "event.type", maxEventTypes);
+    }
+
+    @Bean
+    public MeterFilter routingEventTypeLimit() {
+        return maximumTagValues("webhook.routing", "event.type", maxEventTypes);
+    }
+
+    @Bean
+    public MeterFilter deliveryEndpointHostLimit() {
+        return maximumTagValues("webhook.delivery", "endpoint.host", maxEndpointHosts);
+    }
+
+    @Bean
+    public MeterFilter retryEndpointHostLimit() {
+        return maximumTagValues("webhook.retry", "endpoint.host", maxEndpointHosts);
+    }
+
+    /**
+     * Keeps the first {@code maximum} values of the tag as they are and maps every later one to
+     * {@link #OVERFLOW_TAG_VALUE}. {@link MeterFilter#maximumAllowableTags} can only deny the
+     * meter once the limit is reached, which would drop those measurements altogether.
+     */
+    static MeterFilter maximumTagValues(String meterNamePrefix, String tagKey, int maximum) {
+        Set<String> observed = ConcurrentHashMap.newKeySet();
+        return new MeterFilter() {
+            @Override
+            public Meter.Id map(Meter.Id id) {
+                if (!id.getName().startsWith(meterNamePrefix)) {
+                    return id;
+                }
+                String value = id.getTag(tagKey);
+                if (value == null || observed.contains(value)) {
+                    return id;
+                }
+                synchronized (observed) {
+                    if (observed.size() < maximum) {
+                        observed.add(value);
+                        return id;
+                    }
+                }
+                return id.withTag(Tag.of(tagKey, OVERFLOW_TAG_VALUE));
+            }
+        };
+    }
+}
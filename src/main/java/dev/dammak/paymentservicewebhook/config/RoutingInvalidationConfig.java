@@ -0,0 +1,29 @@
+package dev.dammak.paymentservicewebhook.config;
+
+import dev.dammak.paymentservicewebhook.routing.RoutingInvalidationListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+@Configuration
+@ConditionalOnProperty(name = "webhook.routing.invalidation", havingValue = "redis", matchIfMissing = true)
+public class RoutingInvalidationConfig {
+
+    @Bean
+    public RedisMessageListenerContainer routingInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            RoutingInvalidationListener invalidationListener) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> invalidationListener.onRemoteInvalidation(
+                        new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(RoutingInvalidationListener.CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,271 @@
+package dev.dammak.paymentservicewebhook.consumer;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookDelivery;
+import dev.dammak.paymentservicewebhook.service.DeliveryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.converter.ConversionException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@Slf4j
+public class DeliveryConsumer {
+
+    private final DeliveryService deliveryService;
+    private final DeadLetterPublishingRecoverer deadLetterRecoverer;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary batchSize;
+    private final Timer batchDuration;
+    private final Counter invalidRecords;
+    private final Counter parkedRecords;
+    private final Counter deadLetteredRecords;
+    private final Map<Integer, AtomicLong> partitionLag = new ConcurrentHashMap<>();
+    private final Map<Integer, LaneMeters> laneMeters = new ConcurrentHashMap<>();
+    private final boolean ordered;
+
+    public DeliveryConsumer(DeliveryService deliveryService,
+                            DeadLetterPublishingRecoverer deadLetterRecoverer,
+                            MeterRegistry meterRegistry,
+                            @Value("${webhook.delivery.ordering:none}") String ordering) {
+        this.deliveryService = deliveryService;
+        this.deadLetterRecoverer = deadLetterRecoverer;
+        this.meterRegistry = meterRegistry;
+        this.ordered = !"none".equalsIgnoreCase(ordering);
+        this.batchSize = DistributionSummary.builder("webhook.delivery.consumer.batch.size")
+                .description("Number of delivery messages per polled batch")
+                .register(meterRegistry);
+        this.batchDuration = Timer.builder("webhook.delivery.consumer.batch.duration")
+                .description("Time from poll to offset commit for a delivery batch")
+                .register(meterRegistry);
+        this.invalidRecords = Counter.builder("webhook.delivery.consumer.records.invalid")
+                .description("Delivery messages dead-lettered because they could not be parsed")
+                .register(meterRegistry);
+        this.parkedRecords = Counter.builder("webhook.delivery.consumer.records.parked")
+                .description("Failed delivery messages handed to the retry scheduler instead of being polled again")
+                .register(meterRegistry);
+        this.deadLetteredRecords = Counter.builder("webhook.delivery.consumer.records.dlt")
+                .description("Delivery messages dead-lettered because their event or endpoint no longer exists")
+                .register(meterRegistry);
+    }
+
+    @KafkaListener(
+            id = "webhookDeliveryConsumer",
+            topics = "webhook-deliveries",
+            containerFactory = "deliveryBatchListenerContainerFactory",
+            autoStartup = "${webhook.delivery.consumer.enabled:true}"
+    )
+    public void onDeliveries(List<ConsumerRecord<String, Object>> records,
+                             Acknowledgment acknowledgment,
+                             Consumer<?, ?> consumer) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        batchSize.record(records.size());
+        log.debug("Received batch of {} delivery messages", records.size());
+
+        List<CompletableFuture<WebhookDelivery>> deliveries = new ArrayList<>(records.size());
+        List<DeliveryMessage> messages = new ArrayList<>(records.size());
+        Set<TopicPartition> partitions = new HashSet<>();
+        Map<String, Lane> lanes = new HashMap<>();
+        ConversionException invalid = null;
+
+        // deliveries.get(i) belongs to records.get(i); dispatch stops at the first unparseable
+        // record so nothing after it is sent before it has been dead-lettered
+        for (ConsumerRecord<String, Object> record : records) {
+            partitions.add(new TopicPartition(record.topic(), record.partition()));
+
+            DeliveryMessage message;
+            try {
+                message = parse(record);
+            } catch (ConversionException e) {
+                invalid = e;
+                break;
+            }
+            messages.add(message);
+
+            if (ordered && record.key() != null) {
+                Lane lane = lanes.computeIfAbsent(record.key(),
+                        key -> new Lane(laneMeters.computeIfAbsent(record.partition(), this::registerLaneMeters)));
+                deliveries.add(lane.append(message));
+            } else {
+                deliveries.add(deliveryService.deliverWebhook(message.eventId(), message.endpointId()));
+            }
+        }
+        lanes.values().forEach(Lane::recordDepth);
+
+        // Wait for every dispatched delivery, failed or not, before deciding what to commit
+        CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0])).exceptionally(error -> null).join();
+        recordLag(consumer, partitions);
+
+        // Every other record has been sent already, so a failure is settled here rather than by
+        // polling the batch again from the failed record
+        for (int i = 0; i < deliveries.size(); i++) {
+            CompletableFuture<WebhookDelivery> delivery = deliveries.get(i);
+            if (delivery.isCompletedExceptionally()) {
+                settle(records.get(i), messages.get(i), failureOf(delivery), consumer, i);
+            }
+        }
+        if (invalid != null) {
+            // Nothing after it was dispatched, so only it and the records after it are polled again
+            invalidRecords.increment();
+            throw new BatchListenerFailedException("Unparseable delivery message", invalid, deliveries.size());
+        }
+
+        acknowledgment.acknowledge();
+        sample.stop(batchDuration);
+    }
+
+    /**
+     * Dead-letters a record whose event or endpoint no longer exists, and parks any other
+     * failed delivery for the retry scheduler. Only if that fails too, typically because the
+     * database is unreachable, is the batch polled again from this record.
+     */
+    private void settle(ConsumerRecord<String, Object> record, DeliveryMessage message, Throwable failure,
+                        Consumer<?, ?> consumer, int index) {
+        try {
+            if (failure instanceof ResourceNotFoundException notFound) {
+                deadLetterRecoverer.accept(record, consumer, notFound);
+                deadLetteredRecords.increment();
+            } else {
+                deliveryService.parkForRetry(message.eventId(), message.endpointId(), failure.getMessage());
+                parkedRecords.increment();
+            }
+        } catch (RuntimeException e) {
+            e.addSuppressed(failure);
+            throw new BatchListenerFailedException("Failed delivery could not be settled", e, index);
+        }
+    }
+
+    private DeliveryMessage parse(ConsumerRecord<String, Object> record) {
+        if (!(record.value() instanceof Map<?, ?> value)) {
+            // A null value is a record the ErrorHandlingDeserializer could not read
+            throw new ConversionException("Unexpected delivery message payload at "
+                    + record.topic() + "-" + record.partition() + "@" + record.offset(), null);
+        }
+
+        try {
+            UUID eventId = UUID.fromString(String.valueOf(value.get("eventId")));
+            UUID endpointId = UUID.fromString(String.valueOf(value.get("endpointId")));
+            return new DeliveryMessage(eventId, endpointId);
+        } catch (IllegalArgumentException e) {
+            throw new ConversionException("Invalid delivery message at "
+                    + record.topic() + "-" + record.partition() + "@" + record.offset(), e);
+        }
+    }
+
+    private static Throwable failureOf(CompletableFuture<?> delivery) {
+        try {
+            delivery.join();
+            return new IllegalStateException("Delivery did not fail");
+        } catch (CompletionException | CancellationException e) {
+            return e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    private void recordLag(Consumer<?, ?> consumer, Set<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            consumer.currentLag(partition).ifPresent(lag ->
+                    partitionLag.computeIfAbsent(partition.partition(), this::registerLagGauge).set(lag));
+        }
+    }
+
+    private AtomicLong registerLagGauge(Integer partition) {
+        AtomicLong lag = new AtomicLong();
+        Gauge.builder("webhook.delivery.consumer.lag", lag, AtomicLong::get)
+                .description("Records remaining behind the committed position of a webhook-deliveries partition")
+                .tag("partition", String.valueOf(partition))
+                .register(meterRegistry);
+        return lag;
+    }
+
+    private LaneMeters registerLaneMeters(Integer partition) {
+        return new LaneMeters(
+                Timer.builder("webhook.delivery.lane.wait")
+                        .description("Time an ordered delivery waited behind earlier deliveries for the same key")
+                        .tag("partition", String.valueOf(partition))
+                        .register(meterRegistry),
+                DistributionSummary.builder("webhook.delivery.lane.depth")
+                        .description("Ordered deliveries queued for one key within a polled batch")
+                        .tag("partition", String.valueOf(partition))
+                        .register(meterRegistry));
+    }
+
+    private record DeliveryMessage(UUID eventId, UUID endpointId) {
+    }
+
+    private record LaneMeters(Timer waitTime, DistributionSummary queueDepth) {
+    }
+
+    /**
+     * A delivery left unsent because an earlier delivery for the same key failed.
+     */
+    private static final class LaneStoppedException extends RuntimeException {
+
+        LaneStoppedException() {
+            super("Not sent because an earlier delivery for the same key failed", null, false, false);
+        }
+    }
+
+    /**
+     * Deliveries sharing a message key within one batch. Each starts only after the previous
+     * one has completed, while different lanes run in parallel. A failure stops the rest of
+     * the lane unsent, so the deliveries behind it are parked after it rather than overtaking it.
+     */
+    private final class Lane {
+
+        private final LaneMeters meters;
+        private CompletableFuture<WebhookDelivery> tail = CompletableFuture.completedFuture(null);
+        private int depth;
+
+        Lane(LaneMeters meters) {
+            this.meters = meters;
+        }
+
+        CompletableFuture<WebhookDelivery> append(DeliveryMessage message) {
+            long queuedAt = System.nanoTime();
+            depth++;
+            tail = tail.handle((previous, error) -> {
+                if (error != null) {
+                    return CompletableFuture.<WebhookDelivery>failedFuture(new LaneStoppedException());
+                }
+                // Head-of-line blocking: time spent waiting for earlier deliveries of this key
+                meters.waitTime().record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return deliveryService.deliverWebhook(message.eventId(), message.endpointId());
+            }).thenCompose(delivery -> delivery);
+            return tail;
+        }
+
+        void recordDepth() {
+            meters.queueDepth().record(depth);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package dev.dammak.paymentservicewebhook.consumer;
+
+import dev.dammak.paymentservicewebhook.exception.DuplicateEventException;
+import dev.dammak.paymentservicewebhook.service.EventProcessingService;
+import dev.dammak.paymentservicewebhook.service.IngestionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.converter.ConversionException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Downstream stage of the fast-ack ingestion path: persists accepted provider events
+ * and fans them out to subscribed endpoints. The offset is committed only after the event
+ * is stored, since the provider has already been told it was accepted.
+ */
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class IngestedEventConsumer {
+
+    private final EventProcessingService eventProcessingService;
+
+    @KafkaListener(
+            id = "webhookIngestionConsumer",
+            topics = IngestionService.EVENTS_TOPIC,
+            containerFactory = "ingestionListenerContainerFactory",
+            autoStartup = "${webhook.ingestion.consumer.enabled:true}"
+    )
+    @SuppressWarnings("unchecked")
+    public void onEvent(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment) {
+        if (!(record.value() instanceof Map<?, ?> message)
+                || !(message.get("payload") instanceof Map<?, ?> payload)
+                || !(message.get("provider") instanceof String provider)
+                || !(message.get("eventType") instanceof String eventType)) {
+            // Dead-lettered by the container rather than retried
+            throw new ConversionException("Malformed ingested event at "
+                    + record.topic() + "-" + record.partition() + "@" + record.offset(), null);
+        }
+
+        Object receivedAt = message.get("receivedAt");
+
+        try {
+            eventProcessingService.processIncomingEvent(
+                    provider,
+                    eventType,
+                    (Map<String, Object>) payload,
+                    (String) message.get("idempotencyKey"),
+                    (String) message.get("sourceIp"),
+                    (String) message.get("receiptId"),
+                    receivedAt instanceof Number number ? number.longValue() : System.currentTimeMillis()
+            );
+        } catch (DuplicateEventException e) {
+            log.info("Dropping duplicate ingested event {} (idempotency key: {})",
+                    message.get("receiptId"), message.get("idempotencyKey"));
+        }
+        // Any other failure propagates without acknowledging, so the container retries the record
+        acknowledgment.acknowledge();
+    }
+}
@@ -0,0 +1,87 @@
+package dev.dammak.paymentservicewebhook.controller;
+
+import dev.dammak.paymentservicewebhook.dto.RedriveJobDTO;
+import dev.dammak.paymentservicewebhook.dto.RedriveRequestDTO;
+import dev.dammak.paymentservicewebhook.service.DeadLetterRedriveService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/webhooks/dlq")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Dead Letters", description = "Redrive deliveries that exhausted their retries")
+@SecurityRequirement(name = "bearerAuth")
+public class DeadLetterController {
+
+    private final DeadLetterRedriveService redriveService;
+
+    @PostMapping("/redrives")
+    @Operation(
+            summary = "Start a redrive",
+            description = "Streams the dead-letter topic and queues matching deliveries again, paced per endpoint"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Redrive started",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = RedriveJobDTO.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid filters"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden")
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RedriveJobDTO> startRedrive(@Valid @RequestBody RedriveRequestDTO request) {
+        log.info("Starting dead-letter redrive: {}", request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(redriveService.start(request));
+    }
+
+    @GetMapping("/redrives/{id}")
+    @Operation(summary = "Get redrive progress")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Redrive progress",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = RedriveJobDTO.class))}),
+            @ApiResponse(responseCode = "404", description = "Redrive not found on this instance")
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RedriveJobDTO> getRedrive(
+            @Parameter(description = "Redrive job ID", in = ParameterIn.PATH, required = true)
+            @PathVariable UUID id) {
+        return ResponseEntity.ok(redriveService.getJob(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Redrive not found")));
+    }
+
+    @DeleteMapping("/redrives/{id}")
+    @Operation(summary = "Cancel a redrive", description = "Stops the scan; deliveries already paced are still queued")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Redrive cancelled",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = RedriveJobDTO.class))}),
+            @ApiResponse(responseCode = "404", description = "Redrive not found on this instance")
+    })
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RedriveJobDTO> cancelRedrive(
+            @Parameter(description = "Redrive job ID", in = ParameterIn.PATH, required = true)
+            @PathVariable UUID id) {
+        log.info("Cancelling dead-letter redrive: {}", id);
+        return ResponseEntity.ok(redriveService.cancel(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Redrive not found")));
+    }
+}
@@ -0,0 +1,123 @@
+package dev.dammak.paymentservicewebhook.controller;
+
+import dev.dammak.paymentservicewebhook.dto.EventReplayJobDTO;
+import dev.dammak.paymentservicewebhook.dto.EventReplayRequestDTO;
+import dev.dammak.paymentservicewebhook.service.EventReplayService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/webhooks/endpoints/{id}/replay")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Event Replay", description = "Deliver past events to a webhook endpoint again")
+@SecurityRequirement(name = "bearerAuth")
+public class EventReplayController {
+
+    private final EventReplayService replayService;
+
+    @PostMapping
+    @Operation(
+            summary = "Start a replay",
+            description = "Queues every event in the time range that the endpoint subscribes to, at a fixed rate"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Replay started",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = EventReplayJobDTO.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid time range or event types"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized"),
+            @ApiResponse(responseCode = "403", description = "Forbidden"),
+            @ApiResponse(responseCode = "404", description = "Webhook endpoint not found")
+    })
+    @PreAuthorize("hasRole('MERCHANT')")
+    public ResponseEntity<EventReplayJobDTO> startReplay(
+            @Parameter(description = "Merchant ID", in = ParameterIn.HEADER, required = true)
+            @RequestHeader("X-Merchant-Id") UUID merchantId,
+            @Parameter(description = "Webhook endpoint ID", in = ParameterIn.PATH, required = true)
+            @PathVariable UUID id,
+            @Valid @RequestBody EventReplayRequestDTO request) {
+
+        log.info("Starting replay to endpoint: {} for merchant: {}", id, merchantId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(replayService.start(merchantId, id, request));
+    }
+
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Get replay progress", description = "Events queued, checkpoint and throughput of a replay")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Replay progress",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = EventReplayJobDTO.class))}),
+            @ApiResponse(responseCode = "404", description = "Replay not found")
+    })
+    @PreAuthorize("hasRole('MERCHANT')")
+    public ResponseEntity<EventReplayJobDTO> getReplay(
+            @Parameter(description = "Merchant ID", in = ParameterIn.HEADER, required = true)
+            @RequestHeader("X-Merchant-Id") UUID merchantId,
+            @Parameter(description = "Webhook endpoint ID", in = ParameterIn.PATH, required = true)
+            @PathVariable UUID id,
+            @Parameter(description = "Replay job ID", in = ParameterIn.PATH, required = true)
+            @PathVariable UUID jobId) {
+
+        return ResponseEntity.ok(replayService.getJob(merchantId, id, jobId));
+    }
+
+    @PostMapping("/{jobId}/resume")
+    @Operation(summary = "Resume a replay", description = "Continues a failed or cancelled replay from its last checkpoint")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Replay resumed",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = EventReplayJobDTO.class))}),
+            @ApiResponse(responseCode = "400", description = "Replay is still running or already completed"),
+            @ApiResponse(responseCode = "404", description = "Replay not found")
+    })
+    @PreAuthorize("hasRole('MERCHANT')")
+    public ResponseEntity<EventReplayJobDTO> resumeReplay(
+            @Parameter(description = "Merchant ID", in = ParameterIn.HEADER, required = true)
+            @RequestHeader("X-Merchant-Id") UUID merchantId,
+            @Parameter(description = "Webhook endpoint ID", in = ParameterIn.PATH, required = true)
+            @PathVariable UUID id,
+            @Parameter(description = "Replay job ID", in = ParameterIn.PATH, required = true)
+            @PathVariable UUID jobId) {
+
+        log.info("Resuming replay: {} to endpoint: {}", jobId, id);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(replayService.resume(merchantId, id, jobId));
+    }
+
+    @DeleteMapping("/{jobId}")
+    @Operation(summary = "Cancel a replay", description = "Stops the replay at its next checkpoint; it can be resumed later")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Replay cancelled",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = EventReplayJobDTO.class))}),
+            @ApiResponse(responseCode = "404", description = "Replay not found")
+    })
+    @PreAuthorize("hasRole('MERCHANT')")
+    public ResponseEntity<EventReplayJobDTO> cancelReplay(
+            @Parameter(description = "Merchant ID", in = ParameterIn.HEADER, required = true)
+            @RequestHeader("X-Merchant-Id") UUID merchantId,
+            @Parameter(description = "Webhook endpoint ID", in = ParameterIn.PATH, required = true)
+            @PathVariable UUID id,
+            @Parameter(description = "Replay job ID", in = ParameterIn.PATH, required = true)
+            @PathVariable UUID jobId) {
+
+        log.info("Cancelling replay: {} to endpoint: {}", jobId, id);
+        return ResponseEntity.ok(replayService.cancel(merchantId, id, jobId));
+    }
+}
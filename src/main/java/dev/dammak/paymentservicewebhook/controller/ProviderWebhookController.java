@@ -3,6 +3,7 @@ package dev.dammak.paymentservicewebhook.controller;
 
 import dev.dammak.paymentservicewebhook.dto.WebhookEventDTO;
 import dev.dammak.paymentservicewebhook.service.EventProcessingService;
+import dev.dammak.paymentservicewebhook.service.IngestionService;
 import dev.dammak.paymentservicewebhook.service.SignatureService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -15,11 +16,13 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.UUID;
 /**
  * Created By damola.adekoya on 01/09/2025
  *
@@ -39,6 +42,10 @@ public class ProviderWebhookController {
 
     private final EventProcessingService eventProcessingService;
     private final SignatureService signatureService;
+    private final IngestionService ingestionService;
+
+    @Value("${webhook.ingestion.mode:sync}")
+    private String ingestionMode;
 
     @PostMapping("/{provider}/events")
     @Operation(
@@ -49,6 +56,9 @@ public class ProviderWebhookController {
             @ApiResponse(responseCode = "200", description = "Webhook event accepted successfully",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Map.class))}),
+            @ApiResponse(responseCode = "202", description = "Webhook event durably queued for asynchronous processing",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = Map.class))}),
             @ApiResponse(responseCode = "400", description = "Invalid webhook data or signature verification failed",
                     content = {@Content(mediaType = "application/json",
                             schema = @Schema(implementation = Map.class))})
@@ -80,6 +90,23 @@ public class ProviderWebhookController {
             // Extract event type from payload (provider-specific)
             String eventType = extractEventType(provider, payload);
 
+            if ("async".equalsIgnoreCase(ingestionMode)) {
+                // Acknowledge once the raw event is on webhook-events; persistence happens downstream
+                UUID receiptId = ingestionService.accept(
+                        provider,
+                        eventType,
+                        payload,
+                        idempotencyKey,
+                        request.getRemoteAddr()
+                );
+
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                        "status", "accepted",
+                        "receiptId", receiptId,
+                        "timestamp", System.currentTimeMillis()
+                ));
+            }
+
             // Process the event
             WebhookEventDTO event = eventProcessingService.processIncomingEvent(
                     provider,
@@ -0,0 +1,57 @@
+package dev.dammak.paymentservicewebhook.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Progress of an event replay")
+public class EventReplayJobDTO {
+
+    @Schema(description = "Replay job identifier", example = "0192a3b4-c5d6-7e8f-9a0b-1c2d3e4f5a6b")
+    private UUID id;
+
+    @Schema(description = "Endpoint the events are replayed to", example = "789e0123-e89b-12d3-a456-426614174222")
+    private UUID endpointId;
+
+    @Schema(description = "RUNNING, COMPLETED, CANCELLED or FAILED", example = "RUNNING")
+    private String status;
+
+    @Schema(description = "Start of the replayed range")
+    private LocalDateTime from;
+
+    @Schema(description = "End of the replayed range")
+    private LocalDateTime to;
+
+    @Schema(description = "Replayed event types")
+    private List<String> eventTypes;
+
+    @Schema(description = "Configured events per second", example = "100")
+    private Double ratePerSecond;
+
+    @Schema(description = "Events queued for delivery so far", example = "42000")
+    private Long queued;
+
+    @Schema(description = "Receipt time of the last event queued; the replay resumes after it")
+    private LocalDateTime checkpoint;
+
+    @Schema(description = "Average events queued per second since the job started", example = "98.7")
+    private Double throughputPerSecond;
+
+    @Schema(description = "When the job started")
+    private LocalDateTime startedAt;
+
+    @Schema(description = "When the job finished")
+    private LocalDateTime finishedAt;
+
+    @Schema(description = "Why the job failed")
+    private String errorMessage;
+}
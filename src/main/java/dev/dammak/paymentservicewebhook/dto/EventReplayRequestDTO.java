@@ -0,0 +1,32 @@
+package dev.dammak.paymentservicewebhook.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Events to deliver to the endpoint again")
+public class EventReplayRequestDTO {
+
+    @NotNull
+    @Schema(description = "Replay events received at or after this time", example = "2026-10-17T08:00:00")
+    private LocalDateTime from;
+
+    @Schema(description = "Replay events received before this time; defaults to now", example = "2026-10-17T12:00:00")
+    private LocalDateTime to;
+
+    @Schema(description = "Only these event types; defaults to every type the endpoint subscribes to",
+            example = "[\"payment.succeeded\"]")
+    private List<String> eventTypes;
+
+    @Positive
+    @Schema(description = "Events queued per second; defaults to webhook.replay.rate-per-second", example = "100")
+    private Double ratePerSecond;
+}
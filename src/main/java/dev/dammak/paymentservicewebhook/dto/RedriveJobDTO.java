@@ -0,0 +1,47 @@
+package dev.dammak.paymentservicewebhook.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Progress of a dead-letter redrive")
+public class RedriveJobDTO {
+
+    @Schema(description = "Redrive job identifier", example = "0192a3b4-c5d6-7e8f-9a0b-1c2d3e4f5a6b")
+    private UUID id;
+
+    @Schema(description = "RUNNING, COMPLETED, CANCELLED or FAILED", example = "RUNNING")
+    private String status;
+
+    @Schema(description = "Filters the job was started with")
+    private RedriveRequestDTO request;
+
+    @Schema(description = "Dead-letter entries read so far", example = "250000")
+    private Long scanned;
+
+    @Schema(description = "Entries that matched the filters", example = "180000")
+    private Long matched;
+
+    @Schema(description = "Matching entries queued for delivery", example = "179500")
+    private Long queued;
+
+    @Schema(description = "Matching entries that could not be queued", example = "0")
+    private Long failed;
+
+    @Schema(description = "When the job started")
+    private Instant startedAt;
+
+    @Schema(description = "When the job finished")
+    private Instant finishedAt;
+
+    @Schema(description = "Why the job failed")
+    private String errorMessage;
+}
@@ -0,0 +1,36 @@
+package dev.dammak.paymentservicewebhook.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Positive;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Selects dead-lettered deliveries to queue again; all filters are optional and combined")
+public class RedriveRequestDTO {
+
+    @Schema(description = "Only deliveries to this merchant's endpoints", example = "123e4567-e89b-12d3-a456-426614174000")
+    private UUID merchantId;
+
+    @Schema(description = "Only deliveries to this endpoint", example = "789e0123-e89b-12d3-a456-426614174222")
+    private UUID endpointId;
+
+    @Schema(description = "Only events of this type", example = "payment.succeeded")
+    private String eventType;
+
+    @Schema(description = "Only deliveries that failed at or after this time", example = "2026-10-17T08:00:00Z")
+    private Instant from;
+
+    @Schema(description = "Only deliveries that failed at or before this time", example = "2026-10-17T12:00:00Z")
+    private Instant to;
+
+    @Positive
+    @Schema(description = "Maximum deliveries queued per second for each endpoint; defaults to webhook.dlq.redrive.rate-per-endpoint",
+            example = "50")
+    private Double ratePerEndpoint;
+}
@@ -96,6 +96,15 @@ public class WebhookEndpointDTO {
         
         @Schema(description = "Average delivery latency in milliseconds", example = "150.5")
         private Double averageLatencyMs;
+
+        @Schema(description = "Median delivery latency in milliseconds", example = "120")
+        private Long p50LatencyMs;
+
+        @Schema(description = "95th percentile delivery latency in milliseconds", example = "410")
+        private Long p95LatencyMs;
+
+        @Schema(description = "99th percentile delivery latency in milliseconds", example = "980")
+        private Long p99LatencyMs;
         
         @Schema(description = "Timestamp of the last delivery")
         private LocalDateTime lastDeliveryAt;
@@ -0,0 +1,47 @@
+package dev.dammak.paymentservicewebhook.entity;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A delivery to queue on webhook-deliveries, written in the same transaction as its event
+ * and removed by {@code OutboxRelay} once the broker has acknowledged it. Time-ordered ids
+ * give the relay its scan order.
+ */
+
+@Entity
+@Table(name = "delivery_outbox")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryOutboxMessage {
+
+    @Id
+    @TimeOrderedUuid
+    @Column(updatable = false, nullable = false)
+    private UUID id;
+
+    @Column(name = "webhook_event_id", nullable = false)
+    private UUID webhookEventId;
+
+    @Column(name = "webhook_endpoint_id", nullable = false)
+    private UUID webhookEndpointId;
+
+    @Column(name = "merchant_id")
+    private UUID merchantId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Locates the event's partition when the relay marks its fan-out published
+    @Column(name = "event_created_at")
+    private LocalDateTime eventCreatedAt;
+
+    // Lease held by the relay publishing this message; null or past means unclaimed
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+}
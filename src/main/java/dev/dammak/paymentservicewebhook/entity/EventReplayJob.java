@@ -0,0 +1,76 @@
+package dev.dammak.paymentservicewebhook.entity;
+import com.vladmihalcea.hibernate.type.json.JsonType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Type;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Replay of past events to one endpoint. Progress is only ever written through the
+ * conditional updates in {@code EventReplayJobRepository}, which check the owner and status,
+ * so a cancelled job or one taken over by another node stops at its next checkpoint.
+ */
+
+@Entity
+@Table(name = "event_replay_jobs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class EventReplayJob extends BaseEntity {
+
+    @Column(name = "webhook_endpoint_id", nullable = false)
+    private UUID webhookEndpointId;
+
+    @Column(name = "merchant_id", nullable = false)
+    private UUID merchantId;
+
+    @Type(JsonType.class)
+    @Column(name = "event_types", columnDefinition = "jsonb", nullable = false)
+    private List<String> eventTypes;
+
+    @Column(name = "from_time", nullable = false)
+    private LocalDateTime fromTime;
+
+    @Column(name = "to_time", nullable = false)
+    private LocalDateTime toTime;
+
+    @Column(name = "rate_per_second", nullable = false)
+    private double ratePerSecond;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ReplayStatus status;
+
+    private String owner;
+
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    // Last event acknowledged by Kafka; the scan continues after (cursorCreatedAt, cursorEventId)
+    @Column(name = "cursor_created_at", nullable = false)
+    private LocalDateTime cursorCreatedAt;
+
+    @Column(name = "cursor_event_id", nullable = false)
+    private UUID cursorEventId;
+
+    @Column(name = "queued_count", nullable = false)
+    private long queuedCount;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    public enum ReplayStatus {
+        RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+}
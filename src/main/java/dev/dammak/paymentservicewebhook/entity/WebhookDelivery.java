@@ -59,6 +59,12 @@ public class WebhookDelivery extends BaseEntity {
     @Column(name = "latency_ms")
     private Long latencyMs;
 
+    @Column(name = "claimed_by")
+    private String claimedBy;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
     public enum DeliveryStatus {
         PENDING, IN_PROGRESS, SUCCESS, FAILED, RETRY_SCHEDULED, MAX_RETRIES_EXCEEDED
     }
@@ -0,0 +1,82 @@
+package dev.dammak.paymentservicewebhook.entity;
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One hour of delivery statistics for an endpoint, as seen by one service instance. Rows are
+ * rewritten in place with the instance's running totals and merged on read.
+ */
+
+@Entity
+@Table(name = "webhook_delivery_stats")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebhookDeliveryStats implements Persistable<WebhookDeliveryStats.Key> {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "total_count", nullable = false)
+    private long totalCount;
+
+    @Column(name = "success_count", nullable = false)
+    private long successCount;
+
+    @Column(name = "failure_count", nullable = false)
+    private long failureCount;
+
+    @Column(name = "latency_sum_ms", nullable = false)
+    private long latencySumMs;
+
+    @Column(name = "latency_histogram", nullable = false)
+    private byte[] latencyHistogram;
+
+    @Column(name = "last_delivery_at")
+    private LocalDateTime lastDeliveryAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    /**
+     * Set by the writer, which knows whether it has flushed this row before; saves the
+     * lookup {@code merge} would otherwise do for a first write.
+     */
+    @Transient
+    @Builder.Default
+    private boolean isNew = true;
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    void markLoaded() {
+        isNew = false;
+    }
+
+    @Embeddable
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+
+        @Column(name = "endpoint_id", nullable = false)
+        private UUID endpointId;
+
+        @Column(name = "bucket_start", nullable = false)
+        private LocalDateTime bucketStart;
+
+        @Column(name = "instance_id", nullable = false)
+        private UUID instanceId;
+    }
+}
@@ -21,8 +21,7 @@ import java.util.Map;
 @Table(name = "webhook_events",
         indexes = {
                 @Index(name = "idx_event_status", columnList = "status"),
-                @Index(name = "idx_event_type", columnList = "event_type"),
-                @Index(name = "idx_idempotency_key", columnList = "idempotency_key")
+                @Index(name = "idx_event_type", columnList = "event_type")
         })
 @Data
 @Builder
@@ -31,6 +30,9 @@ import java.util.Map;
 @EqualsAndHashCode(callSuper = true)
 public class WebhookEvent extends BaseEntity {
 
+    public static final String METADATA_RECEIVED_AT = "receivedAt";
+    public static final String METADATA_RECEIPT_ID = "receiptId";
+
     @Column(name = "event_type", nullable = false, length = 100)
     private String eventType;
 
@@ -41,13 +43,27 @@ public class WebhookEvent extends BaseEntity {
     @Column(columnDefinition = "jsonb", nullable = false)
     private Map<String, Object> payload;
 
-    @Column(name = "idempotency_key", unique = true)
+    // Uniqueness is enforced by webhook_idempotency_keys; this copy is informational
+    @Column(name = "idempotency_key")
     private String idempotencyKey;
 
     @Enumerated(EnumType.STRING)
     @Builder.Default
     private EventStatus status = EventStatus.PENDING;
 
+    // Endpoints whose delivery has not reached SUCCESS or MAX_RETRIES_EXCEEDED yet
+    @Column(name = "outstanding_deliveries", nullable = false)
+    @Builder.Default
+    private Integer outstandingDeliveries = 0;
+
+    // Endpoints the event fans out to; fixed at ingest, unlike outstandingDeliveries
+    @Column(name = "expected_deliveries")
+    private Integer expectedDeliveries;
+
+    @Column(name = "failed_deliveries", nullable = false)
+    @Builder.Default
+    private Integer failedDeliveries = 0;
+
     @Column(name = "source_ip")
     private String sourceIp;
 
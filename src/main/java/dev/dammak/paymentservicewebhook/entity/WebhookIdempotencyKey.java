@@ -0,0 +1,46 @@
+package dev.dammak.paymentservicewebhook.entity;
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Globally unique provider idempotency key. Kept outside the partitioned webhook_events
+ * table, where a unique constraint could only cover a single partition.
+ */
+
+@Entity
+@Table(name = "webhook_idempotency_keys")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebhookIdempotencyKey implements Persistable<String> {
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    @Column(name = "webhook_event_id", nullable = false)
+    private UUID webhookEventId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    /**
+     * Keys are only ever inserted, so a clash surfaces as a constraint violation instead of
+     * being merged into the existing row.
+     */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package dev.dammak.paymentservicewebhook.repository;
+
+import dev.dammak.paymentservicewebhook.entity.DeliveryOutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface DeliveryOutboxRepository extends JpaRepository<DeliveryOutboxMessage, UUID> {
+
+    /**
+     * Locks the oldest {@code limit} unclaimed messages. Rows another replica is claiming are
+     * skipped rather than waited on, so relays on several nodes drain the outbox side by side.
+     */
+    @Query(value = "SELECT o.id AS \"id\", " +
+            "o.webhook_event_id AS \"eventId\", " +
+            "o.webhook_endpoint_id AS \"endpointId\", " +
+            "o.merchant_id AS \"merchantId\", " +
+            "o.event_created_at AS \"eventCreatedAt\" " +
+            "FROM delivery_outbox o " +
+            "WHERE o.claimed_until IS NULL OR o.claimed_until < :now " +
+            "ORDER BY o.id " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<OutboxEntry> lockBatch(@Param("limit") int limit, @Param("now") LocalDateTime now);
+
+    /**
+     * Like {@link #lockBatch(int, LocalDateTime)}, but skips messages queued behind a claimed
+     * message with the same ordering key ({@code endpoint} or {@code merchant}), so no relay
+     * overtakes a message another relay is still publishing.
+     */
+    @Query(value = "SELECT o.id AS \"id\", " +
+            "o.webhook_event_id AS \"eventId\", " +
+            "o.webhook_endpoint_id AS \"endpointId\", " +
+            "o.merchant_id AS \"merchantId\", " +
+            "o.event_created_at AS \"eventCreatedAt\" " +
+            "FROM delivery_outbox o " +
+            "WHERE (o.claimed_until IS NULL OR o.claimed_until < :now) " +
+            "AND NOT EXISTS (SELECT 1 FROM delivery_outbox p WHERE p.id < o.id AND p.claimed_until >= :now " +
+            "AND ((:ordering = 'endpoint' AND p.webhook_endpoint_id = o.webhook_endpoint_id) " +
+            "OR (:ordering = 'merchant' AND p.merchant_id = o.merchant_id))) " +
+            "ORDER BY o.id " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<OutboxEntry> lockOrderedBatch(@Param("limit") int limit,
+                                       @Param("now") LocalDateTime now,
+                                       @Param("ordering") String ordering);
+
+    /**
+     * Serialises ordered claims until the end of the transaction, so two relays cannot each
+     * claim part of one key's messages before seeing the other's claim.
+     */
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(hashtext('delivery_outbox_claim'))) l",
+            nativeQuery = true)
+    Integer lockClaims();
+
+    @Modifying
+    @Query("UPDATE DeliveryOutboxMessage o SET o.claimedUntil = :until WHERE o.id IN :ids")
+    int claim(@Param("ids") Collection<UUID> ids, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE DeliveryOutboxMessage o SET o.claimedUntil = NULL WHERE o.id IN :ids")
+    int releaseClaims(@Param("ids") Collection<UUID> ids);
+
+    @Modifying
+    @Query("DELETE FROM DeliveryOutboxMessage o WHERE o.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<UUID> ids);
+
+    interface OutboxEntry {
+
+        UUID getId();
+
+        UUID getEventId();
+
+        UUID getEndpointId();
+
+        UUID getMerchantId();
+
+        // Null for messages queued before the column existed
+        LocalDateTime getEventCreatedAt();
+    }
+}
@@ -0,0 +1,74 @@
+package dev.dammak.paymentservicewebhook.repository;
+
+import dev.dammak.paymentservicewebhook.entity.EventReplayJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface EventReplayJobRepository extends JpaRepository<EventReplayJob, UUID> {
+
+    Optional<EventReplayJob> findByIdAndWebhookEndpointId(UUID id, UUID webhookEndpointId);
+
+    @Query("SELECT j.id FROM EventReplayJob j WHERE j.status = 'RUNNING' AND j.heartbeatAt < :staleBefore")
+    List<UUID> findAbandonedIds(@Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Takes over a running job whose owner stopped sending heartbeats; 0 if another node was first.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE EventReplayJob j SET j.owner = :owner, j.heartbeatAt = :now " +
+            "WHERE j.id = :id AND j.status = 'RUNNING' AND j.heartbeatAt < :staleBefore")
+    int claim(@Param("id") UUID id,
+              @Param("owner") String owner,
+              @Param("now") LocalDateTime now,
+              @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Records progress; 0 if the job was cancelled or taken over, and the caller must stop.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE EventReplayJob j SET j.cursorCreatedAt = :cursorCreatedAt, j.cursorEventId = :cursorEventId, " +
+            "j.queuedCount = :queuedCount, j.heartbeatAt = :now, j.updatedAt = :now " +
+            "WHERE j.id = :id AND j.owner = :owner AND j.status = 'RUNNING'")
+    int checkpoint(@Param("id") UUID id,
+                   @Param("owner") String owner,
+                   @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                   @Param("cursorEventId") UUID cursorEventId,
+                   @Param("queuedCount") long queuedCount,
+                   @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE EventReplayJob j SET j.status = :status, j.errorMessage = :errorMessage, " +
+            "j.finishedAt = :now, j.updatedAt = :now " +
+            "WHERE j.id = :id AND j.owner = :owner AND j.status = 'RUNNING'")
+    int finish(@Param("id") UUID id,
+               @Param("owner") String owner,
+               @Param("status") EventReplayJob.ReplayStatus status,
+               @Param("errorMessage") String errorMessage,
+               @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE EventReplayJob j SET j.status = 'CANCELLED', j.finishedAt = :now, j.updatedAt = :now " +
+            "WHERE j.id = :id AND j.status = 'RUNNING'")
+    int cancel(@Param("id") UUID id, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE EventReplayJob j SET j.status = 'RUNNING', j.owner = :owner, j.heartbeatAt = :now, " +
+            "j.finishedAt = null, j.errorMessage = null, j.updatedAt = :now " +
+            "WHERE j.id = :id AND j.status IN ('FAILED', 'CANCELLED')")
+    int resume(@Param("id") UUID id, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
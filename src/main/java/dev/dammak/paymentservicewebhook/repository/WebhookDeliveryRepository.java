@@ -3,11 +3,14 @@ import dev.dammak.paymentservicewebhook.entity.WebhookDelivery;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,6 +34,71 @@ public interface WebhookDeliveryRepository extends JpaRepository<WebhookDelivery
             WebhookDelivery.DeliveryStatus status,
             LocalDateTime time);
 
+    long countByStatusAndCreatedAtAfter(WebhookDelivery.DeliveryStatus status, LocalDateTime createdAfter);
+
+    /**
+     * Locks up to {@code limit} retries due before {@code dueBefore} that no live node has
+     * claimed. Rows locked by another replica's claim transaction are skipped rather than
+     * waited on. {@code createdAfter} bounds the scan to the recent created_at partitions.
+     */
+    @Query(value = "SELECT wd.id AS \"id\", " +
+            "wd.webhook_event_id AS \"eventId\", " +
+            "wd.webhook_endpoint_id AS \"endpointId\", " +
+            "wd.next_retry_at AS \"nextRetryAt\", " +
+            "wd.created_at AS \"createdAt\" " +
+            "FROM webhook_deliveries wd " +
+            "WHERE wd.status = 'RETRY_SCHEDULED' " +
+            "AND wd.created_at >= :createdAfter " +
+            "AND wd.next_retry_at <= :dueBefore " +
+            "AND (wd.claimed_at IS NULL OR wd.claimed_at < :claimExpiredBefore) " +
+            "ORDER BY wd.next_retry_at " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<RetryCandidate> lockDueRetries(@Param("dueBefore") LocalDateTime dueBefore,
+                                        @Param("claimExpiredBefore") LocalDateTime claimExpiredBefore,
+                                        @Param("createdAfter") LocalDateTime createdAfter,
+                                        @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE WebhookDelivery wd SET wd.claimedBy = :nodeId, wd.claimedAt = :claimedAt " +
+            "WHERE wd.id IN :ids AND wd.createdAt >= :createdAfter")
+    int claim(@Param("ids") Collection<UUID> ids,
+              @Param("nodeId") String nodeId,
+              @Param("claimedAt") LocalDateTime claimedAt,
+              @Param("createdAfter") LocalDateTime createdAfter);
+
+    @Modifying
+    @Query("UPDATE WebhookDelivery wd SET wd.claimedBy = null, wd.claimedAt = null " +
+            "WHERE wd.claimedBy = :nodeId AND wd.status = 'RETRY_SCHEDULED' " +
+            "AND wd.createdAt >= :createdAfter")
+    int releaseClaims(@Param("nodeId") String nodeId,
+                      @Param("createdAfter") LocalDateTime createdAfter);
+
+    /**
+     * Closes a scheduled retry as its next attempt starts; the attempt is recorded as a new row.
+     * Returns 0 if another attempt already closed it.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookDelivery wd SET wd.status = 'FAILED', wd.nextRetryAt = null " +
+            "WHERE wd.id = :id AND wd.createdAt = :createdAt AND wd.status = 'RETRY_SCHEDULED'")
+    int markRetryDispatched(@Param("id") UUID id,
+                            @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * Ends a scheduled retry that can never succeed, e.g. because its event or endpoint was
+     * deleted, so it is not claimed again.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookDelivery wd SET wd.status = 'MAX_RETRIES_EXCEEDED', wd.nextRetryAt = null, " +
+            "wd.errorMessage = :reason " +
+            "WHERE wd.id = :id AND wd.createdAt = :createdAt AND wd.status = 'RETRY_SCHEDULED'")
+    int markRetryAbandoned(@Param("id") UUID id,
+                           @Param("createdAt") LocalDateTime createdAt,
+                           @Param("reason") String reason);
+
     @Query("SELECT wd FROM WebhookDelivery wd " +
             "WHERE wd.webhookEvent.id = :eventId " +
             "AND wd.webhookEndpoint.id = :endpointId " +
@@ -38,6 +106,24 @@ public interface WebhookDeliveryRepository extends JpaRepository<WebhookDelivery
     List<WebhookDelivery> findByEventAndEndpoint(@Param("eventId") UUID eventId,
                                                  @Param("endpointId") UUID endpointId);
 
+    @Query("SELECT COALESCE(MAX(wd.attemptNumber), 0) FROM WebhookDelivery wd " +
+            "WHERE wd.webhookEvent.id = :eventId " +
+            "AND wd.webhookEndpoint.id = :endpointId")
+    int findLatestAttemptNumber(@Param("eventId") UUID eventId,
+                                @Param("endpointId") UUID endpointId);
+
+    /**
+     * Same as {@link #findLatestAttemptNumber(UUID, UUID)}, but only scans partitions from
+     * the event's creation onwards; no delivery of an event is older than the event itself.
+     */
+    @Query("SELECT COALESCE(MAX(wd.attemptNumber), 0) FROM WebhookDelivery wd " +
+            "WHERE wd.webhookEvent.id = :eventId " +
+            "AND wd.webhookEndpoint.id = :endpointId " +
+            "AND wd.createdAt >= :since")
+    int findLatestAttemptNumber(@Param("eventId") UUID eventId,
+                                @Param("endpointId") UUID endpointId,
+                                @Param("since") LocalDateTime since);
+
     @Query("SELECT AVG(wd.latencyMs) FROM WebhookDelivery wd " +
             "WHERE wd.webhookEndpoint.id = :endpointId " +
             "AND wd.status = 'SUCCESS' " +
@@ -54,4 +140,17 @@ public interface WebhookDeliveryRepository extends JpaRepository<WebhookDelivery
                                               @Param("status") WebhookDelivery.DeliveryStatus status,
                                               @Param("startTime") LocalDateTime startTime,
                                               @Param("endTime") LocalDateTime endTime);
-}
\ No newline at end of file
+
+    interface RetryCandidate {
+
+        UUID getId();
+
+        UUID getEventId();
+
+        UUID getEndpointId();
+
+        LocalDateTime getNextRetryAt();
+
+        LocalDateTime getCreatedAt();
+    }
+}
@@ -0,0 +1,30 @@
+package dev.dammak.paymentservicewebhook.repository;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookDeliveryStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface WebhookDeliveryStatsRepository extends JpaRepository<WebhookDeliveryStats, WebhookDeliveryStats.Key> {
+
+    /**
+     * Reads at most one row per hour and instance, via the primary key prefix.
+     */
+    @Query("SELECT s FROM WebhookDeliveryStats s WHERE s.id.endpointId = :endpointId " +
+            "AND s.id.bucketStart >= :since")
+    List<WebhookDeliveryStats> findByEndpointSince(@Param("endpointId") UUID endpointId,
+                                                   @Param("since") LocalDateTime since);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM WebhookDeliveryStats s WHERE s.id.bucketStart < :before")
+    int deleteBucketsBefore(@Param("before") LocalDateTime before);
+}
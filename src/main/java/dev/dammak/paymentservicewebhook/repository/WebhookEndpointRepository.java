@@ -41,6 +41,16 @@ public interface WebhookEndpointRepository extends JpaRepository<WebhookEndpoint
             "WHERE we.id = :id")
     Optional<WebhookEndpoint> findByIdWithMerchant(@Param("id") UUID id);
 
+    @Query("SELECT DISTINCT we FROM WebhookEndpoint we " +
+            "LEFT JOIN FETCH we.subscriptions " +
+            "WHERE we.status = 'ACTIVE'")
+    List<WebhookEndpoint> findAllActiveWithSubscriptions();
+
+    @Query("SELECT we FROM WebhookEndpoint we " +
+            "LEFT JOIN FETCH we.subscriptions " +
+            "WHERE we.id = :id")
+    Optional<WebhookEndpoint> findByIdWithSubscriptions(@Param("id") UUID id);
+
     List<WebhookEndpoint> findByStatus(WebhookEndpoint.WebhookStatus status);
 
     long countByMerchantIdAndStatus(UUID merchantId, WebhookEndpoint.WebhookStatus status);
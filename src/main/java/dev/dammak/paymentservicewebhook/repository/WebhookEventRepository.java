@@ -8,8 +8,10 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -34,17 +36,112 @@ public interface WebhookEventRepository extends JpaRepository<WebhookEvent, UUID
 
     Page<WebhookEvent> findByProvider(String provider, Pageable pageable);
 
-    @Query("SELECT we FROM WebhookEvent we WHERE we.status = 'PENDING' " +
-            "AND we.createdAt < :cutoffTime")
-    List<WebhookEvent> findStaleEvents(@Param("cutoffTime") LocalDateTime cutoffTime);
-
     @Modifying
     @Query("UPDATE WebhookEvent we SET we.status = :status WHERE we.id = :id")
     void updateStatus(@Param("id") UUID id, @Param("status") WebhookEvent.EventStatus status);
 
+    /**
+     * Counts one endpoint's delivery as finished. The update that takes the outstanding count
+     * to zero also settles the event, DELIVERED or FAILED, in the same statement; the row lock
+     * and the PROCESSING guard make that happen exactly once.
+     *
+     * Nothing is counted if another delivery row for the same endpoint is already final, e.g.
+     * when a redelivered message produced a second attempt after the first one finished, so
+     * each endpoint is counted at most once.
+     *
+     * @param deliveryId the delivery row that just became final
+     * @param failed 1 if the delivery ended in MAX_RETRIES_EXCEEDED, otherwise 0
+     * @return 1 if the delivery was counted, otherwise 0
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookEvent we SET we.outstandingDeliveries = we.outstandingDeliveries - 1, " +
+            "we.failedDeliveries = we.failedDeliveries + :failed, " +
+            "we.status = CASE WHEN we.outstandingDeliveries > 1 THEN 'PROCESSING' " +
+            "WHEN we.failedDeliveries + :failed > 0 THEN 'FAILED' ELSE 'DELIVERED' END, " +
+            "we.updatedAt = :now " +
+            "WHERE we.id = :id AND we.createdAt = :createdAt " +
+            "AND we.status = 'PROCESSING' AND we.outstandingDeliveries > 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM WebhookDelivery d WHERE d.webhookEvent.id = :id " +
+            "AND d.webhookEndpoint.id = :endpointId AND d.createdAt >= :createdAt AND d.id <> :deliveryId " +
+            "AND d.status IN ('SUCCESS', 'MAX_RETRIES_EXCEEDED'))")
+    int recordDeliveryFinished(@Param("id") UUID id,
+                               @Param("createdAt") LocalDateTime createdAt,
+                               @Param("endpointId") UUID endpointId,
+                               @Param("deliveryId") UUID deliveryId,
+                               @Param("failed") int failed,
+                               @Param("now") LocalDateTime now);
+
+    /**
+     * Takes back one endpoint's failure once a later delivery to it succeeded, e.g. after a
+     * dead-letter redrive. {@link #recordDeliveryFinished} does not count that success, because
+     * the endpoint already has a final MAX_RETRIES_EXCEEDED row; this update moves the event
+     * from FAILED to DELIVERED when no other endpoint failed, or leaves it PROCESSING while
+     * deliveries are still outstanding.
+     *
+     * Nothing changes unless the endpoint has an exhausted row and no other successful one, so
+     * each endpoint's failure is taken back at most once.
+     *
+     * @param deliveryId the delivery row that just succeeded
+     * @return 1 if the failure was taken back, otherwise 0
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE WebhookEvent we SET we.failedDeliveries = we.failedDeliveries - 1, " +
+            "we.status = CASE WHEN we.outstandingDeliveries > 0 THEN 'PROCESSING' " +
+            "WHEN we.failedDeliveries > 1 THEN 'FAILED' ELSE 'DELIVERED' END, " +
+            "we.updatedAt = :now " +
+            "WHERE we.id = :id AND we.createdAt = :createdAt " +
+            "AND we.status IN ('PROCESSING', 'FAILED') AND we.failedDeliveries > 0 " +
+            "AND EXISTS (SELECT 1 FROM WebhookDelivery d WHERE d.webhookEvent.id = :id " +
+            "AND d.webhookEndpoint.id = :endpointId AND d.createdAt >= :createdAt " +
+            "AND d.status = 'MAX_RETRIES_EXCEEDED') " +
+            "AND NOT EXISTS (SELECT 1 FROM WebhookDelivery d WHERE d.webhookEvent.id = :id " +
+            "AND d.webhookEndpoint.id = :endpointId AND d.createdAt >= :createdAt AND d.id <> :deliveryId " +
+            "AND d.status = 'SUCCESS')")
+    int recordFailedDeliveryRecovered(@Param("id") UUID id,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("endpointId") UUID endpointId,
+                                      @Param("deliveryId") UUID deliveryId,
+                                      @Param("now") LocalDateTime now);
+
+    /**
+     * Records that the fan-out of these events reached the broker, which tells the stale event
+     * sweeper they are not orphaned. {@code createdSince} must not be later than the oldest
+     * event's created_at; it bounds the update to the partitions the events live in.
+     */
+    @Modifying
+    @Query(value = "UPDATE webhook_events SET fanout_published_at = :now " +
+            "WHERE id IN (:ids) AND created_at >= :createdSince AND fanout_published_at IS NULL",
+            nativeQuery = true)
+    int markFanOutPublished(@Param("ids") Collection<UUID> ids,
+                            @Param("createdSince") LocalDateTime createdSince,
+                            @Param("now") LocalDateTime now);
+
     @Query("SELECT COUNT(we) FROM WebhookEvent we WHERE we.status = :status " +
             "AND we.createdAt BETWEEN :startTime AND :endTime")
     long countByStatusAndTimeRange(@Param("status") WebhookEvent.EventStatus status,
                                    @Param("startTime") LocalDateTime startTime,
                                    @Param("endTime") LocalDateTime endTime);
-}
\ No newline at end of file
+
+    /**
+     * One keyset page of a replay: events of the given types created before {@code to} and
+     * strictly after the (createdAt, id) cursor, in scan order. Only ids are read, never payloads.
+     */
+    @Query("SELECT we.id AS id, we.createdAt AS createdAt FROM WebhookEvent we " +
+            "WHERE we.eventType IN :eventTypes AND we.createdAt < :to " +
+            "AND (we.createdAt > :cursorCreatedAt OR (we.createdAt = :cursorCreatedAt AND we.id > :cursorId)) " +
+            "ORDER BY we.createdAt, we.id")
+    List<EventCursor> findReplayPage(@Param("eventTypes") Collection<String> eventTypes,
+                                     @Param("to") LocalDateTime to,
+                                     @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                     @Param("cursorId") UUID cursorId,
+                                     Pageable pageable);
+
+    interface EventCursor {
+
+        UUID getId();
+
+        LocalDateTime getCreatedAt();
+    }
+}
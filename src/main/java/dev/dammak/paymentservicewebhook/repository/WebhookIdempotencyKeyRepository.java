@@ -0,0 +1,9 @@
+package dev.dammak.paymentservicewebhook.repository;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface WebhookIdempotencyKeyRepository extends JpaRepository<WebhookIdempotencyKey, String> {
+}
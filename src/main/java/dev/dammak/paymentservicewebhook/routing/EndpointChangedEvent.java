@@ -0,0 +1,10 @@
+package dev.dammak.paymentservicewebhook.routing;
+
+import java.util.UUID;
+
+/**
+ * Published when an endpoint or its subscriptions change. Handled after the surrounding
+ * transaction commits so the routing index never sees uncommitted state.
+ */
+public record EndpointChangedEvent(UUID endpointId) {
+}
@@ -0,0 +1,68 @@
+package dev.dammak.paymentservicewebhook.routing;
+
+import dev.dammak.paymentservicewebhook.entity.EventSubscription;
+import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of the parts of an active {@code WebhookEndpoint} needed to route
+ * and deliver an event, so the hot path never touches a managed entity.
+ */
+
+@Value
+@Builder
+public class EndpointDescriptor {
+
+    UUID id;
+
+    UUID merchantId;
+
+    String url;
+
+    String secret;
+
+    Map<String, String> headers;
+
+    Integer timeoutSeconds;
+
+    boolean retryEnabled;
+
+    int maxRetries;
+
+    Set<String> eventTypes;
+
+    /**
+     * Builds a descriptor from an endpoint whose subscriptions are already initialised.
+     */
+    public static EndpointDescriptor from(WebhookEndpoint endpoint) {
+        Set<String> eventTypes = endpoint.getSubscriptions() == null ? Set.of() : endpoint.getSubscriptions().stream()
+                .filter(subscription -> Boolean.TRUE.equals(subscription.getIsActive()))
+                .map(EventSubscription::getEventType)
+                .collect(Collectors.toUnmodifiableSet());
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (endpoint.getHeaders() != null) {
+            endpoint.getHeaders().forEach((key, value) -> headers.put(key, String.valueOf(value)));
+        }
+
+        return EndpointDescriptor.builder()
+                .id(endpoint.getId())
+                .merchantId(endpoint.getMerchant() != null ? endpoint.getMerchant().getId() : null)
+                .url(endpoint.getUrl())
+                .secret(endpoint.getSecret())
+                .headers(Collections.unmodifiableMap(headers))
+                .timeoutSeconds(endpoint.getTimeoutSeconds())
+                .retryEnabled(Boolean.TRUE.equals(endpoint.getRetryEnabled()))
+                .maxRetries(endpoint.getMaxRetries() != null ? endpoint.getMaxRetries() : 0)
+                .eventTypes(eventTypes)
+                .build();
+    }
+}
@@ -0,0 +1,133 @@
+package dev.dammak.paymentservicewebhook.routing;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import dev.dammak.paymentservicewebhook.repository.WebhookEndpointRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Near-cache mapping event types to the active endpoints subscribed to them.
+ * Readers perform a lock-free lookup against an immutable snapshot; writers build a new
+ * snapshot and publish it with a single volatile write. Single endpoints are refreshed
+ * incrementally when they change and the whole index is rebuilt periodically as a
+ * safety net against missed invalidations.
+ */
+
+@Component
+@Slf4j
+public class EndpointRoutingIndex {
+
+    private final WebhookEndpointRepository endpointRepository;
+
+    private volatile Snapshot snapshot;
+
+    public EndpointRoutingIndex(WebhookEndpointRepository endpointRepository, MeterRegistry meterRegistry) {
+        this.endpointRepository = endpointRepository;
+        Gauge.builder("webhook.routing.endpoints", this, index -> index.snapshot == null ? 0 : index.snapshot.byId.size())
+                .description("Active endpoints held in the routing index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the active endpoints subscribed to the given event type.
+     */
+    public List<EndpointDescriptor> lookup(String eventType) {
+        return current().byEventType.getOrDefault(eventType, List.of());
+    }
+
+    /**
+     * Returns the descriptor of an active endpoint, if it is routable.
+     */
+    public Optional<EndpointDescriptor> findEndpoint(UUID endpointId) {
+        return Optional.ofNullable(current().byId.get(endpointId));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${webhook.routing.rebuild-interval:300000}",
+            initialDelayString = "${webhook.routing.rebuild-interval:300000}")
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        Map<UUID, EndpointDescriptor> byId = new LinkedHashMap<>();
+        for (WebhookEndpoint endpoint : endpointRepository.findAllActiveWithSubscriptions()) {
+            EndpointDescriptor descriptor = EndpointDescriptor.from(endpoint);
+            if (!descriptor.getEventTypes().isEmpty()) {
+                byId.put(descriptor.getId(), descriptor);
+            }
+        }
+
+        snapshot = Snapshot.of(byId);
+        log.info("Rebuilt endpoint routing index: {} endpoints, {} event types",
+                byId.size(), snapshot.byEventType.size());
+    }
+
+    /**
+     * Re-reads a single endpoint and swaps it into the index, removing it when it is no
+     * longer active or has no active subscriptions.
+     */
+    @Transactional(readOnly = true)
+    public synchronized void refresh(UUID endpointId) {
+        if (snapshot == null) {
+            rebuild();
+            return;
+        }
+
+        Map<UUID, EndpointDescriptor> byId = new LinkedHashMap<>(snapshot.byId);
+        byId.remove(endpointId);
+
+        endpointRepository.findByIdWithSubscriptions(endpointId)
+                .filter(endpoint -> endpoint.getStatus() == WebhookEndpoint.WebhookStatus.ACTIVE)
+                .map(EndpointDescriptor::from)
+                .filter(descriptor -> !descriptor.getEventTypes().isEmpty())
+                .ifPresent(descriptor -> byId.put(endpointId, descriptor));
+
+        snapshot = Snapshot.of(byId);
+        log.debug("Refreshed routing entry for endpoint: {}", endpointId);
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            rebuild();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    private static final class Snapshot {
+
+        private final Map<UUID, EndpointDescriptor> byId;
+        private final Map<String, List<EndpointDescriptor>> byEventType;
+
+        private Snapshot(Map<UUID, EndpointDescriptor> byId, Map<String, List<EndpointDescriptor>> byEventType) {
+            this.byId = byId;
+            this.byEventType = byEventType;
+        }
+
+        static Snapshot of(Map<UUID, EndpointDescriptor> endpoints) {
+            Map<String, List<EndpointDescriptor>> grouped = new HashMap<>();
+            for (EndpointDescriptor descriptor : endpoints.values()) {
+                for (String eventType : descriptor.getEventTypes()) {
+                    grouped.computeIfAbsent(eventType, key -> new ArrayList<>()).add(descriptor);
+                }
+            }
+
+            Map<String, List<EndpointDescriptor>> byEventType = new HashMap<>(grouped.size());
+            grouped.forEach((eventType, descriptors) -> byEventType.put(eventType, List.copyOf(descriptors)));
+            return new Snapshot(Map.copyOf(endpoints), Map.copyOf(byEventType));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package dev.dammak.paymentservicewebhook.routing;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+
+/**
+ * Applies endpoint changes to the local routing index once they are committed and
+ * broadcasts them to the other replicas over Redis pub/sub.
+ */
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RoutingInvalidationListener {
+
+    public static final String CHANNEL = "webhook:routing:invalidate";
+
+    private final EndpointRoutingIndex routingIndex;
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+
+    @Value("${webhook.routing.invalidation:redis}")
+    private String invalidationMode;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEndpointChanged(EndpointChangedEvent event) {
+        routingIndex.refresh(event.endpointId());
+
+        if ("redis".equalsIgnoreCase(invalidationMode)) {
+            broadcast(event.endpointId());
+        }
+    }
+
+    /**
+     * Invoked by the Redis listener container when another replica changed an endpoint.
+     */
+    public void onRemoteInvalidation(String endpointId) {
+        try {
+            routingIndex.refresh(UUID.fromString(endpointId.trim()));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed routing invalidation message: {}", endpointId);
+        }
+    }
+
+    private void broadcast(UUID endpointId) {
+        StringRedisTemplate template = redisTemplate.getIfAvailable();
+        if (template == null) {
+            return;
+        }
+
+        try {
+            template.convertAndSend(CHANNEL, endpointId.toString());
+        } catch (Exception e) {
+            // Other replicas converge on the next scheduled rebuild
+            log.warn("Failed to broadcast routing invalidation for endpoint {}: {}", endpointId, e.getMessage());
+        }
+    }
+}
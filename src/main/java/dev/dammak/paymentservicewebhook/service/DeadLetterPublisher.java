@@ -0,0 +1,64 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookDelivery;
+import dev.dammak.paymentservicewebhook.routing.EndpointDescriptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Publishes deliveries that exhausted their attempts to the webhook-dlq topic, keyed by
+ * endpoint. Entries carry what a redrive filters on (merchant, endpoint, event type, failure
+ * time as the record timestamp) so it never has to read webhook_deliveries.
+ */
+
+@Component
+@Slf4j
+public class DeadLetterPublisher {
+
+    public static final String TOPIC = "webhook-dlq";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+
+    public DeadLetterPublisher(KafkaTemplate<String, Object> kafkaTemplate, MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Never throws: the delivery row already records the terminal failure, so a lost DLQ entry
+     * is logged and counted rather than failing the delivery batch.
+     */
+    public void publish(WebhookDelivery delivery, EndpointDescriptor endpoint, String eventType) {
+        UUID endpointId = endpoint.getId();
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("deliveryId", String.valueOf(delivery.getId()));
+        entry.put("eventId", delivery.getWebhookEvent().getId().toString());
+        entry.put("endpointId", endpointId.toString());
+        entry.put("merchantId", endpoint.getMerchantId() != null ? endpoint.getMerchantId().toString() : null);
+        entry.put("eventType", eventType);
+        entry.put("attemptNumber", delivery.getAttemptNumber());
+        entry.put("responseStatus", delivery.getResponseStatus());
+        entry.put("errorMessage", delivery.getErrorMessage());
+        entry.put("failedAt", System.currentTimeMillis());
+
+        try {
+            kafkaTemplate.send(TOPIC, endpointId.toString(), entry).whenComplete((result, error) -> {
+                if (error != null) {
+                    log.error("Failed to dead-letter delivery {}: {}", delivery.getId(), error.getMessage());
+                }
+                meterRegistry.counter("webhook.dlq.published", "outcome",
+                        error == null ? WebhookMetrics.OUTCOME_SUCCESS : WebhookMetrics.OUTCOME_ERROR).increment();
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to dead-letter delivery {}: {}", delivery.getId(), e.getMessage());
+            meterRegistry.counter("webhook.dlq.published", "outcome", WebhookMetrics.OUTCOME_ERROR).increment();
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.dto.RedriveJobDTO;
+import dev.dammak.paymentservicewebhook.dto.RedriveRequestDTO;
+import dev.dammak.paymentservicewebhook.exception.WebhookException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Replays dead-lettered deliveries onto webhook-deliveries. A job streams the webhook-dlq
+ * topic with its own consumer (no consumer group, nothing committed): it seeks every
+ * partition to the {@code from} timestamp and reads up to the end offsets seen at start,
+ * so memory use does not depend on how many entries match.
+ *
+ * Matching entries are paced per endpoint: each endpoint gets a slot every
+ * 1/{@code rate-per-endpoint} seconds and the entry is queued when its slot comes up. At
+ * most {@code max-pending} entries wait for a slot; beyond that the scan itself waits.
+ * Queued deliveries then go through the normal consumer, so the endpoint's bulkhead and
+ * circuit breaker still apply, and a redriven delivery that fails again is dead-lettered again.
+ *
+ * Jobs run on the replica that accepted the request and are lost if it stops. A finished job
+ * stays readable for {@code job-retention}, then is evicted the next time a job starts.
+ */
+
+@Service
+@Slf4j
+public class DeadLetterRedriveService {
+
+    // Producer clocks differ slightly, so a partition is only finished once well past "to"
+    private static final long CLOCK_SKEW_MS = 300_000;
+
+    private final ConsumerFactory<Object, Object> consumerFactory;
+    private final DeliveryQueue deliveryQueue;
+    private final double defaultRatePerEndpoint;
+    private final int maxPending;
+    private final Duration pollTimeout;
+    private final Duration jobRetention;
+    private final ExecutorService jobExecutor;
+    private final ScheduledExecutorService pacer;
+    private final Map<UUID, RedriveJob> jobs = new ConcurrentHashMap<>();
+    private final Counter redriven;
+
+    public DeadLetterRedriveService(ConsumerFactory<Object, Object> consumerFactory,
+                                    DeliveryQueue deliveryQueue,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${webhook.dlq.redrive.rate-per-endpoint:50}") double defaultRatePerEndpoint,
+                                    @Value("${webhook.dlq.redrive.max-pending:5000}") int maxPending,
+                                    @Value("${webhook.dlq.redrive.max-concurrent-jobs:2}") int maxConcurrentJobs,
+                                    @Value("${webhook.dlq.redrive.poll-timeout:1s}") Duration pollTimeout,
+                                    @Value("${webhook.dlq.redrive.job-retention:24h}") Duration jobRetention) {
+        this.consumerFactory = consumerFactory;
+        this.deliveryQueue = deliveryQueue;
+        this.defaultRatePerEndpoint = defaultRatePerEndpoint;
+        this.maxPending = maxPending;
+        this.pollTimeout = pollTimeout;
+        this.jobRetention = jobRetention;
+        this.jobExecutor = Executors.newFixedThreadPool(maxConcurrentJobs, new CustomizableThreadFactory("dlq-redrive-"));
+        this.pacer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("dlq-redrive-pacer-"));
+        this.redriven = Counter.builder("webhook.dlq.redriven")
+                .description("Dead-lettered deliveries queued again by a redrive")
+                .register(meterRegistry);
+    }
+
+    public RedriveJobDTO start(RedriveRequestDTO request) {
+        if (request.getFrom() != null && request.getTo() != null && request.getFrom().isAfter(request.getTo())) {
+            throw new WebhookException("Redrive 'from' must not be after 'to'");
+        }
+
+        evictFinishedJobs();
+        double rate = request.getRatePerEndpoint() != null ? request.getRatePerEndpoint() : defaultRatePerEndpoint;
+        RedriveJob job = new RedriveJob(UUID.randomUUID(), request, rate);
+        jobs.put(job.id, job);
+        log.info("Starting dead-letter redrive {} with {}", job.id, request);
+        try {
+            jobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            job.fail(e);
+        }
+        return job.toDto();
+    }
+
+    public Optional<RedriveJobDTO> getJob(UUID jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(RedriveJob::toDto);
+    }
+
+    private void evictFinishedJobs() {
+        Instant cutoff = Instant.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    /**
+     * Stops the scan; entries already waiting for their endpoint slot are still queued.
+     */
+    public Optional<RedriveJobDTO> cancel(UUID jobId) {
+        RedriveJob job = jobs.get(jobId);
+        if (job == null) {
+            return Optional.empty();
+        }
+        job.status.compareAndSet(RedriveStatus.RUNNING, RedriveStatus.CANCELLED);
+        return Optional.of(job.toDto());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.status.compareAndSet(RedriveStatus.RUNNING, RedriveStatus.CANCELLED));
+        jobExecutor.shutdown();
+        pacer.shutdown();
+    }
+
+    void run(RedriveJob job) {
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "1000");
+
+        try (Consumer<Object, Object> consumer = consumerFactory.createConsumer(
+                "webhook-dlq-redrive", "dlq-redrive-", job.id.toString(), overrides)) {
+            Map<TopicPartition, Long> endOffsets = assign(consumer, job.request.getFrom());
+            Set<TopicPartition> remaining = new HashSet<>(endOffsets.keySet());
+            remaining.removeIf(partition -> consumer.position(partition) >= endOffsets.get(partition));
+
+            while (!remaining.isEmpty() && job.isRunning()) {
+                ConsumerRecords<Object, Object> records = consumer.poll(pollTimeout);
+                for (TopicPartition partition : records.partitions()) {
+                    long end = endOffsets.get(partition);
+                    for (ConsumerRecord<Object, Object> record : records.records(partition)) {
+                        if (record.offset() >= end || isPastWindow(record, job.request.getTo())) {
+                            remaining.remove(partition);
+                            consumer.pause(List.of(partition));
+                            break;
+                        }
+                        job.scanned.incrementAndGet();
+                        redrive(job, record);
+                    }
+                }
+                remaining.removeIf(partition -> consumer.position(partition) >= endOffsets.get(partition));
+            }
+
+            // Let every paced entry reach the topic before reporting the job as done
+            job.pending.acquire(maxPending);
+            job.finish();
+            log.info("Dead-letter redrive {} {}: {} matched, {} queued, {} failed", job.id, job.status.get(),
+                    job.matched.get(), job.queued.get(), job.failed.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail(e);
+        } catch (RuntimeException e) {
+            log.error("Dead-letter redrive {} failed", job.id, e);
+            job.fail(e);
+        }
+    }
+
+    private Map<TopicPartition, Long> assign(Consumer<Object, Object> consumer, Instant from) {
+        List<TopicPartition> partitions = consumer.partitionsFor(DeadLetterPublisher.TOPIC).stream()
+                .map(info -> new TopicPartition(info.topic(), info.partition()))
+                .toList();
+        consumer.assign(partitions);
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+        if (from == null) {
+            consumer.seekToBeginning(partitions);
+            return endOffsets;
+        }
+
+        Map<TopicPartition, Long> timestamps = new HashMap<>();
+        partitions.forEach(partition -> timestamps.put(partition, from.toEpochMilli()));
+        Map<TopicPartition, OffsetAndTimestamp> offsets = consumer.offsetsForTimes(timestamps);
+        for (TopicPartition partition : partitions) {
+            OffsetAndTimestamp offset = offsets.get(partition);
+            // No entry at or after "from": nothing to read in this partition
+            consumer.seek(partition, offset != null ? offset.offset() : endOffsets.get(partition));
+        }
+        return endOffsets;
+    }
+
+    private void redrive(RedriveJob job, ConsumerRecord<Object, Object> record) throws InterruptedException {
+        if (!(record.value() instanceof Map<?, ?> entry) || !matches(job.request, entry, record.timestamp())) {
+            return;
+        }
+
+        UUID eventId;
+        UUID endpointId;
+        UUID merchantId;
+        try {
+            eventId = UUID.fromString(String.valueOf(entry.get("eventId")));
+            endpointId = UUID.fromString(String.valueOf(entry.get("endpointId")));
+            merchantId = entry.get("merchantId") != null ? UUID.fromString(String.valueOf(entry.get("merchantId"))) : null;
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping dead-letter entry at {}-{}@{}: {}",
+                    record.topic(), record.partition(), record.offset(), e.getMessage());
+            return;
+        }
+
+        job.matched.incrementAndGet();
+        job.pending.acquire();
+        long delayNanos = job.nextSlotDelay(endpointId);
+        pacer.schedule(() -> queue(job, eventId, endpointId, merchantId), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void queue(RedriveJob job, UUID eventId, UUID endpointId, UUID merchantId) {
+        try {
+            deliveryQueue.enqueue(eventId, endpointId, merchantId).whenComplete((result, error) -> {
+                if (error != null) {
+                    queueFailed(job, eventId, endpointId, error);
+                } else {
+                    job.queued.incrementAndGet();
+                    redriven.increment();
+                    job.pending.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            queueFailed(job, eventId, endpointId, e);
+        }
+    }
+
+    private void queueFailed(RedriveJob job, UUID eventId, UUID endpointId, Throwable error) {
+        log.warn("Failed to queue redrive of event {} to endpoint {}: {}", eventId, endpointId, error.getMessage());
+        job.failed.incrementAndGet();
+        job.pending.release();
+    }
+
+    static boolean matches(RedriveRequestDTO request, Map<?, ?> entry, long timestamp) {
+        if (request.getFrom() != null && timestamp < request.getFrom().toEpochMilli()) {
+            return false;
+        }
+        if (request.getTo() != null && timestamp > request.getTo().toEpochMilli()) {
+            return false;
+        }
+        return matches(request.getMerchantId(), entry.get("merchantId"))
+                && matches(request.getEndpointId(), entry.get("endpointId"))
+                && matches(request.getEventType(), entry.get("eventType"));
+    }
+
+    private static boolean matches(Object expected, Object actual) {
+        return expected == null || expected.toString().equals(String.valueOf(actual));
+    }
+
+    private static boolean isPastWindow(ConsumerRecord<Object, Object> record, Instant to) {
+        return to != null && record.timestamp() > to.toEpochMilli() + CLOCK_SKEW_MS;
+    }
+
+    enum RedriveStatus {
+        RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+
+    final class RedriveJob {
+
+        private final UUID id;
+        private final RedriveRequestDTO request;
+        private final long intervalNanos;
+        private final Instant startedAt = Instant.now();
+        private final AtomicReference<RedriveStatus> status = new AtomicReference<>(RedriveStatus.RUNNING);
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong matched = new AtomicLong();
+        private final AtomicLong queued = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final Semaphore pending = new Semaphore(maxPending);
+        private final Map<UUID, Long> nextSlots = new HashMap<>();
+        private volatile Instant finishedAt;
+        private volatile String errorMessage;
+
+        RedriveJob(UUID id, RedriveRequestDTO request, double ratePerEndpoint) {
+            this.id = id;
+            this.request = request;
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerEndpoint);
+        }
+
+        boolean isRunning() {
+            return status.get() == RedriveStatus.RUNNING;
+        }
+
+        /**
+         * Only called from the scanning thread.
+         */
+        long nextSlotDelay(UUID endpointId) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextSlots.getOrDefault(endpointId, now));
+            nextSlots.put(endpointId, slot + intervalNanos);
+            return slot - now;
+        }
+
+        void finish() {
+            status.compareAndSet(RedriveStatus.RUNNING, RedriveStatus.COMPLETED);
+            finishedAt = Instant.now();
+        }
+
+        void fail(Exception e) {
+            errorMessage = e.getMessage();
+            status.set(RedriveStatus.FAILED);
+            finishedAt = Instant.now();
+        }
+
+        RedriveJobDTO toDto() {
+            return RedriveJobDTO.builder()
+                    .id(id)
+                    .status(status.get().name())
+                    .request(request)
+                    .scanned(scanned.get())
+                    .matched(matched.get())
+                    .queued(queued.get())
+                    .failed(failed.get())
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .errorMessage(errorMessage)
+                    .build();
+        }
+    }
+}
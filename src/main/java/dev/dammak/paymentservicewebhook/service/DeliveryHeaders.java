@@ -0,0 +1,39 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.routing.EndpointDescriptor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds the HTTP headers of one delivery: content type, signature, event metadata and the
+ * endpoint's custom headers. Runs once per attempt, on the delivery hot path.
+ */
+public final class DeliveryHeaders {
+
+    private DeliveryHeaders() {
+    }
+
+    public static Map<String, String> create(PreparedPayload payload, EndpointDescriptor endpoint, String signature) {
+        int customHeaders = endpoint.getHeaders() != null ? endpoint.getHeaders().size() : 0;
+        Map<String, String> headers = new LinkedHashMap<>((5 + customHeaders) * 4 / 3 + 1);
+        headers.put(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+
+        // Add signature
+        headers.put("X-Webhook-Signature", signature);
+
+        // Add event metadata
+        headers.put("X-Webhook-Event-Id", payload.getEventId().toString());
+        headers.put("X-Webhook-Event-Type", payload.getEventType());
+        headers.put("X-Webhook-Timestamp", String.valueOf(System.currentTimeMillis()));
+
+        // Add custom headers if configured
+        if (customHeaders > 0) {
+            headers.putAll(endpoint.getHeaders());
+        }
+
+        return headers;
+    }
+}
@@ -0,0 +1,355 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.entity.TimeOrderedUuidGenerator;
+import dev.dammak.paymentservicewebhook.entity.WebhookDelivery;
+import dev.dammak.paymentservicewebhook.repository.WebhookDeliveryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind journal for delivery state. Transitions recorded by concurrent deliveries are
+ * coalesced per delivery id (an IN_PROGRESS row that has not been flushed yet is simply
+ * replaced by its final state) and written as one JDBC batch upsert at most every
+ * {@code flush-interval}. The future returned by {@link #record(WebhookDelivery)} completes
+ * once the row is durable. A row that has reached SUCCESS or MAX_RETRIES_EXCEEDED is never
+ * overwritten, so a repeated write of a final state is a no-op that
+ * {@link #recordTransition(WebhookDelivery)} reports as such.
+ *
+ * A batch that fails is put back and retried with exponential backoff, up to
+ * {@code max-attempts} flushes, unless a newer state of the same delivery was recorded in the
+ * meantime. A constraint violation is retried row by row instead, so only the rows that
+ * break the constraint fail.
+ */
+
+@Component
+@Slf4j
+public class DeliveryJournal {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO webhook_deliveries (id, webhook_event_id, webhook_endpoint_id, status, attempt_number,
+                                            response_status, response_body, error_message, delivered_at,
+                                            next_retry_at, latency_ms, created_at, updated_at, version)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)
+            ON CONFLICT (id, created_at) DO UPDATE SET
+                status = EXCLUDED.status,
+                attempt_number = EXCLUDED.attempt_number,
+                response_status = EXCLUDED.response_status,
+                response_body = EXCLUDED.response_body,
+                error_message = EXCLUDED.error_message,
+                delivered_at = EXCLUDED.delivered_at,
+                next_retry_at = EXCLUDED.next_retry_at,
+                latency_ms = EXCLUDED.latency_ms,
+                updated_at = EXCLUDED.updated_at,
+                version = webhook_deliveries.version + 1
+            WHERE webhook_deliveries.status NOT IN ('SUCCESS', 'MAX_RETRIES_EXCEEDED')
+            """;
+
+    private static final long MAX_RETRY_DELAY_MS = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WebhookDeliveryRepository deliveryRepository;
+    private final boolean writeBehind;
+    private final long flushIntervalMs;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Map<UUID, PendingWrite> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final Timer flushTimer;
+    private final DistributionSummary flushSize;
+    private final Counter failedFlushes;
+    private long retryDelayMs;
+    private long retryAt;
+
+    public DeliveryJournal(JdbcTemplate jdbcTemplate,
+                           WebhookDeliveryRepository deliveryRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${webhook.delivery.journal.write-behind:true}") boolean writeBehind,
+                           @Value("${webhook.delivery.journal.flush-interval:50}") long flushIntervalMs,
+                           @Value("${webhook.delivery.journal.batch-size:500}") int batchSize,
+                           @Value("${webhook.delivery.journal.max-attempts:10}") int maxAttempts) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deliveryRepository = deliveryRepository;
+        this.writeBehind = writeBehind;
+        this.flushIntervalMs = flushIntervalMs;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+
+        Gauge.builder("webhook.delivery.journal.backlog", this, DeliveryJournal::backlog)
+                .description("Delivery state changes waiting to be written")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("webhook.delivery.journal.flush")
+                .description("Time to write one batch of delivery state changes")
+                .register(meterRegistry);
+        this.flushSize = DistributionSummary.builder("webhook.delivery.journal.batch.size")
+                .description("Delivery rows written per batch")
+                .register(meterRegistry);
+        this.failedFlushes = Counter.builder("webhook.delivery.journal.flush.failures")
+                .description("Batches that could not be written and were put back for a retry")
+                .register(meterRegistry);
+
+        if (writeBehind) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("delivery-journal-"));
+            this.flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Records the current state of {@code delivery}. New deliveries get their id here, so
+     * the caller can refer to the row before it has been written.
+     */
+    public CompletableFuture<WebhookDelivery> record(WebhookDelivery delivery) {
+        if (!writeBehind) {
+            return CompletableFuture.completedFuture(deliveryRepository.save(delivery));
+        }
+        return recordTransition(delivery).thenApply(changed -> delivery);
+    }
+
+    /**
+     * Like {@link #record(WebhookDelivery)}, but completes with whether the write changed the
+     * stored row: {@code false} if the row had already reached a final state. The direct
+     * (non write-behind) path always reports {@code true}.
+     */
+    public CompletableFuture<Boolean> recordTransition(WebhookDelivery delivery) {
+        if (!writeBehind) {
+            deliveryRepository.save(delivery);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (delivery.getId() == null) {
+            delivery.setId(TimeOrderedUuidGenerator.next());
+        }
+        if (delivery.getCreatedAt() == null) {
+            delivery.setCreatedAt(now);
+        }
+        delivery.setUpdatedAt(now);
+
+        CompletableFuture<Boolean> written = new CompletableFuture<>();
+        DeliveryRow row = DeliveryRow.of(delivery);
+        synchronized (pending) {
+            PendingWrite previous = pending.get(row.id());
+            List<CompletableFuture<Boolean>> waiters = previous != null ? previous.waiters() : new ArrayList<>(1);
+            waiters.add(written);
+            pending.put(row.id(), new PendingWrite(row, waiters, previous != null ? previous.attempts() : 0));
+        }
+        return written;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+
+        List<PendingWrite> unwritten = drain(Integer.MAX_VALUE);
+        if (!unwritten.isEmpty()) {
+            log.error("Delivery journal shut down with {} delivery rows unwritten", unwritten.size());
+            IllegalStateException shutDown = new IllegalStateException("Delivery journal shut down");
+            unwritten.forEach(write -> fail(write, shutDown));
+        }
+    }
+
+    int backlog() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Writes everything pending, stopping at the first batch that fails.
+     */
+    void flush() {
+        List<PendingWrite> batch;
+        while (!(batch = drain(batchSize)).isEmpty()) {
+            if (!write(batch)) {
+                retryDelayMs = retryDelayMs == 0 ? flushIntervalMs : Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+                retryAt = System.currentTimeMillis() + retryDelayMs;
+                return;
+            }
+            retryDelayMs = 0;
+        }
+    }
+
+    private void flushSafely() {
+        if (System.currentTimeMillis() < retryAt) {
+            return;
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Delivery journal flush failed", e);
+        }
+    }
+
+    private List<PendingWrite> drain(int limit) {
+        synchronized (pending) {
+            List<PendingWrite> batch = new ArrayList<>(Math.min(pending.size(), limit));
+            var iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < limit) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * @return false if the batch was put back because the database could not be reached
+     */
+    private boolean write(List<PendingWrite> batch) {
+        long start = System.nanoTime();
+        int[][] updated;
+        try {
+            updated = jdbcTemplate.batchUpdate(UPSERT_SQL, batch, batch.size(), (ps, write) -> bind(ps, write.row()));
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Batch of {} delivery rows violates a constraint, writing them one by one: {}",
+                    batch.size(), e.getMessage());
+            return writeEach(batch);
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} delivery rows, retrying: {}", batch.size(), e.getMessage());
+            failedFlushes.increment();
+            requeue(batch, e);
+            return false;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushSize.record(batch.size());
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i), updated[0][i]);
+        }
+        return true;
+    }
+
+    private boolean writeEach(List<PendingWrite> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            try {
+                complete(write, jdbcTemplate.update(UPSERT_SQL, ps -> bind(ps, write.row())));
+            } catch (DataIntegrityViolationException e) {
+                log.error("Dropping delivery row {}: {}", write.row().id(), e.getMessage());
+                fail(write, e);
+            } catch (RuntimeException e) {
+                log.error("Failed to write delivery row {}, retrying: {}", write.row().id(), e.getMessage());
+                failedFlushes.increment();
+                requeue(batch.subList(i, batch.size()), e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void requeue(List<PendingWrite> writes, RuntimeException cause) {
+        List<PendingWrite> exhausted = new ArrayList<>();
+        synchronized (pending) {
+            for (PendingWrite write : writes) {
+                PendingWrite newer = pending.get(write.row().id());
+                if (newer != null) {
+                    // A later state of the same delivery supersedes this one; its write covers both
+                    newer.waiters().addAll(0, write.waiters());
+                } else if (write.attempts() + 1 >= maxAttempts) {
+                    exhausted.add(write);
+                } else {
+                    pending.put(write.row().id(), new PendingWrite(write.row(), write.waiters(), write.attempts() + 1));
+                }
+            }
+        }
+        if (!exhausted.isEmpty()) {
+            log.error("Giving up on {} delivery rows after {} attempts", exhausted.size(), maxAttempts);
+            exhausted.forEach(write -> fail(write, cause));
+        }
+    }
+
+    private static void complete(PendingWrite write, int updated) {
+        // 0 means the conflict target was already final; SUCCESS_NO_INFO still counts as written
+        boolean changed = updated != 0;
+        write.waiters().forEach(waiter -> waiter.complete(changed));
+    }
+
+    private static void fail(PendingWrite write, Throwable cause) {
+        write.waiters().forEach(waiter -> waiter.completeExceptionally(cause));
+    }
+
+    private static void bind(PreparedStatement ps, DeliveryRow row) throws SQLException {
+        ps.setObject(1, row.id());
+        ps.setObject(2, row.eventId());
+        ps.setObject(3, row.endpointId());
+        ps.setString(4, row.status());
+        ps.setObject(5, row.attemptNumber());
+        ps.setObject(6, row.responseStatus());
+        ps.setString(7, row.responseBody());
+        ps.setString(8, row.errorMessage());
+        ps.setTimestamp(9, timestamp(row.deliveredAt()));
+        ps.setTimestamp(10, timestamp(row.nextRetryAt()));
+        ps.setObject(11, row.latencyMs());
+        ps.setTimestamp(12, timestamp(row.createdAt()));
+        ps.setTimestamp(13, timestamp(row.updatedAt()));
+    }
+
+    private static Timestamp timestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+
+    /**
+     * Immutable copy of the delivery taken when it was recorded, so later mutation of the
+     * entity by the caller cannot leak into a batch that is being written.
+     */
+    private record DeliveryRow(UUID id, UUID eventId, UUID endpointId, String status, Integer attemptNumber,
+                               Integer responseStatus, String responseBody, String errorMessage,
+                               LocalDateTime deliveredAt, LocalDateTime nextRetryAt, Long latencyMs,
+                               LocalDateTime createdAt, LocalDateTime updatedAt) {
+
+        static DeliveryRow of(WebhookDelivery delivery) {
+            return new DeliveryRow(
+                    delivery.getId(),
+                    delivery.getWebhookEvent().getId(),
+                    delivery.getWebhookEndpoint().getId(),
+                    delivery.getStatus().name(),
+                    delivery.getAttemptNumber(),
+                    delivery.getResponseStatus(),
+                    delivery.getResponseBody(),
+                    delivery.getErrorMessage(),
+                    delivery.getDeliveredAt(),
+                    delivery.getNextRetryAt(),
+                    delivery.getLatencyMs(),
+                    delivery.getCreatedAt(),
+                    delivery.getUpdatedAt());
+        }
+    }
+
+    private record PendingWrite(DeliveryRow row, List<CompletableFuture<Boolean>> waiters, int attempts) {
+    }
+}
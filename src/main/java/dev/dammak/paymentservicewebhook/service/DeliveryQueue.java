@@ -0,0 +1,59 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Appends delivery requests to the webhook-deliveries topic, keyed according to
+ * {@code webhook.delivery.ordering}.
+ */
+
+@Component
+@Slf4j
+public class DeliveryQueue {
+
+    public static final String TOPIC = "webhook-deliveries";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final String deliveryOrdering;
+
+    public DeliveryQueue(KafkaTemplate<String, Object> kafkaTemplate,
+                         @Value("${webhook.delivery.ordering:none}") String deliveryOrdering) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.deliveryOrdering = deliveryOrdering;
+    }
+
+    public CompletableFuture<SendResult<String, Object>> enqueue(UUID eventId, UUID endpointId, UUID merchantId) {
+        Map<String, Object> deliveryMessage = Map.of(
+                "eventId", eventId.toString(),
+                "endpointId", endpointId.toString(),
+                "timestamp", System.currentTimeMillis()
+        );
+
+        CompletableFuture<SendResult<String, Object>> sent =
+                kafkaTemplate.send(TOPIC, deliveryKey(endpointId, merchantId), deliveryMessage);
+        log.debug("Queued delivery for event: {} to endpoint: {}", eventId, endpointId);
+        return sent;
+    }
+
+    /**
+     * In ordered mode all deliveries for an endpoint (or merchant) share a partition, and the
+     * consumer runs each key's deliveries one after another. Unkeyed messages spread freely.
+     */
+    private String deliveryKey(UUID endpointId, UUID merchantId) {
+        if ("endpoint".equalsIgnoreCase(deliveryOrdering)) {
+            return endpointId.toString();
+        }
+        if ("merchant".equalsIgnoreCase(deliveryOrdering) && merchantId != null) {
+            return merchantId.toString();
+        }
+        return null;
+    }
+}
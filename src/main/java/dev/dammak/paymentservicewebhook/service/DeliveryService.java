@@ -1,26 +1,31 @@
 package dev.dammak.paymentservicewebhook.service;
 
 import dev.dammak.paymentservicewebhook.entity.WebhookDelivery;
-import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
-import dev.dammak.paymentservicewebhook.entity.WebhookEvent;
-import dev.dammak.paymentservicewebhook.exception.WebhookDeliveryException;
 import dev.dammak.paymentservicewebhook.repository.WebhookDeliveryRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookDeliveryRepository.RetryCandidate;
 import dev.dammak.paymentservicewebhook.repository.WebhookEndpointRepository;
 import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
+import dev.dammak.paymentservicewebhook.routing.EndpointDescriptor;
+import dev.dammak.paymentservicewebhook.routing.EndpointRoutingIndex;
+import dev.dammak.paymentservicewebhook.transport.DeliveryRequest;
+import dev.dammak.paymentservicewebhook.transport.DeliveryResponse;
+import dev.dammak.paymentservicewebhook.transport.DeliveryDispatcher;
+import dev.dammak.paymentservicewebhook.transport.EndpointRejectedException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.ResourceNotFoundException;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 /**
  * Created By damola.adekoya on 01/09/2025
  *
@@ -33,120 +38,260 @@ import java.util.concurrent.CompletableFuture;
 @Service
 @Slf4j
 @RequiredArgsConstructor
-@Transactional
 public class DeliveryService {
 
     private final WebhookDeliveryRepository deliveryRepository;
     private final WebhookEventRepository eventRepository;
     private final WebhookEndpointRepository endpointRepository;
     private final SignatureService signatureService;
-    private final RestTemplate restTemplate;
+    private final PreparedPayloadCache payloadCache;
+    private final EndpointRoutingIndex routingIndex;
+    private final DeliveryDispatcher deliveryDispatcher;
+    private final DeliveryJournal deliveryJournal;
+    private final InFlightDeliveryRegistry inFlightDeliveries;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor webhookExecutor;
+    private final WebhookMetrics metrics;
+    private final DeliveryStatisticsAggregator statistics;
+    private final DeadLetterPublisher deadLetters;
+    private final EventCompletionTracker completionTracker;
 
     @Value("${webhook.delivery.timeout:30000}")
     private int deliveryTimeout;
 
-    @Async("webhookExecutor")
-    @CircuitBreaker(name = "webhookDelivery", fallbackMethod = "deliveryFallback")
-    @Retry(name = "webhookDelivery")
+    @Value("${webhook.retry.jitter:0.2}")
+    private double retryJitter;
+
+    // lean: one row per completed attempt, in-flight state held as a lease instead of an IN_PROGRESS row
+    @Value("${webhook.delivery.attempts.mode:full}")
+    private String attemptMode;
+
     public CompletableFuture<WebhookDelivery> deliverWebhook(UUID eventId, UUID endpointId) {
+        return deliver(eventId, endpointId, null);
+    }
+
+    /**
+     * Runs a scheduled retry. Its RETRY_SCHEDULED row is closed in the transaction that starts
+     * the new attempt, before anything is sent, so a replica that claims the row once this
+     * node's claim has expired finds it closed rather than sending the webhook again.
+     * Completes with null if the row was already closed.
+     */
+    public CompletableFuture<WebhookDelivery> retryDelivery(RetryCandidate retry) {
+        return deliver(retry.getEventId(), retry.getEndpointId(), retry);
+    }
+
+    private CompletableFuture<WebhookDelivery> deliver(UUID eventId, UUID endpointId, RetryCandidate retry) {
         log.info("Delivering webhook event: {} to endpoint: {}", eventId, endpointId);
 
+        boolean lean = isLeanAttempts();
+        if (lean && !inFlightDeliveries.acquire(eventId, endpointId)) {
+            log.info("Delivery of event {} to endpoint {} is already in flight, skipping", eventId, endpointId);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Only the database work runs on the delivery executor; while the request waits for
+        // an endpoint slot or a response, no thread is held
+        metrics.deliveryStarted();
+        CompletableFuture<WebhookDelivery> result = CompletableFuture
+                .supplyAsync(() -> transactionTemplate.execute(status -> startAttempt(eventId, endpointId, lean, retry)), webhookExecutor)
+                .thenCompose(attempt -> attempt == null
+                        ? CompletableFuture.<WebhookDelivery>completedFuture(null)
+                        : deliveryDispatcher.submit(endpointId, attempt.request())
+                                .handleAsync((response, error) -> completeAttempt(attempt, response, error), webhookExecutor)
+                                .thenCompose(written -> written))
+                .whenComplete((delivery, error) -> metrics.deliveryFinished());
+
+        return lean
+                ? result.whenComplete((delivery, error) -> inFlightDeliveries.release(eventId, endpointId))
+                : result;
+    }
+
+    private boolean isLeanAttempts() {
+        return "lean".equalsIgnoreCase(attemptMode);
+    }
+
+    private DeliveryAttempt startAttempt(UUID eventId, UUID endpointId, boolean lean, RetryCandidate retry) {
         long startTime = System.currentTimeMillis();
 
-        WebhookEvent event = eventRepository.findById(eventId)
-                .orElseThrow(() -> new WebhookDeliveryException("Event not found"));
+        if (retry != null && deliveryRepository.markRetryDispatched(retry.getId(), retry.getCreatedAt()) == 0) {
+            log.info("Retry {} was already dispatched, skipping", retry.getId());
+            return null;
+        }
+
+        // Shared, already-serialised payload; only the signature and headers are per endpoint
+        PreparedPayload payload = payloadCache.get(eventId);
+        EndpointDescriptor endpoint = resolveEndpoint(endpointId);
 
-        WebhookEndpoint endpoint = endpointRepository.findById(endpointId)
-                .orElseThrow(() -> new WebhookDeliveryException("Endpoint not found"));
+        // Create request; the signed bytes are sent as the body unchanged
+        DeliveryRequest request = DeliveryRequest.builder()
+                .url(endpoint.getUrl())
+                .headers(createHeaders(payload, endpoint))
+                .body(payload.getBody())
+                .timeout(resolveTimeout(endpoint))
+                .build();
 
         // Check for existing delivery attempts
-        int attemptNumber = getNextAttemptNumber(eventId, endpointId);
+        int attemptNumber = getNextAttemptNumber(payload, endpointId);
 
         // Create delivery record
         WebhookDelivery delivery = WebhookDelivery.builder()
-                .webhookEvent(event)
-                .webhookEndpoint(endpoint)
+                .webhookEvent(eventRepository.getReferenceById(eventId))
+                .webhookEndpoint(endpointRepository.getReferenceById(endpointId))
                 .status(WebhookDelivery.DeliveryStatus.IN_PROGRESS)
                 .attemptNumber(attemptNumber)
                 .build();
 
-        delivery = deliveryRepository.save(delivery);
-
-        try {
-            // Prepare headers
-            HttpHeaders headers = createHeaders(event, endpoint);
-
-            // Create request
-            HttpEntity<Object> request = new HttpEntity<>(event.getPayload(), headers);
-
-            // Send webhook
-            ResponseEntity<String> response = restTemplate.exchange(
-                    endpoint.getUrl(),
-                    HttpMethod.POST,
-                    request,
-                    String.class
-            );
+        if (!lean) {
+            // Written behind; coalesced with the final state only if the attempt finishes within one flush interval
+            deliveryJournal.record(delivery);
+        }
 
-            long latency = System.currentTimeMillis() - startTime;
+        return new DeliveryAttempt(delivery, endpoint, payload, request, startTime);
+    }
 
-            // Update delivery record with success
-            delivery.setStatus(WebhookDelivery.DeliveryStatus.SUCCESS);
-            delivery.setResponseStatus(response.getStatusCodeValue());
+    private CompletableFuture<WebhookDelivery> completeAttempt(DeliveryAttempt attempt,
+                                                               DeliveryResponse response,
+                                                               Throwable error) {
+        WebhookDelivery delivery = attempt.delivery();
+        EndpointDescriptor endpoint = attempt.endpoint();
+        long latency = System.currentTimeMillis() - attempt.startTime();
+        delivery.setLatencyMs(latency);
+
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof EndpointRejectedException rejected) {
+                return rescheduleRejected(delivery, endpoint, rejected);
+            }
+            log.error("Failed to deliver webhook to {}: {}", endpoint.getUrl(), cause.getMessage());
+            metrics.recordDelivery(endpoint.getUrl(), WebhookMetrics.OUTCOME_ERROR, delivery.getAttemptNumber() > 1, latency);
+            markFailed(delivery, endpoint, cause.getMessage());
+        } else {
+            delivery.setResponseStatus(response.getStatusCode());
             delivery.setResponseBody(truncateResponseBody(response.getBody()));
-            delivery.setDeliveredAt(LocalDateTime.now());
-            delivery.setLatencyMs(latency);
-
-            log.info("Successfully delivered webhook to {} in {}ms", endpoint.getUrl(), latency);
-
-        } catch (Exception e) {
-            log.error("Failed to deliver webhook to {}: {}", endpoint.getUrl(), e.getMessage());
-
-            long latency = System.currentTimeMillis() - startTime;
 
-            // Update delivery record with failure
-            delivery.setStatus(WebhookDelivery.DeliveryStatus.FAILED);
-            delivery.setErrorMessage(e.getMessage());
-            delivery.setLatencyMs(latency);
+            if (response.isSuccessful()) {
+                // Update delivery record with success
+                delivery.setStatus(WebhookDelivery.DeliveryStatus.SUCCESS);
+                delivery.setDeliveredAt(LocalDateTime.now());
 
-            // Schedule retry if enabled
-            if (endpoint.getRetryEnabled() && attemptNumber < endpoint.getMaxRetries()) {
-                scheduleRetry(delivery);
+                log.info("Successfully delivered webhook to {} in {}ms", endpoint.getUrl(), latency);
+                metrics.recordDelivery(endpoint.getUrl(), WebhookMetrics.OUTCOME_SUCCESS, delivery.getAttemptNumber() > 1, latency);
+                if (delivery.getAttemptNumber() == 1) {
+                    recordReceiptToDeliveryLatency(attempt.payload());
+                }
             } else {
-                delivery.setStatus(WebhookDelivery.DeliveryStatus.MAX_RETRIES_EXCEEDED);
+                log.error("Webhook to {} was rejected with HTTP {}", endpoint.getUrl(), response.getStatusCode());
+                metrics.recordDelivery(endpoint.getUrl(), WebhookMetrics.OUTCOME_HTTP_ERROR, delivery.getAttemptNumber() > 1, latency);
+                markFailed(delivery, endpoint, "Endpoint responded with HTTP " + response.getStatusCode());
             }
         }
 
-        delivery = deliveryRepository.save(delivery);
+        statistics.record(endpoint.getId(), delivery.getStatus() == WebhookDelivery.DeliveryStatus.SUCCESS,
+                latency, LocalDateTime.now());
 
-        // Update event status if all deliveries are complete
-        updateEventStatus(eventId);
+        // Completes once the final state is durable, so callers can commit offsets safely
+        if (!EventCompletionTracker.isTerminal(delivery.getStatus())) {
+            return deliveryJournal.record(delivery);
+        }
+
+        // Counted only once the terminal state is written, so a settled event never has an open delivery,
+        // and only by the write that made the row final, so a repeated write never counts twice
+        PreparedPayload payload = attempt.payload();
+        return deliveryJournal.recordTransition(delivery).thenApply(changed -> {
+            if (!changed) {
+                log.debug("Delivery {} was already final", delivery.getId());
+                return delivery;
+            }
+            completionTracker.deliveryFinished(delivery, payload.getCreatedAt());
+            if (delivery.getStatus() == WebhookDelivery.DeliveryStatus.MAX_RETRIES_EXCEEDED) {
+                // Dead-lettered only once the terminal state is written, so a redrive never races it
+                deadLetters.publish(delivery, endpoint, payload.getEventType());
+            }
+            return delivery;
+        });
+    }
 
-        return CompletableFuture.completedFuture(delivery);
+    /**
+     * The endpoint's bulkhead turned the delivery away before sending it, so the endpoint was
+     * never called. The row is parked as RETRY_SCHEDULED under the previous attempt's number,
+     * which makes the retry run as this attempt again instead of using up a retry.
+     */
+    private CompletableFuture<WebhookDelivery> rescheduleRejected(WebhookDelivery delivery,
+                                                                  EndpointDescriptor endpoint,
+                                                                  EndpointRejectedException rejected) {
+        log.warn("Delivery to {} was not sent, retrying in {}: {}",
+                endpoint.getUrl(), rejected.getRetryAfter(), rejected.getMessage());
+        delivery.setLatencyMs(null);
+        delivery.setStatus(WebhookDelivery.DeliveryStatus.RETRY_SCHEDULED);
+        delivery.setErrorMessage(rejected.getMessage());
+        delivery.setAttemptNumber(delivery.getAttemptNumber() - 1);
+        delivery.setNextRetryAt(LocalDateTime.now().plus(rejected.getRetryAfter()));
+        metrics.retryScheduled(endpoint.getUrl());
+        return deliveryJournal.record(delivery);
     }
 
-    private HttpHeaders createHeaders(WebhookEvent event, WebhookEndpoint endpoint) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+    /**
+     * Parks a delivery whose attempt could not be started or recorded as RETRY_SCHEDULED,
+     * under the latest attempt's number, so the retry scheduler runs it again and the consumer
+     * can commit its batch without polling deliveries that already went out.
+     */
+    public WebhookDelivery parkForRetry(UUID eventId, UUID endpointId, String reason) {
+        return transactionTemplate.execute(status -> {
+            int attemptNumber = deliveryRepository.findLatestAttemptNumber(eventId, endpointId);
+            WebhookDelivery delivery = WebhookDelivery.builder()
+                    .webhookEvent(eventRepository.getReferenceById(eventId))
+                    .webhookEndpoint(endpointRepository.getReferenceById(endpointId))
+                    .status(WebhookDelivery.DeliveryStatus.RETRY_SCHEDULED)
+                    .attemptNumber(attemptNumber)
+                    .errorMessage(reason)
+                    .nextRetryAt(LocalDateTime.now().plusSeconds(calculateRetryDelay(Math.max(attemptNumber, 1))))
+                    .build();
+            log.warn("Delivery of event {} to endpoint {} failed before it was recorded, parked for retry: {}",
+                    eventId, endpointId, reason);
+            return deliveryRepository.save(delivery);
+        });
+    }
 
-        // Add signature
-        String signature = signatureService.generateSignature(
-                event.getPayload(),
-                endpoint.getSecret()
-        );
-        headers.set("X-Webhook-Signature", signature);
+    private EndpointDescriptor resolveEndpoint(UUID endpointId) {
+        return routingIndex.findEndpoint(endpointId)
+                .or(() -> endpointRepository.findByIdWithSubscriptions(endpointId).map(EndpointDescriptor::from))
+                .orElseThrow(() -> new ResourceNotFoundException("Endpoint not found"));
+    }
 
-        // Add event metadata
-        headers.set("X-Webhook-Event-Id", event.getId().toString());
-        headers.set("X-Webhook-Event-Type", event.getEventType());
-        headers.set("X-Webhook-Timestamp", String.valueOf(System.currentTimeMillis()));
+    private void markFailed(WebhookDelivery delivery, EndpointDescriptor endpoint, String errorMessage) {
+        // Update delivery record with failure
+        delivery.setStatus(WebhookDelivery.DeliveryStatus.FAILED);
+        delivery.setErrorMessage(errorMessage);
+
+        // Schedule retry if enabled
+        if (endpoint.isRetryEnabled() && delivery.getAttemptNumber() < endpoint.getMaxRetries()) {
+            scheduleRetry(delivery);
+            metrics.retryScheduled(endpoint.getUrl());
+        } else {
+            delivery.setStatus(WebhookDelivery.DeliveryStatus.MAX_RETRIES_EXCEEDED);
+            metrics.retryExhausted(endpoint.getUrl());
+        }
+    }
 
-        // Add custom headers if configured
-        if (endpoint.getHeaders() != null) {
-            endpoint.getHeaders().forEach((key, value) ->
-                    headers.set(key, value.toString()));
+    private void recordReceiptToDeliveryLatency(PreparedPayload payload) {
+        if (payload.getReceivedAt() == null) {
+            return;
         }
 
-        return headers;
+        metrics.recordReceiptToDelivery(payload.getReceivedAt());
+    }
+
+    private Map<String, String> createHeaders(PreparedPayload payload, EndpointDescriptor endpoint) {
+        String signature = metrics.sign(() -> signatureService.sign(payload.getBody(), endpoint.getSecret()));
+        return DeliveryHeaders.create(payload, endpoint, signature);
+    }
+
+    private Duration resolveTimeout(EndpointDescriptor endpoint) {
+        // Per-endpoint timeout takes precedence over the global default
+        if (endpoint.getTimeoutSeconds() != null && endpoint.getTimeoutSeconds() > 0) {
+            return Duration.ofSeconds(endpoint.getTimeoutSeconds());
+        }
+        return Duration.ofMillis(deliveryTimeout);
     }
 
     private void scheduleRetry(WebhookDelivery delivery) {
@@ -163,40 +308,32 @@ public class DeliveryService {
     private long calculateRetryDelay(int attemptNumber) {
         // Exponential backoff: 2^attempt * base_delay
         long baseDelay = 10; // 10 seconds
-        return Math.min((long) Math.pow(2, attemptNumber) * baseDelay, 3600); // Max 1 hour
+        long delay = Math.min((long) Math.pow(2, attemptNumber) * baseDelay, 3600); // Max 1 hour
+
+        // Spread retries of a failed batch so a recovering endpoint is not hit all at once
+        long spread = (long) (delay * retryJitter);
+        return spread > 0 ? delay - spread + ThreadLocalRandom.current().nextLong(2 * spread + 1) : delay;
     }
 
-    private int getNextAttemptNumber(UUID eventId, UUID endpointId) {
-        return deliveryRepository.findByEventAndEndpoint(eventId, endpointId)
-                .stream()
-                .mapToInt(WebhookDelivery::getAttemptNumber)
-                .max()
-                .orElse(0) + 1;
+    private int getNextAttemptNumber(PreparedPayload payload, UUID endpointId) {
+        if (payload.getCreatedAt() == null) {
+            return deliveryRepository.findLatestAttemptNumber(payload.getEventId(), endpointId) + 1;
+        }
+        return deliveryRepository.findLatestAttemptNumber(payload.getEventId(), endpointId, payload.getCreatedAt()) + 1;
     }
 
     private String truncateResponseBody(String responseBody) {
         if (responseBody == null) return null;
-        int maxLength = 1000;
+        int maxLength = DeliveryResponse.MAX_BODY_LENGTH;
         return responseBody.length() > maxLength
                 ? responseBody.substring(0, maxLength) + "..."
                 : responseBody;
     }
 
-    private void updateEventStatus(UUID eventId) {
-        // Check if all deliveries are complete for this event
-        // Update event status accordingly
-    }
-
-    public CompletableFuture<WebhookDelivery> deliveryFallback(UUID eventId,
-                                                               UUID endpointId,
-                                                               Exception ex) {
-        log.error("Circuit breaker activated for delivery to endpoint: {}", endpointId, ex);
-
-        WebhookDelivery delivery = WebhookDelivery.builder()
-                .status(WebhookDelivery.DeliveryStatus.FAILED)
-                .errorMessage("Circuit breaker activated: " + ex.getMessage())
-                .build();
-
-        return CompletableFuture.completedFuture(delivery);
+    private record DeliveryAttempt(WebhookDelivery delivery,
+                                   EndpointDescriptor endpoint,
+                                   PreparedPayload payload,
+                                   DeliveryRequest request,
+                                   long startTime) {
     }
-}
\ No newline at end of file
+}
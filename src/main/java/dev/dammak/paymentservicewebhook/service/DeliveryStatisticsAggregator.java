@@ -0,0 +1,226 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.dto.WebhookEndpointDTO;
+import dev.dammak.paymentservicewebhook.entity.WebhookDeliveryStats;
+import dev.dammak.paymentservicewebhook.repository.WebhookDeliveryStatsRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streaming per-endpoint delivery statistics. Completed attempts update an in-memory hourly
+ * bucket (counters plus a {@link LatencyHistogram}); buckets that changed are written to
+ * {@code webhook_delivery_stats} every {@code flush-interval}, one row per endpoint, hour and
+ * instance. Endpoint statistics merge the rows in the window, which is a primary key range of
+ * at most (hours x replicas) rows, instead of aggregating over {@code webhook_deliveries}.
+ *
+ * Counts are per attempt: a delivery that failed once and then succeeded counts one failure
+ * and one success.
+ */
+
+@Component
+@Slf4j
+public class DeliveryStatisticsAggregator {
+
+    private final WebhookDeliveryStatsRepository statsRepository;
+    private final Duration window;
+    private final Duration retention;
+    private final UUID instanceId = UUID.randomUUID();
+    private final Map<WebhookDeliveryStats.Key, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public DeliveryStatisticsAggregator(WebhookDeliveryStatsRepository statsRepository,
+                                        @Value("${webhook.statistics.window:24h}") Duration window,
+                                        @Value("${webhook.statistics.retention:30d}") Duration retention) {
+        this.statsRepository = statsRepository;
+        this.window = window;
+        this.retention = retention;
+    }
+
+    public void record(UUID endpointId, boolean success, long latencyMs, LocalDateTime completedAt) {
+        WebhookDeliveryStats.Key key = new WebhookDeliveryStats.Key(
+                endpointId, completedAt.truncatedTo(ChronoUnit.HOURS), instanceId);
+        buckets.computeIfAbsent(key, k -> new Bucket()).record(success, latencyMs, completedAt);
+    }
+
+    /**
+     * Statistics over the last {@code window}, rounded out to whole hours. Buckets still held
+     * by this instance are read from memory, so its own deliveries show up before the next flush.
+     */
+    public WebhookEndpointDTO.WebhookStatisticsDTO getStatistics(UUID endpointId) {
+        LocalDateTime since = LocalDateTime.now().minus(window).truncatedTo(ChronoUnit.HOURS);
+
+        Summary summary = new Summary();
+        for (WebhookDeliveryStats row : statsRepository.findByEndpointSince(endpointId, since)) {
+            if (!buckets.containsKey(row.getId())) {
+                summary.add(row.getTotalCount(), row.getSuccessCount(), row.getFailureCount(), row.getLatencySumMs(),
+                        LatencyHistogram.fromBytes(row.getLatencyHistogram()), row.getLastDeliveryAt());
+            }
+        }
+        buckets.forEach((key, bucket) -> {
+            if (key.getEndpointId().equals(endpointId) && !key.getBucketStart().isBefore(since)) {
+                bucket.addTo(summary);
+            }
+        });
+        return summary.toDto();
+    }
+
+    /**
+     * Writes buckets that changed since the last flush and forgets older hours that are
+     * already durable.
+     */
+    @Scheduled(fixedDelayString = "${webhook.statistics.flush-interval:10000}")
+    public void flush() {
+        List<WebhookDeliveryStats> rows = new ArrayList<>();
+        List<Bucket> flushed = new ArrayList<>();
+        buckets.forEach((key, bucket) -> {
+            WebhookDeliveryStats row = bucket.snapshotIfDirty(key);
+            if (row != null) {
+                rows.add(row);
+                flushed.add(bucket);
+            }
+        });
+
+        if (!rows.isEmpty()) {
+            try {
+                statsRepository.saveAll(rows);
+                flushed.forEach(Bucket::markPersisted);
+                log.debug("Flushed {} delivery statistics buckets", rows.size());
+            } catch (RuntimeException e) {
+                // Buckets stay dirty and are written on the next flush
+                flushed.forEach(Bucket::markDirty);
+                log.warn("Failed to flush delivery statistics: {}", e.getMessage());
+                return;
+            }
+        }
+
+        // The previous hour is kept for attempts that complete just across the boundary
+        LocalDateTime evictBefore = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(1);
+        buckets.entrySet().removeIf(entry ->
+                entry.getKey().getBucketStart().isBefore(evictBefore) && entry.getValue().isClean());
+    }
+
+    @Scheduled(cron = "${webhook.statistics.cleanup-cron:0 45 3 * * *}")
+    public void deleteExpiredBuckets() {
+        int deleted = statsRepository.deleteBucketsBefore(LocalDateTime.now().minus(retention));
+        if (deleted > 0) {
+            log.info("Deleted {} expired delivery statistics rows", deleted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    int bufferedBuckets() {
+        return buckets.size();
+    }
+
+    private static final class Bucket {
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private long total;
+        private long success;
+        private long failure;
+        private long latencySum;
+        private LocalDateTime lastDeliveryAt;
+        private boolean dirty;
+        private boolean persisted;
+
+        synchronized void record(boolean succeeded, long latencyMs, LocalDateTime completedAt) {
+            total++;
+            if (succeeded) {
+                success++;
+            } else {
+                failure++;
+            }
+            latencySum += latencyMs;
+            histogram.record(latencyMs);
+            if (lastDeliveryAt == null || completedAt.isAfter(lastDeliveryAt)) {
+                lastDeliveryAt = completedAt;
+            }
+            dirty = true;
+        }
+
+        synchronized WebhookDeliveryStats snapshotIfDirty(WebhookDeliveryStats.Key key) {
+            if (!dirty) {
+                return null;
+            }
+            dirty = false;
+            return WebhookDeliveryStats.builder()
+                    .id(key)
+                    .totalCount(total)
+                    .successCount(success)
+                    .failureCount(failure)
+                    .latencySumMs(latencySum)
+                    .latencyHistogram(histogram.toBytes())
+                    .lastDeliveryAt(lastDeliveryAt)
+                    .updatedAt(LocalDateTime.now())
+                    .isNew(!persisted)
+                    .build();
+        }
+
+        synchronized void markPersisted() {
+            persisted = true;
+        }
+
+        synchronized void markDirty() {
+            dirty = true;
+        }
+
+        synchronized boolean isClean() {
+            return !dirty && persisted;
+        }
+
+        synchronized void addTo(Summary summary) {
+            summary.add(total, success, failure, latencySum, histogram, lastDeliveryAt);
+        }
+    }
+
+    private static final class Summary {
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private long total;
+        private long success;
+        private long failure;
+        private long latencySum;
+        private LocalDateTime lastDeliveryAt;
+
+        void add(long total, long success, long failure, long latencySum,
+                 LatencyHistogram histogram, LocalDateTime lastDeliveryAt) {
+            this.total += total;
+            this.success += success;
+            this.failure += failure;
+            this.latencySum += latencySum;
+            this.histogram.merge(histogram);
+            if (lastDeliveryAt != null && (this.lastDeliveryAt == null || lastDeliveryAt.isAfter(this.lastDeliveryAt))) {
+                this.lastDeliveryAt = lastDeliveryAt;
+            }
+        }
+
+        WebhookEndpointDTO.WebhookStatisticsDTO toDto() {
+            return WebhookEndpointDTO.WebhookStatisticsDTO.builder()
+                    .totalDeliveries(total)
+                    .successfulDeliveries(success)
+                    .failedDeliveries(failure)
+                    .successRate(total > 0 ? success * 100.0 / total : 0.0)
+                    .averageLatencyMs(total > 0 ? (double) latencySum / total : 0.0)
+                    .p50LatencyMs(histogram.percentile(50))
+                    .p95LatencyMs(histogram.percentile(95))
+                    .p99LatencyMs(histogram.percentile(99))
+                    .lastDeliveryAt(lastDeliveryAt)
+                    .build();
+        }
+    }
+}
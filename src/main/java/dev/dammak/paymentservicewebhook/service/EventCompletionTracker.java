@@ -0,0 +1,75 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookDelivery;
+import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Moves an event out of PROCESSING once every endpoint it fans out to has a final outcome.
+ * Ingest stores the number of endpoints on the event; each delivery that reaches SUCCESS or
+ * MAX_RETRIES_EXCEEDED decrements it with one conditional UPDATE, and the decrement that
+ * reaches zero sets DELIVERED, or FAILED if any endpoint exhausted its retries. Callers report
+ * a delivery only when its row first becomes final, and the UPDATE skips endpoints that
+ * already have a final row, so repeated deliveries never count twice.
+ *
+ * A success for an endpoint that had already exhausted its retries, as a dead-letter redrive
+ * produces, is not counted that way; it takes the endpoint's failure back instead, so the
+ * event leaves FAILED once none of its endpoints remain failed.
+ *
+ * A failed update is only logged: the event stays PROCESSING and {@link StaleEventSweeper}
+ * settles it from its delivery rows. The same happens in the rare case where two attempts for
+ * one endpoint finish at the same moment and each sees the other, which undercounts rather
+ * than settling the event early.
+ */
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class EventCompletionTracker {
+
+    private final WebhookEventRepository eventRepository;
+
+    /**
+     * @param delivery a delivery whose row has just become final
+     * @param eventCreatedAt the event's created_at, which locates its partition
+     */
+    public void deliveryFinished(WebhookDelivery delivery, LocalDateTime eventCreatedAt) {
+        WebhookDelivery.DeliveryStatus status = delivery.getStatus();
+        if (!isTerminal(status)) {
+            return;
+        }
+        UUID eventId = delivery.getWebhookEvent().getId();
+        if (eventCreatedAt == null) {
+            log.debug("No creation time for event {}, leaving completion to the sweeper", eventId);
+            return;
+        }
+
+        int failed = status == WebhookDelivery.DeliveryStatus.MAX_RETRIES_EXCEEDED ? 1 : 0;
+        try {
+            UUID endpointId = delivery.getWebhookEndpoint().getId();
+            if (eventRepository.recordDeliveryFinished(eventId, eventCreatedAt, endpointId,
+                    delivery.getId(), failed, LocalDateTime.now()) > 0) {
+                return;
+            }
+            if (failed == 0 && eventRepository.recordFailedDeliveryRecovered(eventId, eventCreatedAt, endpointId,
+                    delivery.getId(), LocalDateTime.now()) > 0) {
+                log.info("Delivery {} recovered the failed endpoint {} of event {}", delivery.getId(), endpointId, eventId);
+                return;
+            }
+            // Already settled or already counted for this endpoint, e.g. a replayed delivery
+            log.debug("Delivery {} of event {} was not counted", delivery.getId(), eventId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to record delivery outcome for event {}: {}", eventId, e.getMessage());
+        }
+    }
+
+    static boolean isTerminal(WebhookDelivery.DeliveryStatus status) {
+        return status == WebhookDelivery.DeliveryStatus.SUCCESS
+                || status == WebhookDelivery.DeliveryStatus.MAX_RETRIES_EXCEEDED;
+    }
+}
@@ -1,17 +1,27 @@
 package dev.dammak.paymentservicewebhook.service;
 
 import dev.dammak.paymentservicewebhook.dto.WebhookEventDTO;
-import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import dev.dammak.paymentservicewebhook.entity.DeliveryOutboxMessage;
 import dev.dammak.paymentservicewebhook.entity.WebhookEvent;
+import dev.dammak.paymentservicewebhook.entity.WebhookIdempotencyKey;
 import dev.dammak.paymentservicewebhook.exception.DuplicateEventException;
 import dev.dammak.paymentservicewebhook.mapper.WebhookMapper;
+import dev.dammak.paymentservicewebhook.repository.DeliveryOutboxRepository;
 import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookIdempotencyKeyRepository;
+import dev.dammak.paymentservicewebhook.routing.EndpointDescriptor;
+import dev.dammak.paymentservicewebhook.routing.EndpointRoutingIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -31,73 +41,163 @@ import java.util.UUID;
 @Transactional
 public class EventProcessingService {
 
+    static final String RECEIPT_KEY_PREFIX = "receipt:";
+
     private final WebhookEventRepository eventRepository;
-    private final WebhookService webhookService;
+    private final WebhookIdempotencyKeyRepository idempotencyKeyRepository;
+    private final EndpointRoutingIndex routingIndex;
+    private final IdempotencyStore idempotencyStore;
+    private final PreparedPayloadCache payloadCache;
+    private final WebhookMetrics metrics;
     private final DeliveryService deliveryService;
     private final WebhookMapper mapper;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final DeliveryOutboxRepository outboxRepository;
 
     public WebhookEventDTO processIncomingEvent(String provider,
                                                 String eventType,
                                                 Map<String, Object> payload,
                                                 String idempotencyKey,
                                                 String sourceIp) {
+        return processIncomingEvent(provider, eventType, payload, idempotencyKey, sourceIp,
+                null, System.currentTimeMillis());
+    }
+
+    /**
+     * Persists and fans out an event. {@code receivedAt} is the time the provider request
+     * hit the service; it is kept in the event metadata so delivery can report
+     * receipt-to-delivery latency.
+     */
+    public WebhookEventDTO processIncomingEvent(String provider,
+                                                String eventType,
+                                                Map<String, Object> payload,
+                                                String idempotencyKey,
+                                                String sourceIp,
+                                                String receiptId,
+                                                long receivedAt) {
+        long start = System.nanoTime();
+        try {
+            WebhookEventDTO event = ingest(provider, eventType, payload, idempotencyKey, sourceIp, receiptId, receivedAt);
+            metrics.recordIngest(provider, eventType, WebhookMetrics.OUTCOME_SUCCESS, start);
+            return event;
+        } catch (DuplicateEventException e) {
+            metrics.recordIngest(provider, eventType, WebhookMetrics.OUTCOME_DUPLICATE, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.recordIngest(provider, eventType, WebhookMetrics.OUTCOME_ERROR, start);
+            throw e;
+        }
+    }
+
+    private WebhookEventDTO ingest(String provider,
+                                   String eventType,
+                                   Map<String, Object> payload,
+                                   String idempotencyKey,
+                                   String sourceIp,
+                                   String receiptId,
+                                   long receivedAt) {
         log.info("Processing incoming event: {} from provider: {}", eventType, provider);
 
-        // Check for duplicate event
-        if (idempotencyKey != null) {
-            eventRepository.findByIdempotencyKey(idempotencyKey)
-                    .ifPresent(existing -> {
-                        log.warn("Duplicate event with idempotency key: {}", idempotencyKey);
-                        throw new DuplicateEventException("Event already processed");
-                    });
+        // Without a provider key, an accepted event is deduplicated by its receipt id, so a
+        // record redelivered after the event committed but before its offset did is dropped
+        String dedupeKey = idempotencyKey != null ? idempotencyKey : receiptKey(receiptId);
+
+        // Claim the idempotency key; the unique constraint backs this up if the store is unavailable
+        if (dedupeKey != null) {
+            IdempotencyStore.ClaimResult claim = idempotencyStore.claim(dedupeKey);
+            if (claim == IdempotencyStore.ClaimResult.DUPLICATE) {
+                log.warn("Duplicate event with idempotency key: {}", dedupeKey);
+                throw new DuplicateEventException("Event already processed");
+            }
+            if (claim == IdempotencyStore.ClaimResult.CLAIMED) {
+                releaseClaimOnRollback(dedupeKey);
+            }
         }
 
-        // Create and save event
+        // Find active endpoints subscribed to this event
+        long routingStart = System.nanoTime();
+        List<EndpointDescriptor> endpoints = routingIndex.lookup(eventType);
+        metrics.recordRouting(eventType, endpoints.size(), routingStart);
+
+        // The final status is known up front, so the event is written exactly once
         WebhookEvent event = WebhookEvent.builder()
                 .provider(provider)
                 .eventType(eventType)
                 .payload(payload)
                 .idempotencyKey(idempotencyKey)
                 .sourceIp(sourceIp)
-                .status(WebhookEvent.EventStatus.PENDING)
+                .metadata(ingestionMetadata(receiptId, receivedAt))
+                .status(endpoints.isEmpty()
+                        ? WebhookEvent.EventStatus.DELIVERED
+                        : WebhookEvent.EventStatus.PROCESSING)
+                .outstandingDeliveries(endpoints.size())
+                .expectedDeliveries(endpoints.size())
                 .build();
 
-        event = eventRepository.save(event);
-
-        // Find active endpoints subscribed to this event
-        List<WebhookEndpoint> endpoints = webhookService.getActiveEndpointsForEvent(eventType);
+        try {
+            event = eventRepository.saveAndFlush(event);
+            if (dedupeKey != null) {
+                idempotencyKeyRepository.saveAndFlush(WebhookIdempotencyKey.builder()
+                        .idempotencyKey(dedupeKey)
+                        .webhookEventId(event.getId())
+                        .createdAt(LocalDateTime.now())
+                        .build());
+            }
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Duplicate event with idempotency key: {}", dedupeKey);
+            throw new DuplicateEventException("Event already processed", e);
+        }
 
         if (endpoints.isEmpty()) {
             log.warn("No active endpoints found for event type: {}", eventType);
-            event.setStatus(WebhookEvent.EventStatus.DELIVERED);
-            eventRepository.save(event);
-        } else {
-            // Queue deliveries
-            for (WebhookEndpoint endpoint : endpoints) {
-                queueDelivery(event.getId(), endpoint.getId());
-            }
-            event.setStatus(WebhookEvent.EventStatus.PROCESSING);
-            eventRepository.save(event);
+            return mapper.toEventDTO(event);
+        }
+
+        // Serialise the payload once for every delivery this event fans out to
+        payloadCache.prepare(event);
+
+        // Queue deliveries through the outbox, so they are published only if the event commits
+        LocalDateTime queuedAt = LocalDateTime.now();
+        List<DeliveryOutboxMessage> deliveries = new ArrayList<>(endpoints.size());
+        for (EndpointDescriptor endpoint : endpoints) {
+            deliveries.add(DeliveryOutboxMessage.builder()
+                    .webhookEventId(event.getId())
+                    .webhookEndpointId(endpoint.getId())
+                    .merchantId(endpoint.getMerchantId())
+                    .createdAt(queuedAt)
+                    .eventCreatedAt(event.getCreatedAt())
+                    .build());
         }
+        outboxRepository.saveAll(deliveries);
 
         return mapper.toEventDTO(event);
     }
 
-    private void queueDelivery(UUID eventId, UUID endpointId) {
-        Map<String, Object> deliveryMessage = Map.of(
-                "eventId", eventId.toString(),
-                "endpointId", endpointId.toString(),
-                "timestamp", System.currentTimeMillis()
-        );
+    private void releaseClaimOnRollback(String idempotencyKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
 
-        kafkaTemplate.send("webhook-deliveries", deliveryMessage);
-        log.debug("Queued delivery for event: {} to endpoint: {}", eventId, endpointId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    idempotencyStore.release(idempotencyKey);
+                }
+            }
+        });
     }
 
-    public void processStaleEvents() {
-        // This method would be called by a scheduled job to handle stale events
-        log.info("Processing stale events");
-        // Implementation would mark old pending events as expired
+    // Prefixed so a receipt id can never collide with a key chosen by a provider
+    static String receiptKey(String receiptId) {
+        return receiptId != null ? RECEIPT_KEY_PREFIX + receiptId : null;
+    }
+
+    private Map<String, Object> ingestionMetadata(String receiptId, long receivedAt) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(WebhookEvent.METADATA_RECEIVED_AT, receivedAt);
+        if (receiptId != null) {
+            metadata.put(WebhookEvent.METADATA_RECEIPT_ID, receiptId);
+        }
+        return metadata;
     }
 }
@@ -0,0 +1,353 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.dto.EventReplayJobDTO;
+import dev.dammak.paymentservicewebhook.dto.EventReplayRequestDTO;
+import dev.dammak.paymentservicewebhook.entity.EventReplayJob;
+import dev.dammak.paymentservicewebhook.entity.EventSubscription;
+import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import dev.dammak.paymentservicewebhook.exception.WebhookException;
+import dev.dammak.paymentservicewebhook.repository.EventReplayJobRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookEndpointRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Replays an endpoint's past events through the normal delivery pipeline. A job walks
+ * webhook_events in (created_at, id) order with keyset pages of ids only, queues each event
+ * for the endpoint on webhook-deliveries at {@code rate-per-second}, and checkpoints the
+ * cursor once Kafka has acknowledged everything before it. After a failure, cancellation
+ * or a node stopping, the job continues from its checkpoint; events after the checkpoint
+ * may be queued twice, which merchants already handle via X-Webhook-Event-Id.
+ *
+ * A running job belongs to one node. Jobs whose owner has not checkpointed within
+ * {@code stale-after} are taken over by whichever node claims them first.
+ */
+
+@Service
+@Slf4j
+public class EventReplayService {
+
+    // Smallest UUID, so the first page starts with every event created at "from"
+    private static final UUID MIN_UUID = new UUID(0, 0);
+
+    private final EventReplayJobRepository jobRepository;
+    private final WebhookEndpointRepository endpointRepository;
+    private final WebhookEventRepository eventRepository;
+    private final DeliveryQueue deliveryQueue;
+    private final String nodeId;
+    private final double defaultRate;
+    private final int batchSize;
+    private final long checkpointIntervalNanos;
+    private final Duration staleAfter;
+    private final ExecutorService executor;
+    private final AtomicInteger running = new AtomicInteger();
+    private final Counter replayed;
+    private volatile boolean stopping;
+
+    public EventReplayService(EventReplayJobRepository jobRepository,
+                              WebhookEndpointRepository endpointRepository,
+                              WebhookEventRepository eventRepository,
+                              DeliveryQueue deliveryQueue,
+                              MeterRegistry meterRegistry,
+                              @Value("${webhook.node-id:${HOSTNAME:local}}") String nodeId,
+                              @Value("${webhook.replay.rate-per-second:100}") double defaultRate,
+                              @Value("${webhook.replay.batch-size:500}") int batchSize,
+                              @Value("${webhook.replay.checkpoint-interval:5s}") Duration checkpointInterval,
+                              @Value("${webhook.replay.stale-after:2m}") Duration staleAfter,
+                              @Value("${webhook.replay.max-concurrent-jobs:4}") int maxConcurrentJobs) {
+        this.jobRepository = jobRepository;
+        this.endpointRepository = endpointRepository;
+        this.eventRepository = eventRepository;
+        this.deliveryQueue = deliveryQueue;
+        this.nodeId = nodeId;
+        this.defaultRate = defaultRate;
+        this.batchSize = batchSize;
+        this.checkpointIntervalNanos = checkpointInterval.toNanos();
+        this.staleAfter = staleAfter;
+        this.executor = Executors.newFixedThreadPool(maxConcurrentJobs, new CustomizableThreadFactory("event-replay-"));
+
+        Gauge.builder("webhook.replay.running", running, AtomicInteger::get)
+                .description("Replay jobs running on this node")
+                .register(meterRegistry);
+        this.replayed = Counter.builder("webhook.replay.queued")
+                .description("Events queued for delivery by replay jobs")
+                .register(meterRegistry);
+    }
+
+    public EventReplayJobDTO start(UUID merchantId, UUID endpointId, EventReplayRequestDTO request) {
+        WebhookEndpoint endpoint = endpointRepository.findByIdWithSubscriptions(endpointId)
+                .orElseThrow(() -> new ResourceNotFoundException("Webhook endpoint not found"));
+        if (!endpoint.getMerchant().getId().equals(merchantId)) {
+            throw new WebhookException("Endpoint does not belong to this merchant");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime to = request.getTo() != null ? request.getTo() : now;
+        if (!request.getFrom().isBefore(to)) {
+            throw new WebhookException("Replay 'from' must be before 'to'");
+        }
+
+        EventReplayJob job = jobRepository.save(EventReplayJob.builder()
+                .webhookEndpointId(endpointId)
+                .merchantId(merchantId)
+                .eventTypes(eventTypes(endpoint, request.getEventTypes()))
+                .fromTime(request.getFrom())
+                .toTime(to)
+                .ratePerSecond(request.getRatePerSecond() != null ? request.getRatePerSecond() : defaultRate)
+                .status(EventReplayJob.ReplayStatus.RUNNING)
+                .owner(nodeId)
+                .heartbeatAt(now)
+                .cursorCreatedAt(request.getFrom())
+                .cursorEventId(MIN_UUID)
+                .startedAt(now)
+                .build());
+        log.info("Starting replay {} of {} to endpoint {}", job.getId(), job.getEventTypes(), endpointId);
+
+        launch(job.getId());
+        return toDto(job);
+    }
+
+    public EventReplayJobDTO getJob(UUID merchantId, UUID endpointId, UUID jobId) {
+        return toDto(findJob(merchantId, endpointId, jobId));
+    }
+
+    /**
+     * Stops the job at its next checkpoint.
+     */
+    public EventReplayJobDTO cancel(UUID merchantId, UUID endpointId, UUID jobId) {
+        findJob(merchantId, endpointId, jobId);
+        jobRepository.cancel(jobId, LocalDateTime.now());
+        return toDto(findJob(merchantId, endpointId, jobId));
+    }
+
+    /**
+     * Continues a failed or cancelled job from its last checkpoint on this node.
+     */
+    public EventReplayJobDTO resume(UUID merchantId, UUID endpointId, UUID jobId) {
+        findJob(merchantId, endpointId, jobId);
+        if (jobRepository.resume(jobId, nodeId, LocalDateTime.now()) == 0) {
+            throw new WebhookException("Only failed or cancelled replays can be resumed");
+        }
+        launch(jobId);
+        return toDto(findJob(merchantId, endpointId, jobId));
+    }
+
+    @Scheduled(fixedDelayString = "${webhook.replay.takeover-interval:60000}")
+    public void resumeAbandonedJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minus(staleAfter);
+        for (UUID jobId : jobRepository.findAbandonedIds(staleBefore)) {
+            if (jobRepository.claim(jobId, nodeId, now, staleBefore) == 1) {
+                log.info("Node {} took over replay {}", nodeId, jobId);
+                launch(jobId);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Jobs stop without finishing and are taken over once their heartbeat is stale
+        stopping = true;
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void launch(UUID jobId) {
+        try {
+            executor.execute(() -> run(jobId));
+        } catch (RejectedExecutionException e) {
+            log.warn("Replay {} not started on node {}: {}", jobId, nodeId, e.getMessage());
+        }
+    }
+
+    void run(UUID jobId) {
+        EventReplayJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() != EventReplayJob.ReplayStatus.RUNNING || !nodeId.equals(job.getOwner())) {
+            return;
+        }
+
+        running.incrementAndGet();
+        try {
+            new Replay(job).run();
+        } catch (RuntimeException e) {
+            log.error("Replay {} failed", jobId, e);
+            jobRepository.finish(jobId, nodeId, EventReplayJob.ReplayStatus.FAILED, e.getMessage(), LocalDateTime.now());
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    private List<String> eventTypes(WebhookEndpoint endpoint, List<String> requested) {
+        Set<String> subscribed = endpoint.getSubscriptions() == null ? Set.of() : endpoint.getSubscriptions().stream()
+                .filter(subscription -> Boolean.TRUE.equals(subscription.getIsActive()))
+                .map(EventSubscription::getEventType)
+                .collect(Collectors.toSet());
+
+        if (requested == null || requested.isEmpty()) {
+            if (subscribed.isEmpty()) {
+                throw new WebhookException("Endpoint has no active subscriptions to replay");
+            }
+            return subscribed.stream().sorted().toList();
+        }
+
+        List<String> unsubscribed = requested.stream().filter(type -> !subscribed.contains(type)).toList();
+        if (!unsubscribed.isEmpty()) {
+            throw new WebhookException("Endpoint is not subscribed to " + unsubscribed);
+        }
+        return requested.stream().distinct().toList();
+    }
+
+    private EventReplayJob findJob(UUID merchantId, UUID endpointId, UUID jobId) {
+        return jobRepository.findByIdAndWebhookEndpointId(jobId, endpointId)
+                .filter(job -> job.getMerchantId().equals(merchantId))
+                .orElseThrow(() -> new ResourceNotFoundException("Replay not found"));
+    }
+
+    private EventReplayJobDTO toDto(EventReplayJob job) {
+        LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+        double seconds = job.getStartedAt() != null ? Duration.between(job.getStartedAt(), end).toMillis() / 1000.0 : 0;
+
+        return EventReplayJobDTO.builder()
+                .id(job.getId())
+                .endpointId(job.getWebhookEndpointId())
+                .status(job.getStatus().name())
+                .from(job.getFromTime())
+                .to(job.getToTime())
+                .eventTypes(job.getEventTypes())
+                .ratePerSecond(job.getRatePerSecond())
+                .queued(job.getQueuedCount())
+                .checkpoint(job.getQueuedCount() > 0 ? job.getCursorCreatedAt() : null)
+                .throughputPerSecond(seconds > 0 ? job.getQueuedCount() / seconds : 0.0)
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .errorMessage(job.getErrorMessage())
+                .build();
+    }
+
+    /**
+     * Scan state of one run of a job, owned by the replay thread.
+     */
+    private final class Replay {
+
+        private final EventReplayJob job;
+        private final long intervalNanos;
+        private final List<CompletableFuture<?>> unacknowledged = new ArrayList<>();
+        private LocalDateTime cursorCreatedAt;
+        private UUID cursorEventId;
+        private long queued;
+        private long checkpointed;
+        private long nextSlot = System.nanoTime();
+        private long lastCheckpoint = System.nanoTime();
+
+        Replay(EventReplayJob job) {
+            this.job = job;
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / job.getRatePerSecond());
+            this.cursorCreatedAt = job.getCursorCreatedAt();
+            this.cursorEventId = job.getCursorEventId();
+            this.queued = job.getQueuedCount();
+            this.checkpointed = queued;
+        }
+
+        void run() {
+            while (!stopping) {
+                List<WebhookEventRepository.EventCursor> page = eventRepository.findReplayPage(job.getEventTypes(),
+                        job.getToTime(), cursorCreatedAt, cursorEventId, PageRequest.of(0, batchSize));
+
+                for (WebhookEventRepository.EventCursor event : page) {
+                    if (!pace() || stopping) {
+                        return;
+                    }
+                    unacknowledged.add(deliveryQueue.enqueue(event.getId(), job.getWebhookEndpointId(), job.getMerchantId()));
+                    cursorCreatedAt = event.getCreatedAt();
+                    cursorEventId = event.getId();
+                    queued++;
+
+                    if (System.nanoTime() - lastCheckpoint >= checkpointIntervalNanos && !checkpoint()) {
+                        return;
+                    }
+                }
+
+                if (!checkpoint()) {
+                    return;
+                }
+                if (page.size() < batchSize) {
+                    jobRepository.finish(job.getId(), nodeId, EventReplayJob.ReplayStatus.COMPLETED, null, LocalDateTime.now());
+                    log.info("Replay {} completed: {} events queued to endpoint {}",
+                            job.getId(), queued, job.getWebhookEndpointId());
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Waits for Kafka to acknowledge everything queued so far, then moves the cursor.
+         * Returns false if the job was cancelled or taken over in the meantime.
+         */
+        private boolean checkpoint() {
+            CompletableFuture.allOf(unacknowledged.toArray(new CompletableFuture[0])).join();
+            unacknowledged.clear();
+            replayed.increment(queued - checkpointed);
+            checkpointed = queued;
+            lastCheckpoint = System.nanoTime();
+
+            if (jobRepository.checkpoint(job.getId(), nodeId, cursorCreatedAt, cursorEventId, queued, LocalDateTime.now()) == 0) {
+                log.info("Replay {} was cancelled or taken over; stopping on node {}", job.getId(), nodeId);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Waits for the next slot. A slow rate can leave gaps longer than {@code stale-after}, so
+         * the wait is cut into checkpoint intervals and the heartbeat is kept up in between.
+         * Returns false if the job was cancelled or taken over while waiting.
+         */
+        private boolean pace() {
+            long start = System.nanoTime();
+            long now = start;
+            while (nextSlot > now && !stopping) {
+                long checkpointDue = lastCheckpoint + checkpointIntervalNanos;
+                if (now >= checkpointDue) {
+                    if (!checkpoint()) {
+                        return false;
+                    }
+                    checkpointDue = lastCheckpoint + checkpointIntervalNanos;
+                }
+                LockSupport.parkNanos(Math.min(nextSlot, checkpointDue) - now);
+                now = System.nanoTime();
+            }
+            // Time lost to slow pages is not made up with a burst
+            nextSlot = Math.max(nextSlot, start) + intervalNanos;
+            return true;
+        }
+    }
+}
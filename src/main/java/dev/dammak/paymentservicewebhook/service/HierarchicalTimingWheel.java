@@ -0,0 +1,151 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Hierarchical timing wheel in the style of Kafka's purgatory timer. The first level has
+ * {@code wheelSize} buckets of {@code tickMs}; each overflow level covers the whole span of
+ * the level below in one bucket. Scheduling is O(1), and {@link #advance(long)} only looks at
+ * buckets that have expired, not at individual entries. Entries on coarse levels cascade
+ * down as their bucket expires, so an entry fires within one tick of its deadline.
+ *
+ * Not thread-safe on its own; callers serialise access (see {@link RetryService}).
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final PriorityQueue<Bucket<T>> expiringBuckets =
+            new PriorityQueue<>((a, b) -> Long.compare(a.expiration, b.expiration));
+    private final List<T> due = new ArrayList<>();
+    private final Level<T> root;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize <= 1) {
+            throw new IllegalArgumentException("tickMs must be positive and wheelSize greater than one");
+        }
+        this.root = new Level<>(tickMs, wheelSize, startMs, expiringBuckets);
+    }
+
+    /**
+     * Schedules {@code item} to fire at {@code expiresAtMs}. Items that are already due are
+     * returned by the next {@link #advance(long)}.
+     */
+    public void schedule(T item, long expiresAtMs) {
+        size++;
+        Entry<T> entry = new Entry<>(item, expiresAtMs);
+        if (!root.add(entry)) {
+            due.add(item);
+        }
+    }
+
+    /**
+     * Moves the clock to {@code nowMs} and returns every item whose deadline has passed.
+     */
+    public List<T> advance(long nowMs) {
+        Bucket<T> bucket;
+        while ((bucket = expiringBuckets.peek()) != null && bucket.expiration <= nowMs) {
+            expiringBuckets.poll();
+            root.advanceClock(bucket.expiration);
+            for (Entry<T> entry : bucket.drain()) {
+                if (!root.add(entry)) {
+                    due.add(entry.item);
+                }
+            }
+        }
+        root.advanceClock(nowMs);
+
+        List<T> fired = new ArrayList<>(due);
+        due.clear();
+        size -= fired.size();
+        return fired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static final class Level<T> {
+
+        private final long tickMs;
+        private final int wheelSize;
+        private final long interval;
+        private final List<Bucket<T>> buckets;
+        private final PriorityQueue<Bucket<T>> expiringBuckets;
+        private long currentTime;
+        private Level<T> overflow;
+
+        Level(long tickMs, int wheelSize, long startMs, PriorityQueue<Bucket<T>> expiringBuckets) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            this.expiringBuckets = expiringBuckets;
+            this.currentTime = startMs - (startMs % tickMs);
+            this.buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new Bucket<>());
+            }
+        }
+
+        /**
+         * @return false if the entry is already due and was not placed in a bucket
+         */
+        boolean add(Entry<T> entry) {
+            if (entry.expiresAt < currentTime + tickMs) {
+                return false;
+            }
+
+            if (entry.expiresAt < currentTime + interval) {
+                long virtualId = entry.expiresAt / tickMs;
+                Bucket<T> bucket = buckets.get((int) (virtualId % wheelSize));
+                bucket.entries.add(entry);
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    expiringBuckets.add(bucket);
+                }
+                return true;
+            }
+
+            if (overflow == null) {
+                overflow = new Level<>(interval, wheelSize, currentTime, expiringBuckets);
+            }
+            return overflow.add(entry);
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+
+    private static final class Bucket<T> {
+
+        private final List<Entry<T>> entries = new ArrayList<>();
+        private long expiration = -1;
+
+        /**
+         * @return true if the bucket now represents a new time range and must be re-queued
+         */
+        boolean setExpiration(long expiration) {
+            if (this.expiration == expiration) {
+                return false;
+            }
+            this.expiration = expiration;
+            return true;
+        }
+
+        List<Entry<T>> drain() {
+            List<Entry<T>> drained = new ArrayList<>(entries);
+            entries.clear();
+            expiration = -1;
+            return drained;
+        }
+    }
+
+    private record Entry<T>(T item, long expiresAt) {
+    }
+}
@@ -0,0 +1,106 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Claims provider idempotency keys atomically with Redis {@code SET NX} and a TTL. A small
+ * local LRU answers repeated retries of hot keys without a network round trip. When Redis
+ * is unavailable (or disabled) callers fall back to the unique constraint on
+ * {@code webhook_idempotency_keys}.
+ */
+
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    private static final String KEY_PREFIX = "webhook:idempotency:";
+
+    public enum ClaimResult {
+        CLAIMED, DUPLICATE, UNAVAILABLE
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final boolean redisEnabled;
+    private final Duration ttl;
+    private final Map<String, Long> recentKeys;
+    private final Counter localHits;
+    private final Counter unavailable;
+
+    public IdempotencyStore(StringRedisTemplate redisTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${webhook.idempotency.store:redis}") String store,
+                            @Value("${webhook.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${webhook.idempotency.local-cache-size:10000}") int localCacheSize) {
+        this.redisTemplate = redisTemplate;
+        this.redisEnabled = "redis".equalsIgnoreCase(store);
+        this.ttl = ttl;
+        this.recentKeys = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > localCacheSize;
+            }
+        });
+        this.localHits = Counter.builder("webhook.idempotency.local.hits")
+                .description("Duplicate events rejected by the local idempotency cache")
+                .register(meterRegistry);
+        this.unavailable = Counter.builder("webhook.idempotency.store.unavailable")
+                .description("Idempotency claims that fell back to the database constraint")
+                .register(meterRegistry);
+    }
+
+    public ClaimResult claim(String idempotencyKey) {
+        long now = System.currentTimeMillis();
+        Long expiresAt = recentKeys.get(idempotencyKey);
+        if (expiresAt != null && expiresAt > now) {
+            localHits.increment();
+            return ClaimResult.DUPLICATE;
+        }
+
+        if (!redisEnabled) {
+            return ClaimResult.UNAVAILABLE;
+        }
+
+        try {
+            Boolean claimed = redisTemplate.opsForValue()
+                    .setIfAbsent(KEY_PREFIX + idempotencyKey, String.valueOf(now), ttl);
+            if (claimed == null) {
+                unavailable.increment();
+                return ClaimResult.UNAVAILABLE;
+            }
+
+            recentKeys.put(idempotencyKey, now + ttl.toMillis());
+            return claimed ? ClaimResult.CLAIMED : ClaimResult.DUPLICATE;
+        } catch (RuntimeException e) {
+            log.warn("Idempotency store unavailable, falling back to database constraint: {}", e.getMessage());
+            unavailable.increment();
+            return ClaimResult.UNAVAILABLE;
+        }
+    }
+
+    /**
+     * Gives a key back after the event that claimed it failed to persist, so the
+     * provider's retry is not rejected as a duplicate.
+     */
+    public void release(String idempotencyKey) {
+        recentKeys.remove(idempotencyKey);
+        if (!redisEnabled) {
+            return;
+        }
+
+        try {
+            redisTemplate.delete(KEY_PREFIX + idempotencyKey);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release idempotency key {}: {}", idempotencyKey, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which (event, endpoint) pairs have an attempt in flight, replacing the IN_PROGRESS
+ * row in lean attempt mode. Each entry is a lease that expires on its own, so an attempt lost
+ * with its node never blocks the pair for longer than the lease. With the redis store the
+ * lease is shared, and a redelivered message cannot start a second concurrent attempt on
+ * another replica. A node only ever releases its own lease: once a lease has expired and
+ * another node took it over, the late release of the first attempt leaves it in place.
+ */
+
+@Component
+@Slf4j
+public class InFlightDeliveryRegistry {
+
+    private static final String KEY_PREFIX = "webhook:inflight:";
+
+    // Deletes the lease only while it still names this node, in one step
+    static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final boolean redisEnabled;
+    private final Duration lease;
+    private final String nodeId;
+    private final Map<String, Long> local = new ConcurrentHashMap<>();
+    private final Counter conflicts;
+
+    public InFlightDeliveryRegistry(StringRedisTemplate redisTemplate,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${webhook.delivery.in-flight.store:memory}") String store,
+                                    @Value("${webhook.delivery.in-flight.lease:5m}") Duration lease,
+                                    @Value("${webhook.node-id:${HOSTNAME:local}}") String nodeId) {
+        this.redisTemplate = redisTemplate;
+        this.redisEnabled = "redis".equalsIgnoreCase(store);
+        this.lease = lease;
+        this.nodeId = nodeId;
+
+        Gauge.builder("webhook.delivery.inflight.leases", local, Map::size)
+                .description("Delivery attempts this node currently holds a lease for")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder("webhook.delivery.inflight.conflicts")
+                .description("Delivery attempts skipped because the same event and endpoint was already in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return false if another attempt for the same event and endpoint holds a live lease
+     */
+    public boolean acquire(UUID eventId, UUID endpointId) {
+        String key = key(eventId, endpointId);
+        long now = System.currentTimeMillis();
+        long expiresAt = now + lease.toMillis();
+
+        Long previous = local.putIfAbsent(key, expiresAt);
+        if (previous != null) {
+            if (previous > now || !local.replace(key, previous, expiresAt)) {
+                conflicts.increment();
+                return false;
+            }
+        }
+
+        if (redisEnabled) {
+            try {
+                Boolean acquired = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + key, nodeId, lease);
+                if (Boolean.FALSE.equals(acquired)) {
+                    local.remove(key, expiresAt);
+                    conflicts.increment();
+                    return false;
+                }
+            } catch (RuntimeException e) {
+                // The local lease still prevents duplicates on this node
+                log.warn("In-flight lease store unavailable, using local lease only: {}", e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    public void release(UUID eventId, UUID endpointId) {
+        String key = key(eventId, endpointId);
+        local.remove(key);
+
+        if (redisEnabled) {
+            try {
+                redisTemplate.execute(RELEASE_SCRIPT, List.of(KEY_PREFIX + key), nodeId);
+            } catch (RuntimeException e) {
+                log.warn("Failed to release in-flight lease {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    private String key(UUID eventId, UUID endpointId) {
+        return eventId + ":" + endpointId;
+    }
+}
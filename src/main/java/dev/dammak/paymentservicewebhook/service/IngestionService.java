@@ -0,0 +1,78 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.exception.WebhookException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fast-ack ingestion: appends the raw provider event to the webhook-events topic and
+ * returns as soon as the broker has acknowledged it. Persistence and fan-out happen in
+ * {@code IngestedEventConsumer}.
+ */
+
+@Service
+@Slf4j
+public class IngestionService {
+
+    public static final String EVENTS_TOPIC = "webhook-events";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final Timer acceptTimer;
+
+    @Value("${webhook.ingestion.ack-timeout:2000}")
+    private long ackTimeout;
+
+    public IngestionService(KafkaTemplate<String, Object> kafkaTemplate, MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.acceptTimer = Timer.builder("webhook.ingest.accept.latency")
+                .description("Time to durably append a provider event before acknowledging it")
+                .register(meterRegistry);
+    }
+
+    public UUID accept(String provider,
+                       String eventType,
+                       Map<String, Object> payload,
+                       String idempotencyKey,
+                       String sourceIp) {
+        long receivedAt = System.currentTimeMillis();
+        UUID receiptId = UUID.randomUUID();
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("receiptId", receiptId.toString());
+        message.put("provider", provider);
+        message.put("eventType", eventType);
+        message.put("payload", payload);
+        message.put("idempotencyKey", idempotencyKey);
+        message.put("sourceIp", sourceIp);
+        message.put("receivedAt", receivedAt);
+
+        // Keying by idempotency key keeps provider retries of the same event on one partition
+        String key = idempotencyKey != null ? idempotencyKey : receiptId.toString();
+
+        Timer.Sample sample = Timer.start();
+        try {
+            kafkaTemplate.send(EVENTS_TOPIC, key, message).get(ackTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WebhookException("Interrupted while accepting event", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new WebhookException("Failed to accept event: " + e.getMessage(), e);
+        } finally {
+            sample.stop(acceptTimer);
+        }
+
+        log.debug("Accepted event {} from provider {} as receipt {}", eventType, provider, receiptId);
+        return receiptId;
+    }
+}
@@ -0,0 +1,148 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Mergeable log-linear latency histogram in milliseconds, in the style of HdrHistogram.
+ * Values below 32ms are exact; above that every power of two is split into 32 linear
+ * sub-buckets, so any percentile is within ~3% of the true value. Values are clamped to
+ * {@link #MAX_VALUE_MS} (~70 minutes), which bounds the layout at 576 counters.
+ *
+ * Two histograms merge by adding counters, so per-node and per-hour histograms can be
+ * combined into any window without keeping samples. {@link #toBytes()} writes only the
+ * non-empty counters, usually a few dozen bytes.
+ *
+ * Not thread-safe; callers synchronise (see {@link DeliveryStatisticsAggregator}).
+ */
+public class LatencyHistogram {
+
+    static final long MAX_VALUE_MS = (1L << 22) - 1;
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (22 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long totalCount;
+
+    public void record(long valueMs) {
+        counts[indexOf(Math.min(Math.max(valueMs, 0), MAX_VALUE_MS))]++;
+        totalCount++;
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return the value at the given percentile, or 0 when nothing was recorded
+     */
+    public long percentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return representativeValue(i);
+            }
+        }
+        return representativeValue(BUCKETS - 1);
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int previous = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                writeVarLong(out, i - previous);
+                writeVarLong(out, counts[i]);
+                previous = i;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static LatencyHistogram fromBytes(byte[] bytes) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        if (bytes == null) {
+            return histogram;
+        }
+
+        int[] position = {0};
+        int index = 0;
+        while (position[0] < bytes.length) {
+            index += (int) readVarLong(bytes, position);
+            long count = readVarLong(bytes, position);
+            if (index < 0 || index >= BUCKETS) {
+                throw new IllegalArgumentException("Corrupt latency histogram: bucket " + index);
+            }
+            histogram.counts[index] += count;
+            histogram.totalCount += count;
+        }
+        return histogram;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int power = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (power - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return SUB_BUCKETS + (power - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Midpoint of the bucket's value range.
+     */
+    static long representativeValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int power = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (power - SUB_BUCKET_BITS);
+        long lowerBound = (1L << power) + subBucket * width;
+        return lowerBound + width / 2;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (position[0] >= bytes.length || shift > 63) {
+                throw new IllegalArgumentException("Corrupt latency histogram: truncated value");
+            }
+            b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + totalCount + ", p50=" + percentile(50) + ", p99=" + percentile(99)
+                + ", buckets=" + Arrays.stream(counts).filter(count -> count > 0).count() + "}";
+    }
+}
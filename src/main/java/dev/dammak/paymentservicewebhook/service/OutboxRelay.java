@@ -0,0 +1,277 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.repository.DeliveryOutboxRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes the delivery outbox to webhook-deliveries. Each batch is claimed in a short
+ * transaction ({@code FOR UPDATE SKIP LOCKED}, then a {@code claimed_until} lease), sent with
+ * no transaction or connection held so the producer can pack it into a few compressed record
+ * batches, and deleted in a second transaction once the broker has acknowledged it. Messages
+ * that were not acknowledged in time are released for the next poll; a claim whose relay
+ * died expires after twice the send timeout.
+ *
+ * With {@code webhook.delivery.ordering} set to endpoint or merchant, messages sharing a key
+ * are sent one after another, and a key stops at its first unacknowledged message so nothing
+ * behind it is published first.
+ *
+ * Events whose messages were published are stamped with {@code fanout_published_at} in the
+ * same transaction as the delete, so the stale event sweeper never mistakes an event whose
+ * messages are still queued on webhook-deliveries for an orphan.
+ *
+ * Delivery is at least once: a node that dies between the acknowledgement and the delete
+ * republishes the batch once its claim expires, which the delivery consumer already tolerates.
+ */
+
+@Service
+@Slf4j
+public class OutboxRelay {
+
+    // Bounds the stamp to every partition for messages queued before event_created_at existed
+    private static final LocalDateTime UNKNOWN_EVENT_CREATED_AT = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final DeliveryOutboxRepository outboxRepository;
+    private final WebhookEventRepository eventRepository;
+    private final DeliveryQueue deliveryQueue;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerPoll;
+    private final Duration sendTimeout;
+    private final String ordering;
+
+    public OutboxRelay(DeliveryOutboxRepository outboxRepository,
+                       WebhookEventRepository eventRepository,
+                       DeliveryQueue deliveryQueue,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${webhook.outbox.relay.enabled:true}") boolean enabled,
+                       @Value("${webhook.outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${webhook.outbox.relay.max-batches-per-poll:20}") int maxBatchesPerPoll,
+                       @Value("${webhook.outbox.relay.send-timeout:10s}") Duration sendTimeout,
+                       @Value("${webhook.delivery.ordering:none}") String ordering) {
+        this.outboxRepository = outboxRepository;
+        this.eventRepository = eventRepository;
+        this.deliveryQueue = deliveryQueue;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchesPerPoll = maxBatchesPerPoll;
+        this.sendTimeout = sendTimeout;
+        this.ordering = ordering.toLowerCase();
+    }
+
+    /**
+     * Drains full batches until the outbox is empty, a batch is only partly acknowledged, or
+     * {@code max-batches-per-poll} is reached.
+     */
+    @Scheduled(fixedDelayString = "${webhook.outbox.relay.poll-interval:100}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+
+        for (int batch = 0; batch < maxBatchesPerPoll; batch++) {
+            try {
+                if (relayBatch() < batchSize) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                log.error("Outbox relay failed: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return messages published, or 0 if any message in the batch was not acknowledged
+     */
+    int relayBatch() {
+        List<DeliveryOutboxRepository.OutboxEntry> entries = transactionTemplate.execute(status -> claim());
+        if (entries == null || entries.isEmpty()) {
+            return 0;
+        }
+
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        List<UUID> published = isOrdered() ? publishInKeyOrder(entries, deadline) : publish(entries, deadline);
+        Set<UUID> acknowledged = new HashSet<>(published);
+        List<UUID> unpublished = entries.stream()
+                .map(DeliveryOutboxRepository.OutboxEntry::getId)
+                .filter(id -> !acknowledged.contains(id))
+                .toList();
+
+        transactionTemplate.execute(status -> {
+            if (!published.isEmpty()) {
+                outboxRepository.deleteByIds(published);
+                markFanOutPublished(entries, acknowledged);
+            }
+            if (!unpublished.isEmpty()) {
+                outboxRepository.releaseClaims(unpublished);
+            }
+            return null;
+        });
+        count(WebhookMetrics.OUTCOME_SUCCESS, published.size());
+        count(WebhookMetrics.OUTCOME_ERROR, unpublished.size());
+
+        if (!unpublished.isEmpty()) {
+            log.warn("Outbox relay published {} of {} deliveries, retrying the rest on the next poll",
+                    published.size(), entries.size());
+            return 0;
+        }
+        return published.size();
+    }
+
+    private List<DeliveryOutboxRepository.OutboxEntry> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        List<DeliveryOutboxRepository.OutboxEntry> entries;
+        if (isOrdered()) {
+            outboxRepository.lockClaims();
+            entries = outboxRepository.lockOrderedBatch(batchSize, now, ordering);
+        } else {
+            entries = outboxRepository.lockBatch(batchSize, now);
+        }
+
+        if (!entries.isEmpty()) {
+            outboxRepository.claim(entries.stream().map(DeliveryOutboxRepository.OutboxEntry::getId).toList(),
+                    now.plus(sendTimeout.multipliedBy(2)));
+        }
+        return entries;
+    }
+
+    private void markFanOutPublished(List<DeliveryOutboxRepository.OutboxEntry> entries, Set<UUID> acknowledged) {
+        Set<UUID> events = new HashSet<>();
+        LocalDateTime createdSince = null;
+        for (DeliveryOutboxRepository.OutboxEntry entry : entries) {
+            if (!acknowledged.contains(entry.getId())) {
+                continue;
+            }
+            events.add(entry.getEventId());
+            LocalDateTime eventCreatedAt = entry.getEventCreatedAt() != null
+                    ? entry.getEventCreatedAt() : UNKNOWN_EVENT_CREATED_AT;
+            if (createdSince == null || eventCreatedAt.isBefore(createdSince)) {
+                createdSince = eventCreatedAt;
+            }
+        }
+        eventRepository.markFanOutPublished(events, createdSince, LocalDateTime.now());
+    }
+
+    private List<UUID> publish(List<DeliveryOutboxRepository.OutboxEntry> entries, long deadline) {
+        List<CompletableFuture<?>> sends = new ArrayList<>(entries.size());
+        for (DeliveryOutboxRepository.OutboxEntry entry : entries) {
+            sends.add(send(entry));
+        }
+        awaitAcknowledgements(sends, deadline);
+
+        List<UUID> published = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            if (isAcknowledged(sends.get(i))) {
+                published.add(entries.get(i).getId());
+            }
+        }
+        return published;
+    }
+
+    /**
+     * Sends in rounds, one message per key at a time, so each key's messages are acknowledged
+     * in id order while different keys are still sent together.
+     */
+    private List<UUID> publishInKeyOrder(List<DeliveryOutboxRepository.OutboxEntry> entries, long deadline) {
+        Map<UUID, Deque<DeliveryOutboxRepository.OutboxEntry>> lanes = new LinkedHashMap<>();
+        for (DeliveryOutboxRepository.OutboxEntry entry : entries) {
+            // Messages without a key are not ordered against anything
+            UUID key = orderingKey(entry);
+            lanes.computeIfAbsent(key != null ? key : entry.getId(), k -> new ArrayDeque<>()).add(entry);
+        }
+
+        List<UUID> published = new ArrayList<>(entries.size());
+        while (!lanes.isEmpty() && System.nanoTime() < deadline) {
+            List<DeliveryOutboxRepository.OutboxEntry> round = new ArrayList<>(lanes.size());
+            List<CompletableFuture<?>> sends = new ArrayList<>(lanes.size());
+            for (Deque<DeliveryOutboxRepository.OutboxEntry> lane : lanes.values()) {
+                DeliveryOutboxRepository.OutboxEntry entry = lane.poll();
+                round.add(entry);
+                sends.add(send(entry));
+            }
+            awaitAcknowledgements(sends, deadline);
+
+            Iterator<Deque<DeliveryOutboxRepository.OutboxEntry>> lane = lanes.values().iterator();
+            for (int i = 0; i < round.size(); i++) {
+                Deque<DeliveryOutboxRepository.OutboxEntry> remaining = lane.next();
+                if (!isAcknowledged(sends.get(i))) {
+                    // The rest of this key waits until the failed message goes out first
+                    lane.remove();
+                    continue;
+                }
+                published.add(round.get(i).getId());
+                if (remaining.isEmpty()) {
+                    lane.remove();
+                }
+            }
+        }
+        return published;
+    }
+
+    // Mirrors DeliveryQueue's partition key
+    private UUID orderingKey(DeliveryOutboxRepository.OutboxEntry entry) {
+        return "endpoint".equals(ordering) ? entry.getEndpointId() : entry.getMerchantId();
+    }
+
+    private boolean isOrdered() {
+        return "endpoint".equals(ordering) || "merchant".equals(ordering);
+    }
+
+    private CompletableFuture<?> send(DeliveryOutboxRepository.OutboxEntry entry) {
+        try {
+            return deliveryQueue.enqueue(entry.getEventId(), entry.getEndpointId(), entry.getMerchantId());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void awaitAcknowledgements(List<CompletableFuture<?>> sends, long deadline) {
+        try {
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Failed and unacknowledged sends are told apart per message by the caller
+            log.debug("Not every outbox message was acknowledged: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isAcknowledged(CompletableFuture<?> send) {
+        return send.isDone() && !send.isCompletedExceptionally();
+    }
+
+    private void count(String outcome, int messages) {
+        if (messages > 0) {
+            meterRegistry.counter("webhook.outbox.relayed", "outcome", outcome).increment(messages);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the weekly created_at partitions of webhook_events and webhook_deliveries rolling:
+ * creates partitions ahead of time, and detaches and drops partitions whose whole range is
+ * older than the retention period. Idempotency keys older than the retention period are
+ * deleted in the same run, since the events they point at are gone. Only runs against
+ * PostgreSQL.
+ */
+
+@Service
+@Slf4j
+public class PartitionMaintenanceService {
+
+    static final List<String> PARTITIONED_TABLES = List.of("webhook_events", "webhook_deliveries");
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+
+    // Bounded so a large backlog after an outage is deleted in short transactions
+    static final int IDEMPOTENCY_KEY_PURGE_BATCH = 10_000;
+
+    static final String PURGE_IDEMPOTENCY_KEYS_SQL = """
+            DELETE FROM webhook_idempotency_keys WHERE idempotency_key IN (
+                SELECT idempotency_key FROM webhook_idempotency_keys WHERE created_at < ? LIMIT ?
+            )
+            """;
+
+    private static final String PARTITIONS_SQL = """
+            SELECT c.relname, pg_get_expr(c.relpartbound, c.oid)
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relname = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int weeksAhead;
+    private final Duration retention;
+    private final boolean dropExpired;
+
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate,
+                                       @Value("${webhook.partitioning.enabled:true}") boolean enabled,
+                                       @Value("${webhook.partitioning.weeks-ahead:4}") int weeksAhead,
+                                       @Value("${webhook.partitioning.retention:90d}") Duration retention,
+                                       @Value("${webhook.partitioning.drop-expired:true}") boolean dropExpired) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.weeksAhead = weeksAhead;
+        this.retention = retention;
+        this.dropExpired = dropExpired;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${webhook.partitioning.cron:0 15 3 * * *}")
+    public void maintainPartitions() {
+        if (!enabled || !isPostgres()) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        LocalDateTime expiredBefore = LocalDateTime.now().minus(retention);
+        for (String table : PARTITIONED_TABLES) {
+            try {
+                List<Partition> partitions = partitionsOf(table);
+                createUpcomingPartitions(table, partitions, today);
+                removeExpiredPartitions(table, partitions, expiredBefore);
+            } catch (RuntimeException e) {
+                log.error("Partition maintenance failed for {}", table, e);
+            }
+        }
+
+        try {
+            purgeExpiredIdempotencyKeys(expiredBefore);
+        } catch (RuntimeException e) {
+            log.error("Idempotency key purge failed", e);
+        }
+    }
+
+    private void purgeExpiredIdempotencyKeys(LocalDateTime expiredBefore) {
+        Timestamp cutoff = Timestamp.valueOf(expiredBefore);
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PURGE_IDEMPOTENCY_KEYS_SQL, cutoff, IDEMPOTENCY_KEY_PURGE_BATCH);
+            purged += deleted;
+        } while (deleted == IDEMPOTENCY_KEY_PURGE_BATCH);
+
+        if (purged > 0) {
+            log.info("Deleted {} idempotency keys created before {}", purged, expiredBefore);
+        }
+    }
+
+    private void createUpcomingPartitions(String table, List<Partition> partitions, LocalDate today) {
+        // The legacy partition attached by the migration covers everything up to its bound
+        LocalDateTime coveredUntil = partitions.stream()
+                .filter(Partition::isLegacy)
+                .map(Partition::upperBound)
+                .findFirst()
+                .orElse(LocalDateTime.MIN);
+
+        LocalDate weekStart = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        for (int i = 0; i <= weeksAhead; i++) {
+            LocalDate from = weekStart.plusWeeks(i);
+            if (from.atStartOfDay().isBefore(coveredUntil)) {
+                continue;
+            }
+            String partition = partitionName(table, from);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + table
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + from.plusWeeks(1) + "')");
+        }
+    }
+
+    private void removeExpiredPartitions(String table, List<Partition> partitions, LocalDateTime expiredBefore) {
+        for (Partition partition : partitions) {
+            if (partition.upperBound() == null || partition.upperBound().isAfter(expiredBefore)) {
+                continue;
+            }
+
+            jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition.name());
+            if (dropExpired) {
+                jdbcTemplate.execute("DROP TABLE " + partition.name());
+                log.info("Dropped expired partition {} (rows before {})", partition.name(), partition.upperBound());
+            } else {
+                log.info("Detached expired partition {} (rows before {})", partition.name(), partition.upperBound());
+            }
+        }
+    }
+
+    private List<Partition> partitionsOf(String table) {
+        return jdbcTemplate.query(PARTITIONS_SQL, (rs, rowNum) -> {
+            String bound = rs.getString(2);
+            return new Partition(rs.getString(1), upperBound(bound), bound != null && bound.contains("MINVALUE"));
+        }, table);
+    }
+
+    static String partitionName(String table, LocalDate weekStart) {
+        return table + "_p" + weekStart.format(SUFFIX);
+    }
+
+    static LocalDateTime upperBound(String partitionBound) {
+        if (partitionBound == null) {
+            return null;
+        }
+        Matcher matcher = UPPER_BOUND.matcher(partitionBound);
+        return matcher.find() ? LocalDateTime.parse(matcher.group(1).replace(' ', 'T')) : null;
+    }
+
+    private boolean isPostgres() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product);
+    }
+
+    private record Partition(String name, LocalDateTime upperBound, boolean isLegacy) {
+    }
+}
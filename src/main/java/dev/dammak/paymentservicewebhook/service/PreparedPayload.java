@@ -0,0 +1,44 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookEvent;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Event-scoped, read-only delivery payload: the canonical JSON body is produced once and
+ * shared by every endpoint (and every retry) the event fans out to. Only the HMAC and
+ * per-endpoint headers are computed per target.
+ */
+
+@Value
+@Builder
+public class PreparedPayload {
+
+    UUID eventId;
+
+    String eventType;
+
+    byte[] body;
+
+    Long receivedAt;
+
+    // Lower bound for partition pruning when looking up the event's deliveries
+    LocalDateTime createdAt;
+
+    public static PreparedPayload of(WebhookEvent event, byte[] body) {
+        Object receivedAt = event.getMetadata() != null
+                ? event.getMetadata().get(WebhookEvent.METADATA_RECEIVED_AT)
+                : null;
+
+        return PreparedPayload.builder()
+                .eventId(event.getId())
+                .eventType(event.getEventType())
+                .body(body)
+                .receivedAt(receivedAt instanceof Number number ? number.longValue() : null)
+                .createdAt(event.getCreatedAt())
+                .build();
+    }
+}
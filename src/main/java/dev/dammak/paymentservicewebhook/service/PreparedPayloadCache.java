@@ -0,0 +1,74 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookEvent;
+import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded LRU of {@link PreparedPayload}s keyed by event id. Payloads are added when an
+ * event is accepted; deliveries on other replicas or after eviction rebuild the entry
+ * from the stored event once and share it from then on.
+ */
+
+@Component
+@Slf4j
+public class PreparedPayloadCache {
+
+    private final WebhookEventRepository eventRepository;
+    private final SignatureService signatureService;
+    private final Map<UUID, PreparedPayload> payloads;
+    private final Counter misses;
+
+    public PreparedPayloadCache(WebhookEventRepository eventRepository,
+                                SignatureService signatureService,
+                                MeterRegistry meterRegistry,
+                                @Value("${webhook.delivery.payload-cache-size:10000}") int maxSize) {
+        this.eventRepository = eventRepository;
+        this.signatureService = signatureService;
+        this.payloads = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, PreparedPayload> eldest) {
+                return size() > maxSize;
+            }
+        });
+        this.misses = Counter.builder("webhook.delivery.payload.cache.misses")
+                .description("Deliveries that had to reload and re-serialise the event payload")
+                .register(meterRegistry);
+        Gauge.builder("webhook.delivery.payload.cache.size", payloads, Map::size)
+                .description("Prepared event payloads held in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Serialises the payload of a freshly accepted event and caches it.
+     */
+    public PreparedPayload prepare(WebhookEvent event) {
+        PreparedPayload payload = PreparedPayload.of(event, signatureService.canonicalize(event.getPayload()));
+        payloads.put(event.getId(), payload);
+        return payload;
+    }
+
+    public PreparedPayload get(UUID eventId) {
+        PreparedPayload payload = payloads.get(eventId);
+        if (payload != null) {
+            return payload;
+        }
+
+        misses.increment();
+        WebhookEvent event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new ResourceNotFoundException("Event not found"));
+        log.debug("Prepared payload cache miss for event: {}", eventId);
+        return prepare(event);
+    }
+}
@@ -2,14 +2,26 @@ package dev.dammak.paymentservicewebhook.service;
 
 import dev.dammak.paymentservicewebhook.entity.WebhookDelivery;
 import dev.dammak.paymentservicewebhook.repository.WebhookDeliveryRepository;
-import lombok.RequiredArgsConstructor;
+import dev.dammak.paymentservicewebhook.repository.WebhookDeliveryRepository.RetryCandidate;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created By damola.adekoya on 01/09/2025
@@ -22,38 +34,181 @@ import java.util.List;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
-@Transactional
 public class RetryService {
 
     private final WebhookDeliveryRepository deliveryRepository;
     private final DeliveryService deliveryService;
+    private final TransactionTemplate transactionTemplate;
+    private final WebhookMetrics metrics;
+    private final String nodeId;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final long claimTimeoutMs;
+    private final long loadWindowMs;
+    private final Duration lookback;
 
-    @Scheduled(fixedDelayString = "${webhook.retry.scheduler-interval:60000}")
+    // Claimed retries waiting for their nextRetryAt; the claim in the database is the durable copy
+    private final HierarchicalTimingWheel<RetryCandidate> wheel;
+    private final Set<UUID> scheduled = ConcurrentHashMap.newKeySet();
+
+    public RetryService(WebhookDeliveryRepository deliveryRepository,
+                        DeliveryService deliveryService,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry,
+                        WebhookMetrics metrics,
+                        @Value("${webhook.node-id:${HOSTNAME:local}}") String nodeId,
+                        @Value("${webhook.retry.batch-size:100}") int batchSize,
+                        @Value("${webhook.retry.max-batches-per-run:50}") int maxBatchesPerRun,
+                        @Value("${webhook.retry.claim-timeout:300000}") long claimTimeoutMs,
+                        @Value("${webhook.retry.load-window:30000}") long loadWindowMs,
+                        @Value("${webhook.retry.tick:1000}") long tickMs,
+                        @Value("${webhook.retry.lookback:7d}") Duration lookback) {
+        this.deliveryRepository = deliveryRepository;
+        this.deliveryService = deliveryService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.metrics = metrics;
+        this.nodeId = nodeId;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.claimTimeoutMs = claimTimeoutMs;
+        this.loadWindowMs = loadWindowMs;
+        this.lookback = lookback;
+        this.wheel = new HierarchicalTimingWheel<>(tickMs, 64, System.currentTimeMillis());
+
+        Gauge.builder("webhook.retry.wheel.pending", scheduled, Set::size)
+                .description("Claimed retries waiting in the timing wheel for their retry time")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Claims retries falling due within the next load window and hands them to the timing
+     * wheel. Runs far more often than the window is long, so a retry scheduled a few seconds
+     * out is already in the wheel when it falls due.
+     */
+    @Scheduled(fixedDelayString = "${webhook.retry.scheduler-interval:5000}")
     public void processRetries() {
-        log.debug("Processing webhook retries");
-
-        LocalDateTime now = LocalDateTime.now();
-        List<WebhookDelivery> retriesToProcess = deliveryRepository
-                .findByStatusAndNextRetryAtBefore(
-                        WebhookDelivery.DeliveryStatus.RETRY_SCHEDULED,
-                        now
-                );
-
-        if (!retriesToProcess.isEmpty()) {
-            log.info("Found {} deliveries to retry", retriesToProcess.size());
-
-            for (WebhookDelivery delivery : retriesToProcess) {
-                try {
-                    deliveryService.deliverWebhook(
-                            delivery.getWebhookEvent().getId(),
-                            delivery.getWebhookEndpoint().getId()
-                    );
-                } catch (Exception e) {
-                    log.error("Failed to retry delivery {}: {}",
-                            delivery.getId(), e.getMessage());
-                }
+        log.debug("Loading webhook retries");
+
+        int loaded = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<RetryCandidate> claimed = claimBatch();
+            claimed.forEach(this::schedule);
+            loaded += claimed.size();
+
+            if (claimed.size() < batchSize) {
+                break;
+            }
+        }
+
+        if (loaded > 0) {
+            log.info("Node {} claimed {} deliveries to retry", nodeId, loaded);
+        }
+
+        metrics.updateRetryBacklog(deliveryRepository.countByStatusAndCreatedAtAfter(
+                WebhookDelivery.DeliveryStatus.RETRY_SCHEDULED, LocalDateTime.now().minus(lookback)));
+    }
+
+    @Scheduled(fixedRateString = "${webhook.retry.tick:1000}")
+    public void fireDueRetries() {
+        List<RetryCandidate> due;
+        synchronized (wheel) {
+            due = wheel.advance(System.currentTimeMillis());
+        }
+        due.forEach(this::dispatch);
+    }
+
+    /**
+     * Hands this node's unfired claims back on shutdown so another replica picks them up
+     * on its next load instead of waiting for the claim timeout.
+     */
+    @PreDestroy
+    public void releaseClaims() {
+        Integer released = transactionTemplate.execute(status ->
+                deliveryRepository.releaseClaims(nodeId, LocalDateTime.now().minus(lookback)));
+        if (released != null && released > 0) {
+            log.info("Node {} released {} claimed retries", nodeId, released);
+        }
+    }
+
+    /**
+     * Locks a batch of retries due within the load window with SKIP LOCKED and stamps them
+     * with this node's id in one short transaction, so concurrent replicas claim disjoint
+     * batches. A claim that is not closed within the claim timeout (e.g. the node died)
+     * becomes claimable again. Only deliveries created within the lookback are considered,
+     * which keeps the scan on the most recent partitions.
+     */
+    private List<RetryCandidate> claimBatch() {
+        List<RetryCandidate> claimed = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime createdAfter = now.minus(lookback);
+            List<RetryCandidate> candidates = deliveryRepository.lockDueRetries(
+                    now.plus(Duration.ofMillis(loadWindowMs)),
+                    now.minus(Duration.ofMillis(claimTimeoutMs)),
+                    createdAfter,
+                    batchSize);
+
+            if (!candidates.isEmpty()) {
+                deliveryRepository.claim(
+                        candidates.stream().map(RetryCandidate::getId).toList(), nodeId, now, createdAfter);
             }
+            return candidates;
+        });
+        return claimed != null ? claimed : List.of();
+    }
+
+    private void schedule(RetryCandidate candidate) {
+        if (!scheduled.add(candidate.getId())) {
+            return;
+        }
+
+        long fireAt = candidate.getNextRetryAt()
+                .atZone(ZoneId.systemDefault())
+                .toInstant()
+                .toEpochMilli();
+        synchronized (wheel) {
+            wheel.schedule(candidate, fireAt);
+        }
+    }
+
+    /**
+     * The scheduled row is closed when the attempt starts, so a slow attempt cannot outlive the
+     * claim and be sent again by another replica. A retry that failed before it started keeps
+     * its claim and is picked up again once the claim expires, unless its event or endpoint is
+     * gone, in which case it is ended for good.
+     */
+    private void dispatch(RetryCandidate candidate) {
+        scheduled.remove(candidate.getId());
+        try {
+            deliveryService.retryDelivery(candidate)
+                    .whenComplete((delivery, error) -> {
+                        if (error == null) {
+                            if (delivery != null) {
+                                metrics.retryDispatched(WebhookMetrics.OUTCOME_SUCCESS);
+                            }
+                            return;
+                        }
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        metrics.retryDispatched(WebhookMetrics.OUTCOME_ERROR);
+                        if (cause instanceof ResourceNotFoundException) {
+                            abandon(candidate, cause);
+                        } else {
+                            log.error("Failed to retry delivery {}: {}", candidate.getId(), cause.getMessage());
+                        }
+                    });
+        } catch (Exception e) {
+            metrics.retryDispatched(WebhookMetrics.OUTCOME_ERROR);
+            log.error("Failed to retry delivery {}: {}",
+                    candidate.getId(), e.getMessage());
+        }
+    }
+
+    private void abandon(RetryCandidate candidate, Throwable cause) {
+        log.warn("Retry {} can never succeed, giving up: {}", candidate.getId(), cause.getMessage());
+        try {
+            deliveryRepository.markRetryAbandoned(candidate.getId(), candidate.getCreatedAt(), cause.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Failed to end retry {}: {}", candidate.getId(), e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -1,4 +1,9 @@
 package dev.dammak.paymentservicewebhook.service;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -6,9 +11,10 @@ import org.springframework.stereotype.Service;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -24,13 +30,47 @@ import java.util.Map;
 @Slf4j
 public class SignatureService {
 
+    // Sorted keys and no insignificant whitespace, so receivers can reproduce the signed bytes
+    private static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+            .build();
+
     @Value("${webhook.security.signature-algorithm:HmacSHA256}")
     private String signatureAlgorithm;
 
+    @Value("${webhook.security.mac-cache-size:64}")
+    private int macCacheSize;
+
+    // Initialised Mac instances per thread, keyed by endpoint secret (LRU-bounded)
+    private final ThreadLocal<Map<String, Mac>> macs = ThreadLocal.withInitial(() ->
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Mac> eldest) {
+                    return size() > macCacheSize;
+                }
+            });
+
+    /**
+     * Serialises a payload to canonical UTF-8 JSON. The returned bytes are what gets
+     * signed and must also be sent unchanged as the HTTP body.
+     */
+    public byte[] canonicalize(Map<String, Object> payload) {
+        try {
+            return CANONICAL_MAPPER.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialise payload", e);
+            throw new IllegalArgumentException("Failed to serialise payload", e);
+        }
+    }
+
     public String generateSignature(Map<String, Object> payload, String secret) {
+        return sign(canonicalize(payload), secret);
+    }
+
+    public String sign(byte[] body, String secret) {
         try {
-            String payloadString = convertPayloadToString(payload);
-            return generateHmacSignature(payloadString, secret);
+            return Base64.getEncoder().encodeToString(mac(secret).doFinal(body));
         } catch (Exception e) {
             log.error("Failed to generate signature", e);
             throw new RuntimeException("Failed to generate signature", e);
@@ -38,48 +78,39 @@ public class SignatureService {
     }
 
     public boolean verifySignature(String payload, String signature, String secret) {
-        try {
-            String expectedSignature = generateHmacSignature(payload, secret);
-            return constantTimeEquals(signature, expectedSignature);
-        } catch (Exception e) {
-            log.error("Failed to verify signature", e);
+        if (payload == null || signature == null) {
             return false;
         }
+        return verifySignature(payload.getBytes(StandardCharsets.UTF_8),
+                signature.getBytes(StandardCharsets.US_ASCII), secret);
     }
 
-    private String generateHmacSignature(String data, String secret)
-            throws NoSuchAlgorithmException, InvalidKeyException {
-        Mac mac = Mac.getInstance(signatureAlgorithm);
-        SecretKeySpec secretKeySpec = new SecretKeySpec(
-                secret.getBytes(StandardCharsets.UTF_8),
-                signatureAlgorithm
-        );
-        mac.init(secretKeySpec);
-
-        byte[] hash = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-        return Base64.getEncoder().encodeToString(hash);
-    }
-
-    private String convertPayloadToString(Map<String, Object> payload) {
-        // Convert payload to a consistent string representation
-        // In production, use a proper JSON serializer with sorted keys
-        return payload.toString();
-    }
-
-    private boolean constantTimeEquals(String a, String b) {
-        if (a == null || b == null) {
+    /**
+     * Verifies a Base64 signature, as received in a header, against the raw body bytes.
+     */
+    public boolean verifySignature(byte[] payload, byte[] signature, String secret) {
+        if (payload == null || signature == null || secret == null) {
             return false;
         }
 
-        if (a.length() != b.length()) {
+        try {
+            byte[] expected = mac(secret).doFinal(payload);
+            return MessageDigest.isEqual(expected, Base64.getDecoder().decode(signature));
+        } catch (Exception e) {
+            log.error("Failed to verify signature", e);
             return false;
         }
+    }
 
-        int result = 0;
-        for (int i = 0; i < a.length(); i++) {
-            result |= a.charAt(i) ^ b.charAt(i);
+    private Mac mac(String secret) throws GeneralSecurityException {
+        Map<String, Mac> cache = macs.get();
+        Mac mac = cache.get(secret);
+        if (mac == null) {
+            mac = Mac.getInstance(signatureAlgorithm);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), signatureAlgorithm));
+            cache.put(secret, mac);
         }
-
-        return result == 0;
+        // doFinal() resets the Mac, so a cached instance is ready for the next message
+        return mac;
     }
 }
@@ -0,0 +1,306 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.routing.EndpointDescriptor;
+import dev.dammak.paymentservicewebhook.routing.EndpointRoutingIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Settles events left in PENDING or PROCESSING, e.g. because a node died between writing the
+ * event and queueing its deliveries, or between the last delivery and the status update.
+ *
+ * Each run walks unresolved events that have not changed for {@code stale-after} in
+ * (created_at, id) keyset batches, reading ids only. Every batch is then settled with a few
+ * set-based statements bounded by the batch's key range:
+ * <ul>
+ *   <li>events whose latest attempt is terminal for every endpoint they fan out to become
+ *       DELIVERED or FAILED; an endpoint without any delivery row yet keeps the event open;</li>
+ *   <li>events older than {@code expire-after} that are still open become EXPIRED;</li>
+ *   <li>events whose fan-out never reached the broker and that have no delivery or outbox row
+ *       are queued again to their current endpoints, with their outstanding delivery count
+ *       reset to match and their fan-out marked published so they are requeued only once.</li>
+ * </ul>
+ * Events with deliveries still in flight are left alone until they settle or expire.
+ * PostgreSQL only; a no-op on other databases.
+ */
+
+@Service
+@Slf4j
+public class StaleEventSweeper {
+
+    // Shared by every statement of a batch: unresolved, stale, and inside the batch's key range
+    private static final String BATCH_PREDICATE = """
+            e.status IN ('PENDING', 'PROCESSING')
+            AND COALESCE(e.updated_at, e.created_at) < ?
+            AND e.created_at >= ? AND e.created_at <= ?
+            AND (e.created_at, e.id) > (?, ?) AND (e.created_at, e.id) <= (?, ?)
+            """;
+
+    static final String SCAN_SQL = """
+            SELECT e.id, e.created_at FROM webhook_events e
+            WHERE e.status IN ('PENDING', 'PROCESSING')
+            AND COALESCE(e.updated_at, e.created_at) < ?
+            AND e.created_at >= ?
+            AND (e.created_at, e.id) > (?, ?)
+            ORDER BY e.created_at, e.id
+            LIMIT ?
+            """;
+
+    static final String RESOLVE_SQL = """
+            WITH batch AS (
+                SELECT e.id FROM webhook_events e WHERE %s
+            ), latest AS (
+                SELECT DISTINCT ON (d.webhook_event_id, d.webhook_endpoint_id) d.webhook_event_id, d.status
+                FROM webhook_deliveries d JOIN batch b ON b.id = d.webhook_event_id
+                WHERE d.created_at >= ?
+                ORDER BY d.webhook_event_id, d.webhook_endpoint_id, d.attempt_number DESC, d.created_at DESC
+            ), outcome AS (
+                SELECT webhook_event_id,
+                       count(*) AS endpoints,
+                       count(*) FILTER (WHERE status IN ('SUCCESS', 'MAX_RETRIES_EXCEEDED')) AS finished,
+                       bool_or(status = 'MAX_RETRIES_EXCEEDED') AS failed
+                FROM latest
+                GROUP BY webhook_event_id
+            )
+            UPDATE webhook_events e
+            SET status = CASE WHEN o.failed THEN 'FAILED' ELSE 'DELIVERED' END, updated_at = ?
+            FROM outcome o
+            WHERE e.id = o.webhook_event_id AND e.created_at >= ? AND e.created_at <= ?
+            AND o.finished = o.endpoints AND o.finished >= COALESCE(e.expected_deliveries, 0)
+            RETURNING e.status
+            """.formatted(BATCH_PREDICATE);
+
+    static final String EXPIRE_SQL = """
+            UPDATE webhook_events e SET status = 'EXPIRED', updated_at = ?
+            WHERE %s AND e.created_at < ?
+            """.formatted(BATCH_PREDICATE);
+
+    static final String REQUEUE_SQL = """
+            UPDATE webhook_events e SET status = 'PROCESSING', updated_at = ?
+            WHERE %s
+            AND e.fanout_published_at IS NULL
+            AND NOT EXISTS (SELECT 1 FROM webhook_deliveries d WHERE d.webhook_event_id = e.id AND d.created_at >= ?)
+            AND NOT EXISTS (SELECT 1 FROM delivery_outbox o WHERE o.webhook_event_id = e.id)
+            RETURNING e.id, e.created_at, e.event_type
+            """.formatted(BATCH_PREDICATE);
+
+    static final String RESET_OUTSTANDING_SQL =
+            "UPDATE webhook_events SET outstanding_deliveries = ?, expected_deliveries = ?, failed_deliveries = 0, " +
+            "fanout_published_at = ? WHERE id = ? AND created_at = ?";
+
+    static final String NOTHING_TO_DELIVER_SQL =
+            "UPDATE webhook_events SET status = 'DELIVERED', updated_at = ? WHERE id = ? AND created_at = ?";
+
+    private static final RowMapper<Cursor> CURSOR_MAPPER = (rs, rowNum) ->
+            new Cursor(rs.getObject(1, UUID.class), rs.getTimestamp(2).toLocalDateTime(), null);
+
+    private static final RowMapper<Cursor> REQUEUED_MAPPER = (rs, rowNum) ->
+            new Cursor(rs.getObject(1, UUID.class), rs.getTimestamp(2).toLocalDateTime(), rs.getString(3));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EndpointRoutingIndex routingIndex;
+    private final DeliveryQueue deliveryQueue;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Duration staleAfter;
+    private final Duration expireAfter;
+    private final Duration lookback;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final AtomicLong backlog = new AtomicLong();
+    private final Timer runTimer;
+
+    public StaleEventSweeper(JdbcTemplate jdbcTemplate,
+                             EndpointRoutingIndex routingIndex,
+                             DeliveryQueue deliveryQueue,
+                             MeterRegistry meterRegistry,
+                             @Value("${webhook.sweeper.enabled:true}") boolean enabled,
+                             @Value("${webhook.sweeper.stale-after:15m}") Duration staleAfter,
+                             @Value("${webhook.sweeper.expire-after:24h}") Duration expireAfter,
+                             @Value("${webhook.sweeper.lookback:7d}") Duration lookback,
+                             @Value("${webhook.sweeper.batch-size:500}") int batchSize,
+                             @Value("${webhook.sweeper.max-batches-per-run:100}") int maxBatchesPerRun) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.routingIndex = routingIndex;
+        this.deliveryQueue = deliveryQueue;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.staleAfter = staleAfter;
+        this.expireAfter = expireAfter;
+        this.lookback = lookback;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+
+        Gauge.builder("webhook.sweeper.backlog", backlog, AtomicLong::get)
+                .description("Stale events the last sweep found and could not settle yet")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("webhook.sweeper.run")
+                .description("Duration of one stale event sweep")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${webhook.sweeper.interval:60000}",
+            initialDelayString = "${webhook.sweeper.interval:60000}")
+    public void sweep() {
+        if (!enabled || !isPostgres()) {
+            return;
+        }
+        runTimer.record(this::sweepBatches);
+    }
+
+    private void sweepBatches() {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp staleBefore = Timestamp.valueOf(now.minus(staleAfter));
+        Timestamp since = Timestamp.valueOf(now.minus(lookback));
+
+        Cursor cursor = new Cursor(new UUID(0, 0), since.toLocalDateTime(), null);
+        long scanned = 0;
+        long settled = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<Cursor> page = jdbcTemplate.query(SCAN_SQL, CURSOR_MAPPER,
+                    staleBefore, since, Timestamp.valueOf(cursor.createdAt()), cursor.id(), batchSize);
+            if (page.isEmpty()) {
+                break;
+            }
+
+            Cursor last = page.get(page.size() - 1);
+            scanned += page.size();
+            settled += settle(new Batch(staleBefore, cursor, last), now);
+            cursor = last;
+
+            if (page.size() < batchSize) {
+                break;
+            }
+        }
+
+        backlog.set(scanned - settled);
+        if (scanned > 0) {
+            log.info("Swept {} stale events, settled {}", scanned, settled);
+        }
+    }
+
+    /**
+     * @return events that left PENDING/PROCESSING
+     */
+    private long settle(Batch batch, LocalDateTime now) {
+        Timestamp updatedAt = Timestamp.valueOf(now);
+
+        List<Object> resolveArgs = batch.args();
+        resolveArgs.add(batch.lowerBound());
+        resolveArgs.add(updatedAt);
+        resolveArgs.add(batch.lowerBound());
+        resolveArgs.add(batch.upperBound());
+        List<String> resolved = jdbcTemplate.queryForList(RESOLVE_SQL, String.class, resolveArgs.toArray());
+        long failed = resolved.stream().filter("FAILED"::equals).count();
+        count("delivered", resolved.size() - failed);
+        count("failed", failed);
+
+        List<Object> expireArgs = new ArrayList<>();
+        expireArgs.add(updatedAt);
+        expireArgs.addAll(batch.args());
+        expireArgs.add(Timestamp.valueOf(now.minus(expireAfter)));
+        int expired = jdbcTemplate.update(EXPIRE_SQL, expireArgs.toArray());
+        count("expired", expired);
+
+        List<Object> requeueArgs = new ArrayList<>();
+        requeueArgs.add(updatedAt);
+        requeueArgs.addAll(batch.args());
+        requeueArgs.add(batch.lowerBound());
+        List<Cursor> orphans = jdbcTemplate.query(REQUEUE_SQL, REQUEUED_MAPPER, requeueArgs.toArray());
+        return resolved.size() + expired + requeue(orphans, updatedAt);
+    }
+
+    /**
+     * @return orphans settled as having nothing to deliver
+     */
+    private int requeue(List<Cursor> orphans, Timestamp updatedAt) {
+        List<Object[]> nothingToDeliver = new ArrayList<>();
+        List<Object[]> outstanding = new ArrayList<>();
+        List<Runnable> enqueues = new ArrayList<>();
+        for (Cursor orphan : orphans) {
+            List<EndpointDescriptor> endpoints = routingIndex.lookup(orphan.eventType());
+            Timestamp createdAt = Timestamp.valueOf(orphan.createdAt());
+            if (endpoints.isEmpty()) {
+                // Same outcome as ingesting an event nobody subscribes to
+                nothingToDeliver.add(new Object[]{updatedAt, orphan.id(), createdAt});
+                continue;
+            }
+            outstanding.add(new Object[]{endpoints.size(), endpoints.size(), updatedAt, orphan.id(), createdAt});
+            endpoints.forEach(endpoint -> enqueues.add(() ->
+                    deliveryQueue.enqueue(orphan.id(), endpoint.getId(), endpoint.getMerchantId())));
+        }
+
+        // Completion is counted against the endpoints subscribed now, before any delivery can finish
+        if (!outstanding.isEmpty()) {
+            jdbcTemplate.batchUpdate(RESET_OUTSTANDING_SQL, outstanding);
+            enqueues.forEach(Runnable::run);
+        }
+        count("requeued", outstanding.size());
+
+        if (!nothingToDeliver.isEmpty()) {
+            jdbcTemplate.batchUpdate(NOTHING_TO_DELIVER_SQL, nothingToDeliver);
+            count("delivered", nothingToDeliver.size());
+        }
+        return nothingToDeliver.size();
+    }
+
+    private void count(String action, long events) {
+        if (events > 0) {
+            meterRegistry.counter("webhook.sweeper.events", "action", action).increment(events);
+        }
+    }
+
+    private boolean isPostgres() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product);
+    }
+
+    private record Cursor(UUID id, LocalDateTime createdAt, String eventType) {
+    }
+
+    /**
+     * Events after {@code from} up to and including {@code to} in (created_at, id) order.
+     */
+    private record Batch(Timestamp staleBefore, Cursor from, Cursor to) {
+
+        Timestamp lowerBound() {
+            return Timestamp.valueOf(from.createdAt());
+        }
+
+        Timestamp upperBound() {
+            return Timestamp.valueOf(to.createdAt());
+        }
+
+        /**
+         * Arguments for {@link #BATCH_PREDICATE}, in order.
+         */
+        List<Object> args() {
+            List<Object> args = new ArrayList<>();
+            args.add(staleBefore);
+            args.add(lowerBound());
+            args.add(upperBound());
+            args.add(lowerBound());
+            args.add(from.id());
+            args.add(upperBound());
+            args.add(to.id());
+            return args;
+        }
+    }
+}
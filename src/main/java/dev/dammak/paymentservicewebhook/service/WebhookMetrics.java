@@ -0,0 +1,179 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Stage metrics for the ingest, routing, signing, delivery and retry path, tagged by
+ * provider, event type, endpoint host and outcome. Percentile histograms and SLO buckets are
+ * configured under {@code management.metrics.distribution} so Prometheus can compute
+ * quantiles across pods.
+ *
+ * Tag values that come from outside (provider path, event type, endpoint host) are capped:
+ * unknown providers are reported as {@code other}, and new event types or hosts beyond the
+ * limits in {@link dev.dammak.paymentservicewebhook.config.MetricsConfig} are reported as
+ * {@code other} too rather than growing the registry without bound.
+ */
+
+@Component
+public class WebhookMetrics {
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_DUPLICATE = "duplicate";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_HTTP_ERROR = "http_error";
+
+    private static final Set<String> KNOWN_PROVIDERS = Set.of("stripe", "paypal", "razorpay");
+
+    // Endpoint URLs are only cached up to this many; further URLs are parsed on every call
+    static final int MAX_CACHED_URLS = 4_096;
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong retryBacklog = new AtomicLong();
+    private final Map<String, String> hosts = new ConcurrentHashMap<>();
+    private final Timer signing;
+    private final Timer receiptToDelivery;
+
+    public WebhookMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("webhook.delivery.inflight", inFlight, AtomicInteger::get)
+                .description("Delivery attempts started and not yet recorded")
+                .register(meterRegistry);
+        Gauge.builder("webhook.retry.backlog", retryBacklog, AtomicLong::get)
+                .description("Deliveries in RETRY_SCHEDULED state, as last counted by the retry scheduler")
+                .register(meterRegistry);
+        this.signing = Timer.builder("webhook.signature.duration")
+                .description("Time to HMAC-sign a delivery body")
+                .tag("operation", "sign")
+                .register(meterRegistry);
+        this.receiptToDelivery = Timer.builder("webhook.ingest.to.delivery.latency")
+                .description("Time from receipt of a provider event to its first successful delivery")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Times one ingested event, tagged with the outcome: {@code success}, {@code duplicate}
+     * or {@code error}.
+     */
+    public void recordIngest(String provider, String eventType, String outcome, long startNanos) {
+        Timer.builder("webhook.ingest.duration")
+                .description("Time to persist and fan out one provider event")
+                .tags(Tags.of("provider", provider(provider), "event.type", nullSafe(eventType), "outcome", outcome))
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRouting(String eventType, int matchedEndpoints, long startNanos) {
+        Timer.builder("webhook.routing.lookup")
+                .description("Time to resolve the endpoints subscribed to an event type")
+                .tags("event.type", nullSafe(eventType))
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        meterRegistry.summary("webhook.routing.fanout", "event.type", nullSafe(eventType)).record(matchedEndpoints);
+    }
+
+    public String sign(Supplier<String> signature) {
+        return signing.record(signature);
+    }
+
+    public void deliveryStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    public void deliveryFinished() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Records one completed HTTP attempt. {@code outcome} is {@code success},
+     * {@code http_error} (non-2xx answer) or {@code error} (no answer).
+     */
+    public void recordDelivery(String url, String outcome, boolean retry, long latencyMs) {
+        Tags tags = Tags.of("endpoint.host", host(url), "outcome", outcome, "attempt", retry ? "retry" : "first");
+        Timer.builder("webhook.delivery.duration")
+                .description("Duration of one delivery attempt to a merchant endpoint")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(Duration.ofMillis(latencyMs));
+    }
+
+    public void recordReceiptToDelivery(long receivedAtMillis) {
+        receiptToDelivery.record(Duration.ofMillis(System.currentTimeMillis() - receivedAtMillis));
+    }
+
+    public void retryScheduled(String url) {
+        Counter.builder("webhook.retry.scheduled")
+                .description("Failed deliveries scheduled for another attempt")
+                .tag("endpoint.host", host(url))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void retryExhausted(String url) {
+        Counter.builder("webhook.retry.exhausted")
+                .description("Deliveries that failed their last allowed attempt")
+                .tag("endpoint.host", host(url))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void retryDispatched(String outcome) {
+        meterRegistry.counter("webhook.retry.dispatched", "outcome", outcome).increment();
+    }
+
+    public void updateRetryBacklog(long scheduled) {
+        retryBacklog.set(scheduled);
+    }
+
+    private String host(String url) {
+        if (url == null) {
+            return "unknown";
+        }
+        String host = hosts.get(url);
+        if (host != null) {
+            return host;
+        }
+        host = parseHost(url);
+        if (hosts.size() < MAX_CACHED_URLS) {
+            hosts.putIfAbsent(url, host);
+        }
+        return host;
+    }
+
+    int cachedUrls() {
+        return hosts.size();
+    }
+
+    private static String parseHost(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host : "unknown";
+        } catch (IllegalArgumentException e) {
+            return "unknown";
+        }
+    }
+
+    private static String provider(String provider) {
+        String normalised = provider == null ? "" : provider.toLowerCase();
+        return KNOWN_PROVIDERS.contains(normalised) ? normalised : "other";
+    }
+
+    private static String nullSafe(String value) {
+        return value != null ? value : "unknown";
+    }
+}
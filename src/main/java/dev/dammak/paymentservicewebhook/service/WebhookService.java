@@ -10,9 +10,11 @@ import dev.dammak.paymentservicewebhook.repository.EventSubscriptionRepository;
 import dev.dammak.paymentservicewebhook.repository.MerchantRepository;
 import dev.dammak.paymentservicewebhook.repository.WebhookEndpointRepository;
 import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
+import dev.dammak.paymentservicewebhook.routing.EndpointChangedEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -43,6 +45,8 @@ public class WebhookService {
     private final MerchantRepository merchantRepository;
     private final WebhookEventRepository eventRepository;
     private final WebhookMapper mapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DeliveryStatisticsAggregator statisticsAggregator;
     private final SecureRandom secureRandom = new SecureRandom();
 
     public WebhookEndpointDTO createEndpoint(UUID merchantId, WebhookEndpointDTO dto) {
@@ -69,6 +73,7 @@ public class WebhookService {
             }
         }
 
+        eventPublisher.publishEvent(new EndpointChangedEvent(endpoint.getId()));
         return mapper.toEndpointDTO(endpoint);
     }
 
@@ -110,6 +115,7 @@ public class WebhookService {
         }
 
         endpoint = endpointRepository.save(endpoint);
+        eventPublisher.publishEvent(new EndpointChangedEvent(endpointId));
         return mapper.toEndpointDTO(endpoint);
     }
 
@@ -125,6 +131,7 @@ public class WebhookService {
 
         endpoint.setStatus(WebhookEndpoint.WebhookStatus.INACTIVE);
         endpointRepository.save(endpoint);
+        eventPublisher.publishEvent(new EndpointChangedEvent(endpointId));
     }
 
     public WebhookEndpointDTO getEndpoint(UUID merchantId, UUID endpointId) {
@@ -168,14 +175,8 @@ public class WebhookService {
     }
 
     private WebhookEndpointDTO.WebhookStatisticsDTO calculateStatistics(UUID endpointId) {
-        // This would typically query delivery statistics from the database
-        return WebhookEndpointDTO.WebhookStatisticsDTO.builder()
-                .totalDeliveries(0L)
-                .successfulDeliveries(0L)
-                .failedDeliveries(0L)
-                .successRate(0.0)
-                .averageLatencyMs(0.0)
-                .build();
+        // Served from the hourly rollups rather than aggregating over webhook_deliveries
+        return statisticsAggregator.getStatistics(endpointId);
     }
 
     /**
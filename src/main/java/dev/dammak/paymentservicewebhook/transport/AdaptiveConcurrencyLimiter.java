@@ -0,0 +1,69 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+/**
+ * Additive-increase / multiplicative-decrease concurrency limit for one merchant endpoint.
+ * The limit grows by one while the endpoint answers quickly with the window at least half
+ * used, and is cut by {@code backoffRatio} whenever a request errors, is throttled or
+ * exceeds the latency threshold.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdMs;
+
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      double backoffRatio, long latencyThresholdMs) {
+        if (minLimit < 1 || maxLimit < minLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Invalid concurrency limit configuration");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= getLimit()) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Releases a slot and feeds the outcome of the request into the limit.
+     *
+     * @param dropped true if the endpoint failed, throttled or timed out
+     */
+    public synchronized void release(long latencyMs, boolean dropped) {
+        inFlight--;
+
+        if (dropped || latencyMs > latencyThresholdMs) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (inFlight * 2 >= getLimit()) {
+            // Only grow while the current limit is actually being used
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    /**
+     * Releases a slot without judging the endpoint, e.g. when the call never left the service.
+     */
+    public synchronized void releaseIgnored() {
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,275 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+import dev.dammak.paymentservicewebhook.exception.WebhookDeliveryException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-endpoint bulkhead in front of the {@link DeliveryTransport}. Every merchant endpoint
+ * has its own adaptive concurrency limit, its own circuit breaker and its own queue, so a
+ * slow or failing merchant only ever holds its own slots; requests waiting on it do not
+ * occupy delivery threads or the capacity of healthy merchants. Bulkheads of endpoints that
+ * have been idle for {@code idle-eviction} are dropped and rebuilt on their next delivery.
+ */
+
+@Component
+@Slf4j
+public class DeliveryDispatcher {
+
+    private final DeliveryTransport deliveryTransport;
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final Map<UUID, EndpointBulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Counter queueFull;
+    private final Counter circuitOpen;
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdMs;
+    private final int maxQueued;
+    private final Duration openStateWait;
+    private final Duration queueFullRetryDelay;
+    private final long idleEvictionNanos;
+
+    public DeliveryDispatcher(DeliveryTransport deliveryTransport,
+                              MeterRegistry meterRegistry,
+                              @Value("${webhook.delivery.endpoint.initial-limit:20}") int initialLimit,
+                              @Value("${webhook.delivery.endpoint.min-limit:1}") int minLimit,
+                              @Value("${webhook.delivery.endpoint.max-limit:200}") int maxLimit,
+                              @Value("${webhook.delivery.endpoint.backoff-ratio:0.9}") double backoffRatio,
+                              @Value("${webhook.delivery.endpoint.latency-threshold:5000}") long latencyThresholdMs,
+                              @Value("${webhook.delivery.endpoint.max-queued:1000}") int maxQueued,
+                              @Value("${webhook.delivery.endpoint.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+                              @Value("${webhook.delivery.endpoint.circuit-breaker.sliding-window-size:20}") int slidingWindowSize,
+                              @Value("${webhook.delivery.endpoint.circuit-breaker.wait-duration-in-open-state:30000}") long openStateMs,
+                              @Value("${webhook.delivery.endpoint.queue-full-retry-delay:5000}") long queueFullRetryDelayMs,
+                              @Value("${webhook.delivery.endpoint.idle-eviction:10m}") Duration idleEviction) {
+        this.deliveryTransport = deliveryTransport;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.maxQueued = maxQueued;
+        this.openStateWait = Duration.ofMillis(openStateMs);
+        this.queueFullRetryDelay = Duration.ofMillis(queueFullRetryDelayMs);
+        this.idleEvictionNanos = idleEviction.toNanos();
+
+        // Kept out of the shared registry so per-endpoint breakers do not become per-endpoint meters
+        this.circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(Math.min(slidingWindowSize, 10))
+                .waitDurationInOpenState(openStateWait)
+                .build());
+
+        Gauge.builder("webhook.delivery.endpoint.queued", queued, AtomicInteger::get)
+                .description("Deliveries waiting for a slot on their endpoint")
+                .register(meterRegistry);
+        Gauge.builder("webhook.delivery.endpoint.throttled", bulkheads, this::countThrottled)
+                .description("Endpoints currently running at their concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("webhook.delivery.endpoint.bulkheads", bulkheads, Map::size)
+                .description("Endpoints with a bulkhead in memory")
+                .register(meterRegistry);
+        this.queueFull = Counter.builder("webhook.delivery.endpoint.rejected")
+                .description("Deliveries rejected by an endpoint bulkhead")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.circuitOpen = Counter.builder("webhook.delivery.endpoint.rejected")
+                .description("Deliveries rejected by an endpoint bulkhead")
+                .tag("reason", "circuit_open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends {@code request} as soon as the endpoint has a free slot. The future completes
+     * exceptionally with {@link EndpointRejectedException} while the endpoint's breaker is
+     * open or its queue is full.
+     */
+    public CompletableFuture<DeliveryResponse> submit(UUID endpointId, DeliveryRequest request) {
+        CompletableFuture<DeliveryResponse> result = new CompletableFuture<>();
+
+        while (true) {
+            EndpointBulkhead bulkhead = bulkheads.computeIfAbsent(endpointId, this::createBulkhead);
+            synchronized (bulkhead) {
+                if (bulkhead.evicted) {
+                    // Lost a race with evictIdle(); the next lookup creates a fresh bulkhead
+                    continue;
+                }
+                bulkhead.lastUsed = System.nanoTime();
+                if (bulkhead.pending.size() >= maxQueued) {
+                    queueFull.increment();
+                    result.completeExceptionally(new EndpointRejectedException(
+                            "Delivery queue full for endpoint " + endpointId, queueFullRetryDelay));
+                    return result;
+                }
+                bulkhead.pending.add(new PendingDelivery(request, result));
+                queued.incrementAndGet();
+            }
+
+            drain(bulkhead);
+            return result;
+        }
+    }
+
+    /**
+     * Drops the bulkheads of endpoints with nothing queued or in flight, a closed breaker and
+     * no delivery for {@code idle-eviction}, so endpoints that stopped receiving events do not
+     * stay in memory.
+     */
+    @Scheduled(fixedDelayString = "${webhook.delivery.endpoint.eviction-interval:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        for (UUID endpointId : bulkheads.keySet()) {
+            bulkheads.computeIfPresent(endpointId, (id, bulkhead) -> {
+                synchronized (bulkhead) {
+                    if (!bulkhead.pending.isEmpty()
+                            || bulkhead.limiter.getInFlight() > 0
+                            || bulkhead.breaker.getState() != CircuitBreaker.State.CLOSED
+                            || now - bulkhead.lastUsed < idleEvictionNanos) {
+                        return bulkhead;
+                    }
+                    bulkhead.evicted = true;
+                }
+                circuitBreakers.remove(breakerName(id));
+                return null;
+            });
+        }
+    }
+
+    int bulkheadCount() {
+        return bulkheads.size();
+    }
+
+    private void drain(EndpointBulkhead bulkhead) {
+        synchronized (bulkhead) {
+            if (bulkhead.draining) {
+                // The thread already draining this endpoint picks the work up; draining here too
+                // would recurse once per response that completes synchronously
+                return;
+            }
+            bulkhead.draining = true;
+        }
+
+        while (true) {
+            PendingDelivery next;
+            synchronized (bulkhead) {
+                if (bulkhead.pending.isEmpty() || !bulkhead.limiter.tryAcquire()) {
+                    bulkhead.draining = false;
+                    return;
+                }
+                next = bulkhead.pending.poll();
+                queued.decrementAndGet();
+            }
+            try {
+                send(bulkhead, next);
+            } catch (RuntimeException e) {
+                synchronized (bulkhead) {
+                    bulkhead.draining = false;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void send(EndpointBulkhead bulkhead, PendingDelivery delivery) {
+        if (!bulkhead.breaker.tryAcquirePermission()) {
+            bulkhead.limiter.releaseIgnored();
+            circuitOpen.increment();
+            delivery.result.completeExceptionally(new EndpointRejectedException(
+                    "Circuit breaker open for " + bulkhead.breaker.getName(), openStateWait,
+                    CallNotPermittedException.createCallNotPermittedException(bulkhead.breaker)));
+            return;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<DeliveryResponse> response;
+        try {
+            response = deliveryTransport.send(delivery.request);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+
+        response.whenComplete((result, error) -> {
+            long elapsed = System.nanoTime() - start;
+            boolean dropped = error != null || isOverloaded(result);
+
+            if (dropped) {
+                bulkhead.breaker.onError(elapsed, TimeUnit.NANOSECONDS, error != null
+                        ? error
+                        : new WebhookDeliveryException("Endpoint responded with HTTP " + result.getStatusCode()));
+            } else {
+                bulkhead.breaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+            }
+            bulkhead.limiter.release(TimeUnit.NANOSECONDS.toMillis(elapsed), dropped);
+
+            if (error != null) {
+                delivery.result.completeExceptionally(error);
+            } else {
+                delivery.result.complete(result);
+            }
+            drain(bulkhead);
+        });
+    }
+
+    private boolean isOverloaded(DeliveryResponse response) {
+        // A 4xx other than 429 says nothing about the endpoint's capacity
+        return response.getStatusCode() >= 500 || response.getStatusCode() == 429;
+    }
+
+    private EndpointBulkhead createBulkhead(UUID endpointId) {
+        return new EndpointBulkhead(
+                new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio, latencyThresholdMs),
+                circuitBreakers.circuitBreaker(breakerName(endpointId)));
+    }
+
+    private static String breakerName(UUID endpointId) {
+        return "endpoint-" + endpointId;
+    }
+
+    private double countThrottled(Map<UUID, EndpointBulkhead> bulkheads) {
+        return bulkheads.values().stream()
+                .filter(bulkhead -> bulkhead.limiter.getInFlight() >= bulkhead.limiter.getLimit())
+                .count();
+    }
+
+    private static final class EndpointBulkhead {
+
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final CircuitBreaker breaker;
+        private final Queue<PendingDelivery> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean evicted;
+        private long lastUsed = System.nanoTime();
+
+        EndpointBulkhead(AdaptiveConcurrencyLimiter limiter, CircuitBreaker breaker) {
+            this.limiter = limiter;
+            this.breaker = breaker;
+        }
+    }
+
+    private record PendingDelivery(DeliveryRequest request, CompletableFuture<DeliveryResponse> result) {
+    }
+}
@@ -0,0 +1,20 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.Map;
+
+@Value
+@Builder
+public class DeliveryRequest {
+
+    String url;
+
+    Map<String, String> headers;
+
+    byte[] body;
+
+    Duration timeout;
+}
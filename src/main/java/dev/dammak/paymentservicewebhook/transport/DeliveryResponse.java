@@ -0,0 +1,20 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class DeliveryResponse {
+
+    // Characters of a response body kept on the delivery row; transports need not read further
+    public static final int MAX_BODY_LENGTH = 1000;
+
+    int statusCode;
+
+    String body;
+
+    public boolean isSuccessful() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+}
@@ -0,0 +1,13 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends a prepared webhook request to a merchant endpoint. Implementations must complete
+ * the returned future with the endpoint's response for any HTTP status and only complete
+ * it exceptionally for transport-level failures (connect errors, timeouts, TLS failures).
+ */
+public interface DeliveryTransport {
+
+    CompletableFuture<DeliveryResponse> send(DeliveryRequest request);
+}
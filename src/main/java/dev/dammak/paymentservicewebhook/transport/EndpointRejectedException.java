@@ -0,0 +1,29 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+import dev.dammak.paymentservicewebhook.exception.WebhookDeliveryException;
+
+import java.time.Duration;
+
+/**
+ * A delivery the endpoint's bulkhead turned away before it was sent, because the endpoint's
+ * circuit breaker is open or its queue is full. The endpoint was never called, so the
+ * delivery should be tried again after {@link #getRetryAfter()} without counting an attempt.
+ */
+public class EndpointRejectedException extends WebhookDeliveryException {
+
+    private final Duration retryAfter;
+
+    public EndpointRejectedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public EndpointRejectedException(String message, Duration retryAfter, Throwable cause) {
+        super(message, cause);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,144 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Delivery transport backed by the JDK {@link HttpClient}. The client keeps a pool of
+ * keep-alive connections per host, can multiplex requests over HTTP/2 and executes
+ * requests asynchronously, so repeated deliveries to the same merchant reuse the
+ * TCP/TLS session instead of handshaking on every call.
+ *
+ * Only the start of a response body is kept, enough to fill the delivery row's truncated
+ * copy; the rest is read off the connection and discarded, so a large response costs no
+ * memory. A body that keeps going well past that is cut off by cancelling the exchange.
+ */
+
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "webhook.delivery.transport", havingValue = "http-client", matchIfMissing = true)
+public class HttpClientDeliveryTransport implements DeliveryTransport {
+
+    // Headers the JDK client manages itself and refuses to accept from callers
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        RESTRICTED_HEADERS.addAll(Set.of("connection", "content-length", "expect", "host", "upgrade"));
+    }
+
+    // UTF-8 takes up to four bytes per character
+    static final int MAX_BODY_BYTES = DeliveryResponse.MAX_BODY_LENGTH * 4;
+
+    // Draining a little keeps the connection reusable; beyond this the exchange is cancelled
+    static final long MAX_DISCARDED_BYTES = 64 * 1024;
+
+    private final HttpClient httpClient;
+
+    public HttpClientDeliveryTransport(@Value("${webhook.delivery.http.version:HTTP_2}") HttpClient.Version version,
+                                       @Value("${webhook.delivery.http.connect-timeout:5000}") long connectTimeout) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        log.info("Using JDK HttpClient delivery transport ({})", version);
+    }
+
+    @Override
+    public CompletableFuture<DeliveryResponse> send(DeliveryRequest request) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getUrl()))
+                .timeout(request.getTimeout())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(request.getBody()));
+
+        request.getHeaders().forEach((name, value) -> {
+            if (RESTRICTED_HEADERS.contains(name)) {
+                log.debug("Dropping restricted header {} for {}", name, request.getUrl());
+            } else {
+                builder.setHeader(name, value);
+            }
+        });
+
+        return httpClient.sendAsync(builder.build(), responseInfo -> new BoundedBodySubscriber(MAX_BODY_BYTES))
+                .thenApply(response -> DeliveryResponse.builder()
+                        .statusCode(response.statusCode())
+                        .body(response.body())
+                        .build());
+    }
+
+    /**
+     * Keeps the first {@code maxBytes} of the body and discards the rest. Completes when the
+     * body ends, or early, cancelling the subscription, once more than
+     * {@link #MAX_DISCARDED_BYTES} have been discarded.
+     */
+    static final class BoundedBodySubscriber implements HttpResponse.BodySubscriber<String> {
+
+        private final int maxBytes;
+        private final ByteArrayOutputStream kept = new ByteArrayOutputStream();
+        private final CompletableFuture<String> body = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private long discarded;
+
+        BoundedBodySubscriber(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                int keep = Math.min(buffer.remaining(), maxBytes - kept.size());
+                if (keep > 0) {
+                    byte[] bytes = new byte[keep];
+                    buffer.get(bytes);
+                    kept.write(bytes, 0, keep);
+                }
+                discarded += buffer.remaining();
+            }
+            if (discarded > MAX_DISCARDED_BYTES) {
+                subscription.cancel();
+                complete();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            complete();
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return body;
+        }
+
+        private void complete() {
+            body.complete(kept.toString(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Blocking transport using the shared {@link RestTemplate}. Kept for environments that
+ * need the previous behaviour; it ignores the per-request timeout and applies the
+ * global webhook.delivery.timeout instead.
+ */
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "webhook.delivery.transport", havingValue = "rest-template")
+public class RestTemplateDeliveryTransport implements DeliveryTransport {
+
+    private final RestTemplate restTemplate;
+
+    @Override
+    public CompletableFuture<DeliveryResponse> send(DeliveryRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        request.getHeaders().forEach(headers::set);
+
+        try {
+            ResponseEntity<String> response = restTemplate.exchange(
+                    request.getUrl(),
+                    HttpMethod.POST,
+                    new HttpEntity<>(request.getBody(), headers),
+                    String.class
+            );
+            return CompletableFuture.completedFuture(DeliveryResponse.builder()
+                    .statusCode(response.getStatusCode().value())
+                    .body(response.getBody())
+                    .build());
+        } catch (RestClientResponseException e) {
+            return CompletableFuture.completedFuture(DeliveryResponse.builder()
+                    .statusCode(e.getStatusCode().value())
+                    .body(e.getResponseBodyAsString())
+                    .build());
+        } catch (RestClientException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
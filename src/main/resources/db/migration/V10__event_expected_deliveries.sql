@@ -0,0 +1,10 @@
+-- db/migration/V10__event_expected_deliveries.sql
+--
+-- Number of endpoints an event fans out to, fixed at ingest (or when the stale event sweeper
+-- requeues it). outstanding_deliveries counts down from it, but only this copy tells the
+-- sweeper how many endpoints must have a final delivery before the event can be settled
+-- from its delivery rows, including endpoints that have no row yet.
+--
+-- Existing events keep NULL and are settled from whatever delivery rows they have.
+
+ALTER TABLE webhook_events ADD COLUMN expected_deliveries INTEGER;
@@ -0,0 +1,8 @@
+-- db/migration/V11__delivery_outbox_claims.sql
+--
+-- OutboxRelay claims a batch in one short transaction and publishes it outside any
+-- transaction, so row locks are no longer held while the broker acknowledges. A claim is a
+-- lease: rows whose claimed_until has passed, e.g. because the relaying node died, are
+-- claimed again by the next poll on any node.
+
+ALTER TABLE delivery_outbox ADD COLUMN claimed_until TIMESTAMP;
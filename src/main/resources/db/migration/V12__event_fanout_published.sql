@@ -0,0 +1,21 @@
+-- db/migration/V12__event_fanout_published.sql
+--
+-- OutboxRelay deletes outbox rows as soon as the broker acknowledges them, so an event whose
+-- delivery messages are still waiting on webhook-deliveries has neither an outbox row nor a
+-- delivery row. fanout_published_at records that its fan-out reached the broker, and the stale
+-- event sweeper only requeues events without it. The outbox carries the event's created_at so
+-- the relay can stamp events without scanning every partition.
+--
+-- Unresolved events whose fan-out has already left the outbox are stamped here. Any of them
+-- that really were orphaned are left to expire rather than risk fanning out twice.
+
+ALTER TABLE webhook_events ADD COLUMN fanout_published_at TIMESTAMP;
+ALTER TABLE delivery_outbox ADD COLUMN event_created_at TIMESTAMP;
+
+UPDATE delivery_outbox o SET event_created_at = e.created_at
+FROM webhook_events e
+WHERE e.id = o.webhook_event_id;
+
+UPDATE webhook_events e SET fanout_published_at = COALESCE(e.updated_at, e.created_at)
+WHERE e.status IN ('PENDING', 'PROCESSING')
+AND NOT EXISTS (SELECT 1 FROM delivery_outbox o WHERE o.webhook_event_id = e.id);
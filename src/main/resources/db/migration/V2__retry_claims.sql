@@ -0,0 +1,9 @@
+-- db/migration/V2__retry_claims.sql
+
+-- Node that currently owns a due retry, so replicas claim disjoint batches
+ALTER TABLE webhook_deliveries ADD COLUMN claimed_by VARCHAR(255);
+ALTER TABLE webhook_deliveries ADD COLUMN claimed_at TIMESTAMP;
+
+-- Only scheduled retries are ever scanned by the claim loop
+CREATE INDEX idx_webhook_deliveries_retry_due ON webhook_deliveries(next_retry_at)
+    WHERE status = 'RETRY_SCHEDULED';
@@ -0,0 +1,17 @@
+-- db/migration/V3_1__validate_event_partition_keys.sql
+--
+-- Runs outside a transaction (see the .conf alongside), so every statement commits on its
+-- own and holds its lock only for itself. VALIDATE CONSTRAINT scans under SHARE UPDATE
+-- EXCLUSIVE and the unique indexes are built CONCURRENTLY, so reads and writes carry on
+-- throughout; V3_2 then relies on both instead of scanning the tables again.
+
+ALTER TABLE webhook_events VALIDATE CONSTRAINT webhook_events_created_at_not_null;
+ALTER TABLE webhook_events VALIDATE CONSTRAINT webhook_events_legacy_bound;
+ALTER TABLE webhook_deliveries VALIDATE CONSTRAINT webhook_deliveries_created_at_not_null;
+ALTER TABLE webhook_deliveries VALIDATE CONSTRAINT webhook_deliveries_legacy_bound;
+
+-- A failed concurrent build leaves an invalid index behind; dropping it lets a retry start clean
+DROP INDEX CONCURRENTLY IF EXISTS idx_webhook_events_id_created_at;
+CREATE UNIQUE INDEX CONCURRENTLY idx_webhook_events_id_created_at ON webhook_events(id, created_at);
+DROP INDEX CONCURRENTLY IF EXISTS idx_webhook_deliveries_id_created_at;
+CREATE UNIQUE INDEX CONCURRENTLY idx_webhook_deliveries_id_created_at ON webhook_deliveries(id, created_at);
@@ -0,0 +1,116 @@
+-- db/migration/V3_2__partition_events_and_deliveries.sql
+--
+-- webhook_events and webhook_deliveries become weekly range partitions on created_at.
+-- The existing tables are attached unchanged as the first (legacy) partition, so no rows
+-- are copied, and none are scanned here either: the CHECK constraints and unique indexes
+-- prepared by V3 and V3_1 stand in for the scans SET NOT NULL and ATTACH PARTITION would
+-- otherwise make. PartitionMaintenanceService creates future partitions and drops expired ones.
+
+-- Foreign keys into a partitioned table would also have to carry created_at
+ALTER TABLE webhook_deliveries DROP CONSTRAINT webhook_deliveries_webhook_event_id_fkey;
+ALTER TABLE webhook_events DROP CONSTRAINT webhook_events_idempotency_key_key;
+
+-- Move the current tables out of the way; names of their indexes, constraints and
+-- triggers are freed for the partitioned parents
+ALTER TABLE webhook_events RENAME TO webhook_events_legacy;
+ALTER INDEX idx_webhook_events_status RENAME TO idx_webhook_events_legacy_status;
+ALTER INDEX idx_webhook_events_type RENAME TO idx_webhook_events_legacy_type;
+DROP INDEX idx_webhook_events_idempotency;
+DROP TRIGGER update_webhook_events_updated_at ON webhook_events_legacy;
+
+ALTER TABLE webhook_deliveries RENAME TO webhook_deliveries_legacy;
+ALTER TABLE webhook_deliveries_legacy
+    RENAME CONSTRAINT webhook_deliveries_webhook_endpoint_id_fkey TO webhook_deliveries_legacy_webhook_endpoint_id_fkey;
+ALTER INDEX idx_webhook_deliveries_status RENAME TO idx_webhook_deliveries_legacy_status;
+ALTER INDEX idx_webhook_deliveries_next_retry RENAME TO idx_webhook_deliveries_legacy_next_retry;
+ALTER INDEX idx_webhook_deliveries_event_endpoint RENAME TO idx_webhook_deliveries_legacy_event_endpoint;
+ALTER INDEX idx_webhook_deliveries_retry_due RENAME TO idx_webhook_deliveries_legacy_retry_due;
+DROP TRIGGER update_webhook_deliveries_updated_at ON webhook_deliveries_legacy;
+
+-- The validated CHECKs let SET NOT NULL skip its scan, after which they are redundant
+ALTER TABLE webhook_events_legacy ALTER COLUMN created_at SET NOT NULL;
+ALTER TABLE webhook_events_legacy DROP CONSTRAINT webhook_events_created_at_not_null;
+ALTER TABLE webhook_deliveries_legacy ALTER COLUMN created_at SET NOT NULL;
+ALTER TABLE webhook_deliveries_legacy DROP CONSTRAINT webhook_deliveries_created_at_not_null;
+
+-- The primary key moves onto the (id, created_at) index V3_1 built, so ATTACH finds a
+-- matching key index on the legacy partition instead of building one under its lock
+ALTER TABLE webhook_events_legacy DROP CONSTRAINT webhook_events_pkey;
+ALTER TABLE webhook_events_legacy
+    ADD CONSTRAINT webhook_events_legacy_pkey PRIMARY KEY USING INDEX idx_webhook_events_id_created_at;
+ALTER TABLE webhook_deliveries_legacy DROP CONSTRAINT webhook_deliveries_pkey;
+ALTER TABLE webhook_deliveries_legacy
+    ADD CONSTRAINT webhook_deliveries_legacy_pkey PRIMARY KEY USING INDEX idx_webhook_deliveries_id_created_at;
+
+CREATE TABLE webhook_events (
+                                id UUID NOT NULL DEFAULT gen_random_uuid(),
+                                event_type VARCHAR(100) NOT NULL,
+                                provider VARCHAR(50) NOT NULL,
+                                payload JSONB NOT NULL,
+                                idempotency_key VARCHAR(255),
+                                status VARCHAR(50) DEFAULT 'PENDING',
+                                source_ip VARCHAR(50),
+                                metadata JSONB,
+                                created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                version BIGINT DEFAULT 0,
+                                PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE webhook_deliveries (
+                                    id UUID NOT NULL DEFAULT gen_random_uuid(),
+                                    webhook_event_id UUID NOT NULL,
+                                    webhook_endpoint_id UUID NOT NULL REFERENCES webhook_endpoints(id),
+                                    status VARCHAR(50) NOT NULL,
+                                    attempt_number INT DEFAULT 1,
+                                    response_status INT,
+                                    response_body TEXT,
+                                    error_message TEXT,
+                                    delivered_at TIMESTAMP,
+                                    next_retry_at TIMESTAMP,
+                                    latency_ms BIGINT,
+                                    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                    version BIGINT DEFAULT 0,
+                                    claimed_by VARCHAR(255),
+                                    claimed_at TIMESTAMP,
+                                    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Partitioned indexes; the equivalent legacy indexes are attached rather than rebuilt
+CREATE INDEX idx_webhook_events_status ON webhook_events(status);
+CREATE INDEX idx_webhook_events_type ON webhook_events(event_type);
+CREATE INDEX idx_webhook_deliveries_status ON webhook_deliveries(status);
+CREATE INDEX idx_webhook_deliveries_next_retry ON webhook_deliveries(next_retry_at);
+CREATE INDEX idx_webhook_deliveries_event_endpoint ON webhook_deliveries(webhook_event_id, webhook_endpoint_id);
+CREATE INDEX idx_webhook_deliveries_retry_due ON webhook_deliveries(next_retry_at)
+    WHERE status = 'RETRY_SCHEDULED';
+
+CREATE TRIGGER update_webhook_events_updated_at BEFORE UPDATE ON webhook_events
+    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+
+CREATE TRIGGER update_webhook_deliveries_updated_at BEFORE UPDATE ON webhook_deliveries
+    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+
+DO $$
+DECLARE
+    boundary TIMESTAMP := date_trunc('week', CURRENT_TIMESTAMP) + INTERVAL '1 week';
+    week_start TIMESTAMP;
+    parent TEXT;
+BEGIN
+    FOREACH parent IN ARRAY ARRAY['webhook_events', 'webhook_deliveries'] LOOP
+        -- The bound V3 validated is never later than this one, so ATTACH skips its scan
+        -- of the legacy rows; the constraint has served its purpose once attached
+        EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%L)',
+                       parent, parent || '_legacy', boundary);
+        EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', parent || '_legacy', parent || '_legacy_bound');
+
+        -- Four weeks ahead; the maintenance job keeps this horizon rolling
+        FOR i IN 0..3 LOOP
+            week_start := boundary + (i * INTERVAL '1 week');
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                           parent || '_p' || to_char(week_start, 'YYYYMMDD'), parent,
+                           week_start, week_start + INTERVAL '1 week');
+        END LOOP;
+    END LOOP;
+END $$;
@@ -0,0 +1,47 @@
+-- db/migration/V3__prepare_event_partitioning.sql
+--
+-- webhook_events and webhook_deliveries become weekly range partitions on created_at
+-- (V3_2). The existing tables are attached as the first (legacy) partition rather than
+-- copied, and attaching needs three things from them that would otherwise each cost a
+-- full scan under ACCESS EXCLUSIVE: created_at NOT NULL, every row inside the partition
+-- bound, and a unique index on (id, created_at). This step adds the first two as NOT VALID
+-- CHECK constraints, which takes the lock only briefly; V3_1 validates them and builds the
+-- index without blocking writes.
+
+-- A unique constraint on a partitioned table must include the partition key, so
+-- idempotency keys get a table of their own to stay globally unique
+CREATE TABLE webhook_idempotency_keys (
+                                          idempotency_key VARCHAR(255) PRIMARY KEY,
+                                          webhook_event_id UUID NOT NULL,
+                                          created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+INSERT INTO webhook_idempotency_keys (idempotency_key, webhook_event_id, created_at)
+SELECT idempotency_key, id, COALESCE(created_at, CURRENT_TIMESTAMP)
+FROM webhook_events
+WHERE idempotency_key IS NOT NULL;
+
+CREATE INDEX idx_webhook_idempotency_keys_created ON webhook_idempotency_keys(created_at);
+
+-- The partition key is part of every row's identity from now on; the backfill takes row
+-- locks only, and the CHECK holds new rows to it until V3_2 can set NOT NULL without a scan
+UPDATE webhook_events SET created_at = CURRENT_TIMESTAMP WHERE created_at IS NULL;
+UPDATE webhook_deliveries SET created_at = CURRENT_TIMESTAMP WHERE created_at IS NULL;
+ALTER TABLE webhook_events ADD CONSTRAINT webhook_events_created_at_not_null
+    CHECK (created_at IS NOT NULL) NOT VALID;
+ALTER TABLE webhook_deliveries ADD CONSTRAINT webhook_deliveries_created_at_not_null
+    CHECK (created_at IS NOT NULL) NOT VALID;
+
+-- The legacy partition ends where next week starts. V3_2 recomputes its bound from the
+-- same expression, never earlier, so once validated this CHECK implies the partition
+-- constraint and ATTACH skips its own scan
+DO $$
+DECLARE
+    boundary TIMESTAMP := date_trunc('week', CURRENT_TIMESTAMP) + INTERVAL '1 week';
+    parent TEXT;
+BEGIN
+    FOREACH parent IN ARRAY ARRAY['webhook_events', 'webhook_deliveries'] LOOP
+        EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (created_at < %L) NOT VALID',
+                       parent, parent || '_legacy_bound', boundary);
+    END LOOP;
+END $$;
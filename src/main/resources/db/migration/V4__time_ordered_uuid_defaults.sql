@@ -0,0 +1,29 @@
+-- db/migration/V4__time_ordered_uuid_defaults.sql
+--
+-- New ids are UUIDv7 (48-bit millisecond timestamp first), generated by the application
+-- (TimeOrderedUuidGenerator) and by this function for rows inserted directly in SQL, so
+-- primary key inserts append to the index instead of landing on random pages.
+--
+-- Existing v4 ids are kept: event ids are published to merchants (X-Webhook-Event-Id) and
+-- delivery ids appear in the API, so rewriting them is not an option. Old ids stay in the
+-- legacy and older weekly partitions and disappear as those partitions expire; every
+-- partition created from now on only holds time-ordered ids.
+
+CREATE OR REPLACE FUNCTION uuid_generate_v7()
+    RETURNS UUID AS $$
+SELECT encode(
+               set_bit(
+                       set_bit(
+                               overlay(uuid_send(gen_random_uuid())
+                                       PLACING substring(int8send(floor(extract(EPOCH FROM clock_timestamp()) * 1000)::BIGINT) FROM 3)
+                                       FROM 1 FOR 6),
+                               52, 1),
+                       53, 1),
+               'hex')::UUID;
+$$ LANGUAGE sql VOLATILE;
+
+ALTER TABLE webhook_events ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE webhook_deliveries ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE webhook_endpoints ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE merchants ALTER COLUMN id SET DEFAULT uuid_generate_v7();
+ALTER TABLE event_subscriptions ALTER COLUMN id SET DEFAULT uuid_generate_v7();
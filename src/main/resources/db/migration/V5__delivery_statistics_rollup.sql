@@ -0,0 +1,23 @@
+-- db/migration/V5__delivery_statistics_rollup.sql
+--
+-- Hourly per-endpoint delivery statistics, written by DeliveryStatisticsAggregator. Each
+-- replica owns its own rows (instance_id) and overwrites them with its running totals, so
+-- flushes never contend and a restarted replica simply starts new rows. Endpoint statistics
+-- are read by merging the rows in the window instead of scanning webhook_deliveries.
+
+CREATE TABLE webhook_delivery_stats (
+    endpoint_id UUID NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    instance_id UUID NOT NULL,
+    total_count BIGINT NOT NULL,
+    success_count BIGINT NOT NULL,
+    failure_count BIGINT NOT NULL,
+    latency_sum_ms BIGINT NOT NULL,
+    -- Sparse LatencyHistogram counters; merged across rows to compute percentiles
+    latency_histogram BYTEA NOT NULL,
+    last_delivery_at TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (endpoint_id, bucket_start, instance_id)
+);
+
+CREATE INDEX idx_webhook_delivery_stats_bucket ON webhook_delivery_stats(bucket_start);
@@ -0,0 +1,4 @@
+-- Keyset scan for the stale event sweeper; only unresolved events are indexed, so the
+-- index stays small however many delivered events the partitions hold
+CREATE INDEX idx_webhook_events_unresolved ON webhook_events(created_at, id)
+    WHERE status IN ('PENDING', 'PROCESSING');
@@ -0,0 +1,12 @@
+-- db/migration/V8__event_outstanding_deliveries.sql
+--
+-- Per-event completion counters maintained by EventCompletionTracker. Ingest sets
+-- outstanding_deliveries to the number of endpoints the event fans out to; every delivery
+-- that reaches a terminal state decrements it in a single UPDATE, and the update that takes
+-- it to zero also moves the event to DELIVERED or FAILED.
+--
+-- Existing events keep 0 and are never decremented; any still open are settled by the
+-- stale event sweeper from their delivery rows.
+
+ALTER TABLE webhook_events ADD COLUMN outstanding_deliveries INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE webhook_events ADD COLUMN failed_deliveries INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,17 @@
+-- db/migration/V9__delivery_outbox.sql
+--
+-- Transactional outbox for event fan-out. Ingest writes one row per endpoint in the event's
+-- transaction instead of sending to Kafka before commit; OutboxRelay publishes rows in id
+-- order and deletes them once acknowledged. Rows only live until the next relay poll, so
+-- the table stays small and is not partitioned.
+
+CREATE TABLE delivery_outbox (
+    id UUID PRIMARY KEY DEFAULT uuid_generate_v7(),
+    webhook_event_id UUID NOT NULL,
+    webhook_endpoint_id UUID NOT NULL,
+    merchant_id UUID,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Lets the stale event sweeper tell a queued event from an orphaned one
+CREATE INDEX idx_delivery_outbox_event ON delivery_outbox(webhook_event_id);
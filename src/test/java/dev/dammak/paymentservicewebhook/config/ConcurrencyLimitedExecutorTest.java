@@ -0,0 +1,92 @@
+package dev.dammak.paymentservicewebhook.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimitedExecutorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService delegate = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        delegate.shutdownNow();
+    }
+
+    @Test
+    void execute_shouldRejectTasksOnceEverySlotIsBusy() throws Exception {
+        // Given
+        ConcurrencyLimitedExecutor executor = new ConcurrencyLimitedExecutor(delegate, 2, 50, meterRegistry);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = () -> {
+            started.countDown();
+            awaitQuietly(release);
+        };
+
+        // When
+        executor.execute(blocking);
+        executor.execute(blocking);
+
+        // Then
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(gauge("webhook.delivery.executor.inflight")).isEqualTo(2.0);
+        assertThat(gauge("webhook.delivery.executor.permits.available")).isZero();
+        assertThatThrownBy(() -> executor.execute(() -> { }))
+                .isInstanceOf(TaskRejectedException.class);
+        release.countDown();
+    }
+
+    @Test
+    void execute_shouldReleaseTheSlotWhenATaskFinishesOrFails() throws Exception {
+        // Given
+        ConcurrencyLimitedExecutor executor = new ConcurrencyLimitedExecutor(delegate, 1, 1000, meterRegistry);
+        CountDownLatch finished = new CountDownLatch(1);
+
+        // When
+        executor.execute(() -> {
+            throw new IllegalStateException("Delivery failed");
+        });
+        executor.execute(finished::countDown);
+
+        // Then
+        assertThat(finished.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("webhook.delivery.executor.permit.wait").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void execute_shouldReleaseTheSlotWhenTheDelegateRejects() {
+        // Given
+        ConcurrencyLimitedExecutor executor = new ConcurrencyLimitedExecutor(delegate, 1, 50, meterRegistry);
+        delegate.shutdown();
+
+        // When & Then
+        assertThatThrownBy(() -> executor.execute(() -> { }))
+                .isInstanceOf(TaskRejectedException.class)
+                .hasMessageContaining("rejected");
+        assertThat(gauge("webhook.delivery.executor.permits.available")).isEqualTo(1.0);
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package dev.dammak.paymentservicewebhook.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.kafka.support.converter.ConversionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KafkaConfigTest {
+
+    @Test
+    void isTransientDatabaseFailure_shouldRetryOutagesWrappedByTheContainer() {
+        assertThat(KafkaConfig.isTransientDatabaseFailure(new ListenerExecutionFailedException("Listener failed",
+                new CannotCreateTransactionException("Could not open JPA EntityManager")))).isTrue();
+        assertThat(KafkaConfig.isTransientDatabaseFailure(
+                new DataAccessResourceFailureException("Connection refused"))).isTrue();
+        assertThat(KafkaConfig.isTransientDatabaseFailure(new QueryTimeoutException("Query timed out"))).isTrue();
+    }
+
+    @Test
+    void isTransientDatabaseFailure_shouldNotRetryRecordsThatCanNeverBeStored() {
+        assertThat(KafkaConfig.isTransientDatabaseFailure(new ListenerExecutionFailedException("Listener failed",
+                new DataIntegrityViolationException("value too long")))).isFalse();
+        assertThat(KafkaConfig.isTransientDatabaseFailure(new ConversionException("Malformed", null))).isFalse();
+        assertThat(KafkaConfig.isTransientDatabaseFailure(null)).isFalse();
+    }
+}
@@ -0,0 +1,201 @@
+package dev.dammak.paymentservicewebhook.consumer;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookDelivery;
+import dev.dammak.paymentservicewebhook.service.DeliveryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.converter.ConversionException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeliveryConsumerTest {
+
+    private static final String TOPIC = "webhook-deliveries";
+
+    @Mock
+    private DeliveryService deliveryService;
+
+    @Mock
+    private DeadLetterPublishingRecoverer deadLetterRecoverer;
+
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    @Mock
+    private Consumer<?, ?> consumer;
+
+    @Test
+    void onDeliveries_shouldDeliverSameKeyInOrderAndOtherKeysInParallel() throws Exception {
+        // Given
+        DeliveryConsumer deliveryConsumer = new DeliveryConsumer(deliveryService, deadLetterRecoverer, new SimpleMeterRegistry(), "endpoint");
+        UUID endpointA = UUID.randomUUID();
+        UUID endpointB = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+
+        CompletableFuture<WebhookDelivery> firstDelivery = new CompletableFuture<>();
+        when(deliveryService.deliverWebhook(first, endpointA)).thenReturn(firstDelivery);
+        when(deliveryService.deliverWebhook(second, endpointA)).thenReturn(CompletableFuture.completedFuture(null));
+        when(deliveryService.deliverWebhook(other, endpointB)).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        CompletableFuture<Void> consuming = CompletableFuture.runAsync(() -> deliveryConsumer.onDeliveries(List.of(
+                record(0, endpointA, first),
+                record(1, endpointA, second),
+                record(2, endpointB, other)), acknowledgment, consumer));
+
+        // Then
+        verify(deliveryService, timeout(1000)).deliverWebhook(other, endpointB);
+        verify(deliveryService, never()).deliverWebhook(second, endpointA);
+        verifyNoInteractions(acknowledgment);
+
+        firstDelivery.complete(null);
+        consuming.get(5, TimeUnit.SECONDS);
+        var inOrder = inOrder(deliveryService);
+        inOrder.verify(deliveryService).deliverWebhook(first, endpointA);
+        inOrder.verify(deliveryService).deliverWebhook(second, endpointA);
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void onDeliveries_shouldReportUnparseableRecordsWithoutDispatchingLaterOnes() {
+        // Given
+        DeliveryConsumer deliveryConsumer = new DeliveryConsumer(deliveryService, deadLetterRecoverer, new SimpleMeterRegistry(), "none");
+        UUID endpointId = UUID.randomUUID();
+        UUID before = UUID.randomUUID();
+        UUID after = UUID.randomUUID();
+        ConsumerRecord<String, Object> invalid = new ConsumerRecord<>(TOPIC, 0, 1, null, "not-a-map");
+        when(deliveryService.deliverWebhook(before, endpointId)).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When & Then
+        assertThatThrownBy(() -> deliveryConsumer.onDeliveries(List.of(
+                record(0, endpointId, before), invalid, record(2, endpointId, after)), acknowledgment, consumer))
+                .isInstanceOfSatisfying(BatchListenerFailedException.class, e -> {
+                    assertThat(e.getIndex()).isEqualTo(1);
+                    assertThat(e.getCause()).isInstanceOf(ConversionException.class);
+                });
+        verify(deliveryService, never()).deliverWebhook(after, endpointId);
+        verifyNoInteractions(acknowledgment);
+    }
+
+    @Test
+    void onDeliveries_shouldSettleFailedRecordsAndCommitTheWholeBatch() {
+        // Given
+        DeliveryConsumer deliveryConsumer = new DeliveryConsumer(deliveryService, deadLetterRecoverer, new SimpleMeterRegistry(), "none");
+        UUID endpointId = UUID.randomUUID();
+        UUID delivered = UUID.randomUUID();
+        UUID deleted = UUID.randomUUID();
+        UUID unavailable = UUID.randomUUID();
+        ConsumerRecord<String, Object> deletedRecord = record(1, endpointId, deleted);
+        when(deliveryService.deliverWebhook(delivered, endpointId)).thenReturn(CompletableFuture.completedFuture(null));
+        when(deliveryService.deliverWebhook(deleted, endpointId)).thenReturn(
+                CompletableFuture.failedFuture(new CompletionException(new ResourceNotFoundException("Event not found"))));
+        when(deliveryService.deliverWebhook(unavailable, endpointId)).thenReturn(
+                CompletableFuture.failedFuture(new QueryTimeoutException("timeout")));
+
+        // When
+        deliveryConsumer.onDeliveries(List.of(
+                record(0, endpointId, delivered),
+                deletedRecord,
+                record(2, endpointId, unavailable)), acknowledgment, consumer);
+
+        // Then
+        verify(deadLetterRecoverer).accept(eq(deletedRecord), eq(consumer), any(ResourceNotFoundException.class));
+        verify(deliveryService).parkForRetry(unavailable, endpointId, "timeout");
+        verify(deliveryService, never()).parkForRetry(eq(delivered), any(), any());
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void onDeliveries_shouldPollAgainFromAFailureThatCouldNotBeSettled() {
+        // Given
+        DeliveryConsumer deliveryConsumer = new DeliveryConsumer(deliveryService, deadLetterRecoverer, new SimpleMeterRegistry(), "none");
+        UUID endpointId = UUID.randomUUID();
+        UUID delivered = UUID.randomUUID();
+        UUID unavailable = UUID.randomUUID();
+        when(deliveryService.deliverWebhook(delivered, endpointId)).thenReturn(CompletableFuture.completedFuture(null));
+        when(deliveryService.deliverWebhook(unavailable, endpointId)).thenReturn(
+                CompletableFuture.failedFuture(new QueryTimeoutException("timeout")));
+        when(deliveryService.parkForRetry(unavailable, endpointId, "timeout"))
+                .thenThrow(new QueryTimeoutException("still down"));
+
+        // When & Then
+        assertThatThrownBy(() -> deliveryConsumer.onDeliveries(List.of(
+                record(0, endpointId, delivered),
+                record(1, endpointId, unavailable)), acknowledgment, consumer))
+                .isInstanceOfSatisfying(BatchListenerFailedException.class, e -> assertThat(e.getIndex()).isEqualTo(1));
+        verifyNoInteractions(acknowledgment);
+    }
+
+    @Test
+    void onDeliveries_shouldParkTheRestOfALaneUnsentAfterAFailure() {
+        // Given
+        DeliveryConsumer deliveryConsumer = new DeliveryConsumer(deliveryService, deadLetterRecoverer, new SimpleMeterRegistry(), "endpoint");
+        UUID endpointId = UUID.randomUUID();
+        UUID failed = UUID.randomUUID();
+        UUID behind = UUID.randomUUID();
+        when(deliveryService.deliverWebhook(failed, endpointId)).thenReturn(
+                CompletableFuture.failedFuture(new QueryTimeoutException("timeout")));
+
+        // When
+        deliveryConsumer.onDeliveries(List.of(
+                record(0, endpointId, failed),
+                record(1, endpointId, behind)), acknowledgment, consumer);
+
+        // Then
+        verify(deliveryService, never()).deliverWebhook(behind, endpointId);
+        var inOrder = inOrder(deliveryService);
+        inOrder.verify(deliveryService).parkForRetry(failed, endpointId, "timeout");
+        inOrder.verify(deliveryService).parkForRetry(eq(behind), eq(endpointId), anyString());
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void onDeliveries_shouldReuseOneSetOfLaneMetersPerPartition() {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DeliveryConsumer deliveryConsumer = new DeliveryConsumer(deliveryService, deadLetterRecoverer, meterRegistry, "endpoint");
+        UUID endpointA = UUID.randomUUID();
+        UUID endpointB = UUID.randomUUID();
+        when(deliveryService.deliverWebhook(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        deliveryConsumer.onDeliveries(List.of(
+                record(0, endpointA, UUID.randomUUID()),
+                record(1, endpointA, UUID.randomUUID()),
+                record(2, endpointB, UUID.randomUUID())), acknowledgment, consumer);
+        deliveryConsumer.onDeliveries(List.of(record(3, endpointA, UUID.randomUUID())), acknowledgment, consumer);
+
+        // Then
+        assertThat(meterRegistry.find("webhook.delivery.lane.wait").timers()).hasSize(1);
+        assertThat(meterRegistry.get("webhook.delivery.lane.wait").tag("partition", "0").timer().count()).isEqualTo(4);
+        assertThat(meterRegistry.get("webhook.delivery.lane.depth").tag("partition", "0").summary().count()).isEqualTo(3);
+    }
+
+    private ConsumerRecord<String, Object> record(long offset, UUID endpointId, UUID eventId) {
+        Map<String, Object> value = Map.of("eventId", eventId.toString(), "endpointId", endpointId.toString());
+        return new ConsumerRecord<>(TOPIC, 0, offset, endpointId.toString(), value);
+    }
+}
@@ -0,0 +1,103 @@
+package dev.dammak.paymentservicewebhook.consumer;
+
+import dev.dammak.paymentservicewebhook.exception.DuplicateEventException;
+import dev.dammak.paymentservicewebhook.service.EventProcessingService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.converter.ConversionException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IngestedEventConsumerTest {
+
+    @Mock
+    private EventProcessingService eventProcessingService;
+
+    @Mock
+    private Acknowledgment acknowledgment;
+
+    @InjectMocks
+    private IngestedEventConsumer ingestedEventConsumer;
+
+    @Test
+    void onEvent_shouldAcknowledgeOnceTheEventIsStored() {
+        // Given
+        Map<String, Object> payload = Map.of("amount", 100);
+
+        // When
+        ingestedEventConsumer.onEvent(record(message(payload)), acknowledgment);
+
+        // Then
+        var inOrder = inOrder(eventProcessingService, acknowledgment);
+        inOrder.verify(eventProcessingService).processIncomingEvent("stripe", "payment.completed", payload,
+                "idem-1", "10.0.0.1", "receipt-1", 1_700_000_000_000L);
+        inOrder.verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void onEvent_shouldAcknowledgeDuplicates() {
+        // Given
+        when(eventProcessingService.processIncomingEvent(any(), any(), any(), any(), any(), any(), anyLong()))
+                .thenThrow(new DuplicateEventException("Duplicate event"));
+
+        // When
+        ingestedEventConsumer.onEvent(record(message(Map.of())), acknowledgment);
+
+        // Then
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void onEvent_shouldLeaveTheOffsetUncommittedWhenTheDatabaseIsDown() {
+        // Given
+        when(eventProcessingService.processIncomingEvent(any(), any(), any(), any(), any(), any(), anyLong()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        // When & Then
+        assertThatThrownBy(() -> ingestedEventConsumer.onEvent(record(message(Map.of())), acknowledgment))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        verifyNoInteractions(acknowledgment);
+    }
+
+    @Test
+    void onEvent_shouldRejectMalformedEventsWithoutProcessingThem() {
+        // Given
+        Map<String, Object> message = message(Map.of());
+        message.remove("eventType");
+
+        // When & Then
+        assertThatThrownBy(() -> ingestedEventConsumer.onEvent(record(message), acknowledgment))
+                .isInstanceOf(ConversionException.class);
+        assertThatThrownBy(() -> ingestedEventConsumer.onEvent(record(null), acknowledgment))
+                .isInstanceOf(ConversionException.class);
+        verifyNoInteractions(eventProcessingService, acknowledgment);
+    }
+
+    private static Map<String, Object> message(Map<String, Object> payload) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("receiptId", "receipt-1");
+        message.put("provider", "stripe");
+        message.put("eventType", "payment.completed");
+        message.put("payload", payload);
+        message.put("idempotencyKey", "idem-1");
+        message.put("sourceIp", "10.0.0.1");
+        message.put("receivedAt", 1_700_000_000_000L);
+        return message;
+    }
+
+    private static ConsumerRecord<String, Object> record(Object value) {
+        return new ConsumerRecord<>("webhook-events", 0, 42L, "idem-1", value);
+    }
+}
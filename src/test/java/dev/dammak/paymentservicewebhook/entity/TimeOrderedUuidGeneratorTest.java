@@ -0,0 +1,56 @@
+package dev.dammak.paymentservicewebhook.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    void next_shouldProduceVersion7Rfc9562Uuids() {
+        // When
+        UUID id = TimeOrderedUuidGenerator.next();
+
+        // Then
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+    }
+
+    @Test
+    void next_shouldEmbedTheCurrentTimestamp() {
+        // Given
+        long before = System.currentTimeMillis();
+
+        // When
+        UUID id = TimeOrderedUuidGenerator.next();
+
+        // Then
+        // A burst of more than 4096 ids in one millisecond may run the clock a few ms ahead
+        long timestamp = id.getMostSignificantBits() >>> 16;
+        assertThat(timestamp).isBetween(before, System.currentTimeMillis() + 50);
+    }
+
+    @Test
+    void next_shouldIncreaseInByteOrderEvenWithinOneMillisecond() {
+        // Given
+        List<String> ids = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 20_000; i++) {
+            ids.add(hex(TimeOrderedUuidGenerator.next()));
+        }
+
+        // Then (PostgreSQL compares uuids byte by byte, i.e. like their hex form)
+        assertThat(ids).isSorted().doesNotHaveDuplicates();
+    }
+
+    private static String hex(UUID id) {
+        return HexFormat.of().toHexDigits(id.getMostSignificantBits())
+                + HexFormat.of().toHexDigits(id.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,111 @@
+package dev.dammak.paymentservicewebhook.integration;
+
+import dev.dammak.paymentservicewebhook.entity.TimeOrderedUuidGenerator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Insert benchmark of random (v4) against time-ordered (v7) primary keys on a real
+ * PostgreSQL. Run with {@code mvn verify}; skipped when Docker is not available.
+ */
+class UuidInsertBenchmarkIT {
+
+    private static final int ROWS = 200_000;
+    private static final int BATCH = 1_000;
+
+    private static PostgreSQLContainer<?> postgres;
+
+    @BeforeAll
+    static void startPostgres() {
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker is not available");
+        postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+        postgres.start();
+    }
+
+    @AfterAll
+    static void stopPostgres() {
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Test
+    void timeOrderedIds_shouldKeepThePrimaryKeyIndexCompact() throws Exception {
+        try (Connection connection = DriverManager.getConnection(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())) {
+            // Given
+            createTable(connection, "bench_v4");
+            createTable(connection, "bench_v7");
+
+            // When
+            long v4Nanos = insert(connection, "bench_v4", UUID::randomUUID);
+            long v7Nanos = insert(connection, "bench_v7", TimeOrderedUuidGenerator::next);
+
+            // Then
+            long v4IndexBytes = indexSize(connection, "bench_v4_pkey");
+            long v7IndexBytes = indexSize(connection, "bench_v7_pkey");
+            System.out.printf("uuid v4: %,d rows/s, pkey %,d bytes%n", rowsPerSecond(v4Nanos), v4IndexBytes);
+            System.out.printf("uuid v7: %,d rows/s, pkey %,d bytes%n", rowsPerSecond(v7Nanos), v7IndexBytes);
+
+            // Appending fills leaf pages; random inserts leave them about half empty after splits
+            assertThat(v7IndexBytes).isLessThan(v4IndexBytes);
+        }
+    }
+
+    private static void createTable(Connection connection, String table) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + table + " (id UUID PRIMARY KEY, "
+                    + "created_at TIMESTAMP NOT NULL, payload TEXT NOT NULL)");
+        }
+    }
+
+    private static long insert(Connection connection, String table, Supplier<UUID> ids) throws Exception {
+        connection.setAutoCommit(false);
+        long start = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + table + " (id, created_at, payload) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= ROWS; i++) {
+                insert.setObject(1, ids.get());
+                insert.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+                insert.setString(3, "{\"type\":\"payment.succeeded\",\"amount\":" + i + "}");
+                insert.addBatch();
+                if (i % BATCH == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        connection.setAutoCommit(true);
+        return elapsed;
+    }
+
+    private static long indexSize(Connection connection, String index) throws Exception {
+        try (PreparedStatement query = connection.prepareStatement("SELECT pg_relation_size(?::regclass)")) {
+            query.setString(1, index);
+            try (ResultSet rs = query.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private static long rowsPerSecond(long nanos) {
+        return ROWS * 1_000_000_000L / nanos;
+    }
+}
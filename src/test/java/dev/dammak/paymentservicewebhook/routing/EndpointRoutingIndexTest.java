@@ -0,0 +1,125 @@
+package dev.dammak.paymentservicewebhook.routing;
+
+import dev.dammak.paymentservicewebhook.entity.EventSubscription;
+import dev.dammak.paymentservicewebhook.entity.Merchant;
+import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import dev.dammak.paymentservicewebhook.repository.WebhookEndpointRepository;
+import dev.dammak.paymentservicewebhook.util.TestDataBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EndpointRoutingIndexTest {
+
+    @Mock
+    private WebhookEndpointRepository endpointRepository;
+
+    private EndpointRoutingIndex routingIndex;
+    private Merchant merchant;
+
+    @BeforeEach
+    void setUp() {
+        routingIndex = new EndpointRoutingIndex(endpointRepository, new SimpleMeterRegistry());
+        merchant = TestDataBuilder.createMerchant();
+        merchant.setId(UUID.randomUUID());
+    }
+
+    @Test
+    void lookup_shouldReturnEndpointsSubscribedToEventType() {
+        // Given
+        WebhookEndpoint endpoint = endpointWithEvents("payment.created", "payment.updated");
+        when(endpointRepository.findAllActiveWithSubscriptions()).thenReturn(List.of(endpoint));
+
+        // When
+        routingIndex.rebuild();
+
+        // Then
+        assertThat(routingIndex.lookup("payment.created"))
+                .extracting(EndpointDescriptor::getId)
+                .containsExactly(endpoint.getId());
+        assertThat(routingIndex.lookup("payment.refunded")).isEmpty();
+        assertThat(routingIndex.findEndpoint(endpoint.getId()))
+                .get()
+                .satisfies(descriptor -> {
+                    assertThat(descriptor.getMerchantId()).isEqualTo(merchant.getId());
+                    assertThat(descriptor.getHeaders()).containsEntry("X-Custom-Header", "test-value");
+                });
+    }
+
+    @Test
+    void lookup_shouldIgnoreInactiveSubscriptions() {
+        // Given
+        WebhookEndpoint endpoint = endpointWithEvents("payment.created");
+        endpoint.getSubscriptions().get(0).setIsActive(false);
+        when(endpointRepository.findAllActiveWithSubscriptions()).thenReturn(List.of(endpoint));
+
+        // When
+        routingIndex.rebuild();
+
+        // Then
+        assertThat(routingIndex.lookup("payment.created")).isEmpty();
+        assertThat(routingIndex.findEndpoint(endpoint.getId())).isEmpty();
+    }
+
+    @Test
+    void refresh_shouldReplaceChangedEndpointWithoutFullRebuild() {
+        // Given
+        WebhookEndpoint endpoint = endpointWithEvents("payment.created");
+        when(endpointRepository.findAllActiveWithSubscriptions()).thenReturn(List.of(endpoint));
+        routingIndex.rebuild();
+
+        WebhookEndpoint updated = endpointWithEvents("payment.refunded");
+        updated.setId(endpoint.getId());
+        when(endpointRepository.findByIdWithSubscriptions(endpoint.getId())).thenReturn(Optional.of(updated));
+
+        // When
+        routingIndex.refresh(endpoint.getId());
+
+        // Then
+        assertThat(routingIndex.lookup("payment.created")).isEmpty();
+        assertThat(routingIndex.lookup("payment.refunded"))
+                .extracting(EndpointDescriptor::getId)
+                .containsExactly(endpoint.getId());
+        verify(endpointRepository, times(1)).findAllActiveWithSubscriptions();
+    }
+
+    @Test
+    void refresh_shouldRemoveDeactivatedEndpoint() {
+        // Given
+        WebhookEndpoint endpoint = endpointWithEvents("payment.created");
+        when(endpointRepository.findAllActiveWithSubscriptions()).thenReturn(List.of(endpoint));
+        routingIndex.rebuild();
+
+        endpoint.setStatus(WebhookEndpoint.WebhookStatus.INACTIVE);
+        when(endpointRepository.findByIdWithSubscriptions(endpoint.getId())).thenReturn(Optional.of(endpoint));
+
+        // When
+        routingIndex.refresh(endpoint.getId());
+
+        // Then
+        assertThat(routingIndex.lookup("payment.created")).isEmpty();
+    }
+
+    private WebhookEndpoint endpointWithEvents(String... eventTypes) {
+        WebhookEndpoint endpoint = TestDataBuilder.createWebhookEndpoint(merchant);
+        endpoint.setId(UUID.randomUUID());
+        List<EventSubscription> subscriptions = new ArrayList<>();
+        for (String eventType : eventTypes) {
+            subscriptions.add(TestDataBuilder.createEventSubscription(endpoint, eventType));
+        }
+        endpoint.setSubscriptions(subscriptions);
+        return endpoint;
+    }
+}
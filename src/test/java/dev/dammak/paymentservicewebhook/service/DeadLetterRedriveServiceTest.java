@@ -0,0 +1,187 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.dto.RedriveJobDTO;
+import dev.dammak.paymentservicewebhook.dto.RedriveRequestDTO;
+import dev.dammak.paymentservicewebhook.exception.WebhookException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.ConsumerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeadLetterRedriveServiceTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition(DeadLetterPublisher.TOPIC, 0);
+
+    @Mock
+    private ConsumerFactory<Object, Object> consumerFactory;
+
+    @Mock
+    private DeliveryQueue deliveryQueue;
+
+    private MockConsumer<Object, Object> consumer;
+    private DeadLetterRedriveService redriveService;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new MockConsumer<>("earliest");
+        consumer.updatePartitions(DeadLetterPublisher.TOPIC,
+                List.of(new PartitionInfo(DeadLetterPublisher.TOPIC, 0, null, null, null)));
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        redriveService = new DeadLetterRedriveService(consumerFactory, deliveryQueue, new SimpleMeterRegistry(),
+                1_000, 100, 1, Duration.ofMillis(50), Duration.ofHours(24));
+    }
+
+    @AfterEach
+    void tearDown() {
+        redriveService.shutdown();
+    }
+
+    @Test
+    void start_shouldQueueOnlyEntriesMatchingTheFilter() throws Exception {
+        // Given
+        UUID merchantId = UUID.randomUUID();
+        UUID endpointId = UUID.randomUUID();
+        UUID matchingEvent = UUID.randomUUID();
+        UUID otherMerchantEvent = UUID.randomUUID();
+        UUID otherTypeEvent = UUID.randomUUID();
+        givenDeadLetters(
+                entry(matchingEvent, endpointId, merchantId, "payment.failed"),
+                entry(otherMerchantEvent, UUID.randomUUID(), UUID.randomUUID(), "payment.failed"),
+                entry(otherTypeEvent, endpointId, merchantId, "payment.succeeded"));
+        when(deliveryQueue.enqueue(any(UUID.class), any(UUID.class), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        RedriveJobDTO started = redriveService.start(RedriveRequestDTO.builder()
+                .merchantId(merchantId)
+                .eventType("payment.failed")
+                .build());
+        RedriveJobDTO finished = awaitFinished(started.getId());
+
+        // Then
+        assertThat(finished.getStatus()).isEqualTo("COMPLETED");
+        assertThat(finished.getScanned()).isEqualTo(3);
+        assertThat(finished.getMatched()).isEqualTo(1);
+        assertThat(finished.getQueued()).isEqualTo(1);
+        verify(deliveryQueue).enqueue(matchingEvent, endpointId, merchantId);
+        verifyNoMoreInteractions(deliveryQueue);
+    }
+
+    @Test
+    void start_shouldCountEntriesThatCouldNotBeQueued() throws Exception {
+        // Given
+        UUID endpointId = UUID.randomUUID();
+        givenDeadLetters(
+                entry(UUID.randomUUID(), endpointId, null, "payment.failed"),
+                entry(UUID.randomUUID(), endpointId, null, "payment.failed"));
+        when(deliveryQueue.enqueue(any(UUID.class), eq(endpointId), any()))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+
+        // When
+        RedriveJobDTO finished = awaitFinished(redriveService.start(new RedriveRequestDTO()).getId());
+
+        // Then
+        assertThat(finished.getStatus()).isEqualTo("COMPLETED");
+        assertThat(finished.getQueued()).isEqualTo(1);
+        assertThat(finished.getFailed()).isEqualTo(1);
+    }
+
+    @Test
+    void start_shouldRejectAnInvertedTimeRange() {
+        // Given
+        Instant now = Instant.now();
+        RedriveRequestDTO request = RedriveRequestDTO.builder().from(now).to(now.minusSeconds(60)).build();
+
+        // When & Then
+        assertThatThrownBy(() -> redriveService.start(request)).isInstanceOf(WebhookException.class);
+        verifyNoInteractions(consumerFactory);
+    }
+
+    @Test
+    void start_shouldEvictJobsFinishedLongerAgoThanTheRetention() throws Exception {
+        // Given
+        redriveService.shutdown();
+        redriveService = new DeadLetterRedriveService(consumerFactory, deliveryQueue, new SimpleMeterRegistry(),
+                1_000, 100, 1, Duration.ofMillis(50), Duration.ZERO);
+        when(consumerFactory.createConsumer(anyString(), anyString(), anyString(), any(Properties.class)))
+                .thenThrow(new IllegalStateException("broker unavailable"));
+        UUID finishedJob = awaitFinished(redriveService.start(new RedriveRequestDTO()).getId()).getId();
+        Thread.sleep(10);
+
+        // When
+        UUID nextJob = redriveService.start(new RedriveRequestDTO()).getId();
+
+        // Then
+        assertThat(redriveService.getJob(finishedJob)).isEmpty();
+        assertThat(redriveService.getJob(nextJob)).isPresent();
+    }
+
+    @Test
+    void matches_shouldApplyTheTimeRangeToTheRecordTimestamp() {
+        // Given
+        Instant from = Instant.parse("2026-10-17T08:00:00Z");
+        RedriveRequestDTO request = RedriveRequestDTO.builder().from(from).to(from.plusSeconds(3600)).build();
+        Map<String, Object> entry = Map.of("endpointId", UUID.randomUUID().toString());
+
+        // When & Then
+        assertThat(DeadLetterRedriveService.matches(request, entry, from.plusSeconds(60).toEpochMilli())).isTrue();
+        assertThat(DeadLetterRedriveService.matches(request, entry, from.minusSeconds(1).toEpochMilli())).isFalse();
+        assertThat(DeadLetterRedriveService.matches(request, entry, from.plusSeconds(3601).toEpochMilli())).isFalse();
+    }
+
+    @SafeVarargs
+    private void givenDeadLetters(Map<String, Object>... entries) {
+        when(consumerFactory.createConsumer(anyString(), anyString(), anyString(), any(Properties.class)))
+                .thenReturn(consumer);
+        consumer.updateEndOffsets(Map.of(PARTITION, (long) entries.length));
+        consumer.schedulePollTask(() -> {
+            for (int i = 0; i < entries.length; i++) {
+                consumer.addRecord(new ConsumerRecord<>(DeadLetterPublisher.TOPIC, 0, i, null, entries[i]));
+            }
+        });
+    }
+
+    private static Map<String, Object> entry(UUID eventId, UUID endpointId, UUID merchantId, String eventType) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("eventId", eventId.toString());
+        entry.put("endpointId", endpointId.toString());
+        entry.put("merchantId", merchantId != null ? merchantId.toString() : null);
+        entry.put("eventType", eventType);
+        return entry;
+    }
+
+    private RedriveJobDTO awaitFinished(UUID jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        RedriveJobDTO job = redriveService.getJob(jobId).orElseThrow();
+        while ("RUNNING".equals(job.getStatus()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            job = redriveService.getJob(jobId).orElseThrow();
+        }
+        return job;
+    }
+}
@@ -0,0 +1,202 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookDelivery;
+import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import dev.dammak.paymentservicewebhook.entity.WebhookEvent;
+import dev.dammak.paymentservicewebhook.repository.WebhookDeliveryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeliveryJournalTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private WebhookDeliveryRepository deliveryRepository;
+
+    private DeliveryJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        // Flush interval far beyond the test so only explicit flushes write
+        journal = new DeliveryJournal(jdbcTemplate, deliveryRepository, new SimpleMeterRegistry(),
+                true, 3_600_000, 500, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldCoalesceTransitionsOfOneDeliveryIntoOneRow() {
+        // Given
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any())).thenReturn(new int[][]{{1, 1}});
+        WebhookDelivery delivery = delivery();
+        CompletableFuture<WebhookDelivery> inProgress = journal.record(delivery);
+        delivery.setStatus(WebhookDelivery.DeliveryStatus.SUCCESS);
+        CompletableFuture<WebhookDelivery> completed = journal.record(delivery);
+        journal.record(delivery());
+
+        // When
+        journal.flush();
+
+        // Then
+        ArgumentCaptor<Collection<Object>> rows = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture(), eq(2), any());
+        assertThat(rows.getValue()).hasSize(2);
+        assertThat(inProgress).isCompletedWithValue(delivery);
+        assertThat(completed).isCompletedWithValue(delivery);
+        assertThat(journal.backlog()).isZero();
+        verifyNoInteractions(deliveryRepository);
+    }
+
+    @Test
+    void recordTransition_shouldReportRepeatedFinalWritesAsUnchanged() {
+        // Given
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenReturn(new int[][]{{1}})
+                .thenReturn(new int[][]{{0}});
+        WebhookDelivery delivery = delivery();
+        delivery.setStatus(WebhookDelivery.DeliveryStatus.SUCCESS);
+
+        // When
+        CompletableFuture<Boolean> first = journal.recordTransition(delivery);
+        journal.flush();
+        CompletableFuture<Boolean> repeated = journal.recordTransition(delivery);
+        journal.flush();
+
+        // Then
+        assertThat(first).isCompletedWithValue(true);
+        assertThat(repeated).isCompletedWithValue(false);
+    }
+
+    @Test
+    void flush_shouldRequeueBatchesThatCannotBeWritten() {
+        // Given
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"))
+                .thenReturn(new int[][]{{1}});
+        CompletableFuture<WebhookDelivery> written = journal.record(delivery());
+
+        // When
+        journal.flush();
+
+        // Then
+        assertThat(written).isNotDone();
+        assertThat(journal.backlog()).isEqualTo(1);
+
+        journal.flush();
+        assertThat(written).isCompleted();
+        assertThat(journal.backlog()).isZero();
+    }
+
+    @Test
+    void flush_shouldKeepTheNewestStateWhenARequeuedDeliveryChangedMeanwhile() {
+        // Given
+        WebhookDelivery delivery = delivery();
+        CompletableFuture<WebhookDelivery> inProgress = journal.record(delivery);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any())).thenAnswer(invocation -> {
+            // The delivery finishes while its IN_PROGRESS row is being written
+            delivery.setStatus(WebhookDelivery.DeliveryStatus.SUCCESS);
+            journal.record(delivery);
+            throw new DataAccessResourceFailureException("connection lost");
+        }).thenReturn(new int[][]{{1}});
+
+        // When
+        journal.flush();
+        journal.flush();
+
+        // Then
+        assertThat(inProgress).isCompletedWithValue(delivery);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyCollection(), eq(1), any());
+        assertThat(journal.backlog()).isZero();
+    }
+
+    @Test
+    void flush_shouldFailWaitersOnceEveryAttemptFailed() {
+        // Given
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+        CompletableFuture<WebhookDelivery> written = journal.record(delivery());
+
+        // When
+        journal.flush();
+        journal.flush();
+        journal.flush();
+
+        // Then
+        assertThat(written).isCompletedExceptionally();
+        assertThat(journal.backlog()).isZero();
+    }
+
+    @Test
+    void flush_shouldWriteRowsOneByOneWhenTheBatchViolatesAConstraint() {
+        // Given
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenThrow(new DataIntegrityViolationException("foreign key violation"));
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class)))
+                .thenThrow(new DataIntegrityViolationException("foreign key violation"))
+                .thenReturn(1);
+        CompletableFuture<WebhookDelivery> offending = journal.record(delivery());
+        CompletableFuture<WebhookDelivery> valid = journal.record(delivery());
+
+        // When
+        journal.flush();
+
+        // Then
+        assertThat(offending).isCompletedExceptionally();
+        assertThat(valid).isCompleted().isNotCompletedExceptionally();
+        assertThat(journal.backlog()).isZero();
+    }
+
+    @Test
+    void record_shouldSaveImmediatelyWhenWriteBehindIsDisabled() {
+        // Given
+        DeliveryJournal direct = new DeliveryJournal(jdbcTemplate, deliveryRepository, new SimpleMeterRegistry(),
+                false, 50, 500, 3);
+        WebhookDelivery delivery = delivery();
+        when(deliveryRepository.save(delivery)).thenReturn(delivery);
+
+        // When
+        CompletableFuture<WebhookDelivery> written = direct.record(delivery);
+
+        // Then
+        assertThat(written).isCompletedWithValue(delivery);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private WebhookDelivery delivery() {
+        WebhookEvent event = new WebhookEvent();
+        event.setId(UUID.randomUUID());
+        WebhookEndpoint endpoint = new WebhookEndpoint();
+        endpoint.setId(UUID.randomUUID());
+        return WebhookDelivery.builder()
+                .webhookEvent(event)
+                .webhookEndpoint(endpoint)
+                .status(WebhookDelivery.DeliveryStatus.IN_PROGRESS)
+                .attemptNumber(1)
+                .build();
+    }
+}
@@ -0,0 +1,133 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.dto.WebhookEndpointDTO;
+import dev.dammak.paymentservicewebhook.entity.WebhookDeliveryStats;
+import dev.dammak.paymentservicewebhook.repository.WebhookDeliveryStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeliveryStatisticsAggregatorTest {
+
+    @Mock
+    private WebhookDeliveryStatsRepository statsRepository;
+
+    private DeliveryStatisticsAggregator aggregator;
+    private UUID endpointId;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new DeliveryStatisticsAggregator(statsRepository, Duration.ofHours(24), Duration.ofDays(30));
+        endpointId = UUID.randomUUID();
+    }
+
+    @Test
+    void getStatistics_shouldMergeStoredRowsWithUnflushedBuckets() {
+        // Given
+        LatencyHistogram stored = new LatencyHistogram();
+        for (int i = 0; i < 8; i++) {
+            stored.record(100);
+        }
+        stored.record(900);
+        stored.record(900);
+        LocalDateTime earlier = LocalDateTime.now().minusHours(3);
+        WebhookDeliveryStats otherInstance = WebhookDeliveryStats.builder()
+                .id(new WebhookDeliveryStats.Key(endpointId, earlier.truncatedTo(ChronoUnit.HOURS), UUID.randomUUID()))
+                .totalCount(10)
+                .successCount(8)
+                .failureCount(2)
+                .latencySumMs(2_600)
+                .latencyHistogram(stored.toBytes())
+                .lastDeliveryAt(earlier)
+                .build();
+        when(statsRepository.findByEndpointSince(eq(endpointId), any(LocalDateTime.class)))
+                .thenReturn(List.of(otherInstance));
+        LocalDateTime now = LocalDateTime.now();
+        aggregator.record(endpointId, true, 100, now);
+        aggregator.record(endpointId, false, 5_000, now);
+
+        // When
+        WebhookEndpointDTO.WebhookStatisticsDTO statistics = aggregator.getStatistics(endpointId);
+
+        // Then
+        assertThat(statistics.getTotalDeliveries()).isEqualTo(12);
+        assertThat(statistics.getSuccessfulDeliveries()).isEqualTo(9);
+        assertThat(statistics.getFailedDeliveries()).isEqualTo(3);
+        assertThat(statistics.getSuccessRate()).isEqualTo(75.0);
+        assertThat(statistics.getAverageLatencyMs()).isEqualTo(7_700 / 12.0);
+        assertThat(statistics.getP50LatencyMs()).isBetween(97L, 103L);
+        assertThat(statistics.getP99LatencyMs()).isBetween(4_900L, 5_100L);
+        assertThat(statistics.getLastDeliveryAt()).isEqualTo(now);
+    }
+
+    @Test
+    void getStatistics_shouldReturnZerosWithoutDeliveries() {
+        // Given
+        when(statsRepository.findByEndpointSince(eq(endpointId), any(LocalDateTime.class))).thenReturn(List.of());
+
+        // When
+        WebhookEndpointDTO.WebhookStatisticsDTO statistics = aggregator.getStatistics(endpointId);
+
+        // Then
+        assertThat(statistics.getTotalDeliveries()).isZero();
+        assertThat(statistics.getSuccessRate()).isZero();
+        assertThat(statistics.getP95LatencyMs()).isZero();
+        assertThat(statistics.getLastDeliveryAt()).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldInsertOnceThenOverwriteChangedBucketsOnly() {
+        // Given
+        aggregator.record(endpointId, true, 120, LocalDateTime.now());
+        ArgumentCaptor<List<WebhookDeliveryStats>> saved = ArgumentCaptor.forClass(List.class);
+
+        // When
+        aggregator.flush();
+        aggregator.flush();
+        aggregator.record(endpointId, true, 80, LocalDateTime.now());
+        aggregator.flush();
+
+        // Then
+        verify(statsRepository, times(2)).saveAll(saved.capture());
+        WebhookDeliveryStats first = saved.getAllValues().get(0).get(0);
+        WebhookDeliveryStats second = saved.getAllValues().get(1).get(0);
+        assertThat(first.isNew()).isTrue();
+        assertThat(first.getTotalCount()).isEqualTo(1);
+        assertThat(second.isNew()).isFalse();
+        assertThat(second.getTotalCount()).isEqualTo(2);
+        assertThat(second.getLatencySumMs()).isEqualTo(200);
+        assertThat(second.getId()).isEqualTo(first.getId());
+    }
+
+    @Test
+    void flush_shouldKeepBucketsDirtyWhenTheWriteFails() {
+        // Given
+        aggregator.record(endpointId, true, 120, LocalDateTime.now().minusHours(5));
+        when(statsRepository.saveAll(anyList())).thenThrow(new RuntimeException("database down")).thenReturn(List.of());
+
+        // When
+        aggregator.flush();
+        aggregator.flush();
+
+        // Then
+        verify(statsRepository, times(2)).saveAll(anyList());
+        assertThat(aggregator.bufferedBuckets()).isZero();
+    }
+}
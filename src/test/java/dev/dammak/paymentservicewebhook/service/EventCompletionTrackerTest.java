@@ -0,0 +1,125 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookDelivery;
+import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import dev.dammak.paymentservicewebhook.entity.WebhookEvent;
+import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventCompletionTrackerTest {
+
+    @Mock
+    private WebhookEventRepository eventRepository;
+
+    @InjectMocks
+    private EventCompletionTracker tracker;
+
+    private final UUID eventId = UUID.randomUUID();
+    private final UUID endpointId = UUID.randomUUID();
+    private final UUID deliveryId = UUID.randomUUID();
+    private final LocalDateTime createdAt = LocalDateTime.now().minusMinutes(5);
+
+    @Test
+    void deliveryFinished_shouldDecrementOnSuccess() {
+        // When
+        tracker.deliveryFinished(delivery(WebhookDelivery.DeliveryStatus.SUCCESS), createdAt);
+
+        // Then
+        verify(eventRepository).recordDeliveryFinished(eq(eventId), eq(createdAt), eq(endpointId), eq(deliveryId),
+                eq(0), any(LocalDateTime.class));
+    }
+
+    @Test
+    void deliveryFinished_shouldCountExhaustedRetriesAsFailed() {
+        // When
+        tracker.deliveryFinished(delivery(WebhookDelivery.DeliveryStatus.MAX_RETRIES_EXCEEDED), createdAt);
+
+        // Then
+        verify(eventRepository).recordDeliveryFinished(eq(eventId), eq(createdAt), eq(endpointId), eq(deliveryId),
+                eq(1), any(LocalDateTime.class));
+    }
+
+    @Test
+    void deliveryFinished_shouldTakeBackTheFailureOfAnEndpointThatLaterSucceeded() {
+        // Given
+        when(eventRepository.recordDeliveryFinished(any(), any(), any(), any(), anyInt(), any())).thenReturn(0);
+
+        // When
+        tracker.deliveryFinished(delivery(WebhookDelivery.DeliveryStatus.SUCCESS), createdAt);
+
+        // Then
+        verify(eventRepository).recordFailedDeliveryRecovered(eq(eventId), eq(createdAt), eq(endpointId),
+                eq(deliveryId), any(LocalDateTime.class));
+    }
+
+    @Test
+    void deliveryFinished_shouldNotTakeBackFailuresForCountedDeliveries() {
+        // Given
+        when(eventRepository.recordDeliveryFinished(any(), any(), any(), any(), anyInt(), any())).thenReturn(1);
+
+        // When
+        tracker.deliveryFinished(delivery(WebhookDelivery.DeliveryStatus.SUCCESS), createdAt);
+        tracker.deliveryFinished(delivery(WebhookDelivery.DeliveryStatus.MAX_RETRIES_EXCEEDED), createdAt);
+
+        // Then
+        verify(eventRepository, never()).recordFailedDeliveryRecovered(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void deliveryFinished_shouldIgnoreAttemptsThatWillBeRetried() {
+        // When
+        tracker.deliveryFinished(delivery(WebhookDelivery.DeliveryStatus.RETRY_SCHEDULED), createdAt);
+        tracker.deliveryFinished(delivery(WebhookDelivery.DeliveryStatus.FAILED), createdAt);
+
+        // Then
+        verifyNoInteractions(eventRepository);
+    }
+
+    @Test
+    void deliveryFinished_shouldLeaveEventsWithoutCreationTimeToTheSweeper() {
+        // When
+        tracker.deliveryFinished(delivery(WebhookDelivery.DeliveryStatus.SUCCESS), null);
+
+        // Then
+        verifyNoInteractions(eventRepository);
+    }
+
+    @Test
+    void deliveryFinished_shouldNotPropagateUpdateFailures() {
+        // Given
+        when(eventRepository.recordDeliveryFinished(any(), any(), any(), any(), anyInt(), any()))
+                .thenThrow(new QueryTimeoutException("timeout"));
+
+        // When & Then
+        assertThatCode(() -> tracker.deliveryFinished(delivery(WebhookDelivery.DeliveryStatus.SUCCESS), createdAt))
+                .doesNotThrowAnyException();
+    }
+
+    private WebhookDelivery delivery(WebhookDelivery.DeliveryStatus status) {
+        WebhookEvent event = new WebhookEvent();
+        event.setId(eventId);
+        WebhookEndpoint endpoint = new WebhookEndpoint();
+        endpoint.setId(endpointId);
+        WebhookDelivery delivery = WebhookDelivery.builder()
+                .webhookEvent(event)
+                .webhookEndpoint(endpoint)
+                .status(status)
+                .attemptNumber(1)
+                .build();
+        delivery.setId(deliveryId);
+        return delivery;
+    }
+}
@@ -0,0 +1,107 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookEvent;
+import dev.dammak.paymentservicewebhook.entity.WebhookIdempotencyKey;
+import dev.dammak.paymentservicewebhook.exception.DuplicateEventException;
+import dev.dammak.paymentservicewebhook.mapper.WebhookMapper;
+import dev.dammak.paymentservicewebhook.repository.DeliveryOutboxRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookIdempotencyKeyRepository;
+import dev.dammak.paymentservicewebhook.routing.EndpointRoutingIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventProcessingServiceTest {
+
+    @Mock
+    private WebhookEventRepository eventRepository;
+
+    @Mock
+    private WebhookIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private EndpointRoutingIndex routingIndex;
+
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    @Mock
+    private PreparedPayloadCache payloadCache;
+
+    @Mock
+    private DeliveryService deliveryService;
+
+    @Mock
+    private WebhookMapper mapper;
+
+    @Mock
+    private DeliveryOutboxRepository outboxRepository;
+
+    private EventProcessingService eventProcessingService;
+
+    @BeforeEach
+    void setUp() {
+        eventProcessingService = new EventProcessingService(eventRepository, idempotencyKeyRepository, routingIndex,
+                idempotencyStore, payloadCache, new WebhookMetrics(new SimpleMeterRegistry()), deliveryService,
+                mapper, outboxRepository);
+    }
+
+    @Test
+    void processIncomingEvent_shouldDeduplicateByReceiptIdWithoutAProviderKey() {
+        // Given
+        when(idempotencyStore.claim("receipt:r-1")).thenReturn(IdempotencyStore.ClaimResult.CLAIMED);
+        when(routingIndex.lookup("payment.completed")).thenReturn(List.of());
+        when(eventRepository.saveAndFlush(any(WebhookEvent.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        eventProcessingService.processIncomingEvent("stripe", "payment.completed", Map.of("amount", 100),
+                null, "10.0.0.1", "r-1", System.currentTimeMillis());
+
+        // Then
+        verify(idempotencyKeyRepository).saveAndFlush(argThat((WebhookIdempotencyKey key) ->
+                "receipt:r-1".equals(key.getIdempotencyKey())));
+        verify(eventRepository).saveAndFlush(argThat((WebhookEvent event) -> event.getIdempotencyKey() == null));
+    }
+
+    @Test
+    void processIncomingEvent_shouldDropARedeliveredReceipt() {
+        // Given
+        when(idempotencyStore.claim("receipt:r-1")).thenReturn(IdempotencyStore.ClaimResult.DUPLICATE);
+
+        // When & Then
+        assertThatThrownBy(() -> eventProcessingService.processIncomingEvent("stripe", "payment.completed",
+                Map.of("amount", 100), null, "10.0.0.1", "r-1", System.currentTimeMillis()))
+                .isInstanceOf(DuplicateEventException.class);
+        verify(eventRepository, never()).saveAndFlush(any());
+        verifyNoInteractions(outboxRepository);
+    }
+
+    @Test
+    void processIncomingEvent_shouldPreferTheProviderKey() {
+        // Given
+        when(idempotencyStore.claim("idem-1")).thenReturn(IdempotencyStore.ClaimResult.CLAIMED);
+        when(routingIndex.lookup("payment.completed")).thenReturn(List.of());
+        when(eventRepository.saveAndFlush(any(WebhookEvent.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        eventProcessingService.processIncomingEvent("stripe", "payment.completed", Map.of("amount", 100),
+                "idem-1", "10.0.0.1", "r-1", System.currentTimeMillis());
+
+        // Then
+        verify(idempotencyStore, never()).claim(startsWith(EventProcessingService.RECEIPT_KEY_PREFIX));
+        verify(idempotencyKeyRepository).saveAndFlush(argThat((WebhookIdempotencyKey key) ->
+                "idem-1".equals(key.getIdempotencyKey())));
+    }
+}
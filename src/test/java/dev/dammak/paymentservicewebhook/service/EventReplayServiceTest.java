@@ -0,0 +1,244 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.dto.EventReplayRequestDTO;
+import dev.dammak.paymentservicewebhook.entity.EventReplayJob;
+import dev.dammak.paymentservicewebhook.entity.Merchant;
+import dev.dammak.paymentservicewebhook.entity.WebhookEndpoint;
+import dev.dammak.paymentservicewebhook.exception.WebhookException;
+import dev.dammak.paymentservicewebhook.repository.EventReplayJobRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookEndpointRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
+import dev.dammak.paymentservicewebhook.util.TestDataBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventReplayServiceTest {
+
+    private static final String NODE = "node-1";
+
+    @Mock
+    private EventReplayJobRepository jobRepository;
+
+    @Mock
+    private WebhookEndpointRepository endpointRepository;
+
+    @Mock
+    private WebhookEventRepository eventRepository;
+
+    @Mock
+    private DeliveryQueue deliveryQueue;
+
+    private EventReplayService replayService;
+    private UUID merchantId;
+    private UUID endpointId;
+
+    @BeforeEach
+    void setUp() {
+        replayService = new EventReplayService(jobRepository, endpointRepository, eventRepository, deliveryQueue,
+                new SimpleMeterRegistry(), NODE, 100, 2, Duration.ofSeconds(5), Duration.ofMinutes(2), 1);
+        merchantId = UUID.randomUUID();
+        endpointId = UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        replayService.shutdown();
+    }
+
+    @Test
+    void run_shouldQueueEveryPageAndCheckpointAfterEach() {
+        // Given
+        EventReplayJob job = runningJob(1_000_000);
+        LocalDateTime t0 = job.getFromTime().plusMinutes(1);
+        WebhookEventRepository.EventCursor first = cursor(t0);
+        WebhookEventRepository.EventCursor second = cursor(t0.plusSeconds(1));
+        WebhookEventRepository.EventCursor third = cursor(t0.plusSeconds(2));
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(eventRepository.findReplayPage(eq(job.getEventTypes()), eq(job.getToTime()), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(first, second))
+                .thenReturn(List.of(third));
+        when(deliveryQueue.enqueue(any(UUID.class), eq(endpointId), eq(merchantId))).thenReturn(CompletableFuture.completedFuture(null));
+        when(jobRepository.checkpoint(eq(job.getId()), eq(NODE), any(), any(), anyLong(), any())).thenReturn(1);
+
+        // When
+        replayService.run(job.getId());
+
+        // Then
+        verify(eventRepository).findReplayPage(eq(job.getEventTypes()), eq(job.getToTime()),
+                eq(second.getCreatedAt()), eq(second.getId()), any(Pageable.class));
+        verify(deliveryQueue).enqueue(third.getId(), endpointId, merchantId);
+        verify(jobRepository).checkpoint(eq(job.getId()), eq(NODE), eq(second.getCreatedAt()), eq(second.getId()), eq(2L), any());
+        verify(jobRepository).checkpoint(eq(job.getId()), eq(NODE), eq(third.getCreatedAt()), eq(third.getId()), eq(3L), any());
+        verify(jobRepository).finish(eq(job.getId()), eq(NODE), eq(EventReplayJob.ReplayStatus.COMPLETED), isNull(), any());
+    }
+
+    @Test
+    void run_shouldStopWhenTheJobWasCancelled() {
+        // Given
+        EventReplayJob job = runningJob(1_000_000);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(eventRepository.findReplayPage(any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(cursor(job.getFromTime()), cursor(job.getFromTime())));
+        when(deliveryQueue.enqueue(any(UUID.class), any(UUID.class), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(jobRepository.checkpoint(any(), any(), any(), any(), anyLong(), any())).thenReturn(0);
+
+        // When
+        replayService.run(job.getId());
+
+        // Then
+        verify(eventRepository, times(1)).findReplayPage(any(), any(), any(), any(), any(Pageable.class));
+        verify(jobRepository, never()).finish(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void run_shouldKeepTheHeartbeatWhileWaitingForASlowSlot() {
+        // Given
+        replayService.shutdown();
+        replayService = new EventReplayService(jobRepository, endpointRepository, eventRepository, deliveryQueue,
+                new SimpleMeterRegistry(), NODE, 100, 2, Duration.ofMillis(20), Duration.ofMinutes(2), 1);
+        EventReplayJob job = runningJob(0.001);
+        WebhookEventRepository.EventCursor first = cursor(job.getFromTime().plusMinutes(1));
+        WebhookEventRepository.EventCursor second = cursor(job.getFromTime().plusMinutes(2));
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(eventRepository.findReplayPage(any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(first, second));
+        when(deliveryQueue.enqueue(any(UUID.class), any(UUID.class), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(jobRepository.checkpoint(any(), any(), any(), any(), anyLong(), any()))
+                .thenReturn(1)
+                .thenReturn(1)
+                .thenReturn(0);
+
+        // When
+        replayService.run(job.getId());
+
+        // Then
+        verify(jobRepository, times(3)).checkpoint(eq(job.getId()), eq(NODE), eq(first.getCreatedAt()), eq(first.getId()),
+                eq(1L), any());
+        verify(deliveryQueue, never()).enqueue(second.getId(), endpointId, merchantId);
+        verify(jobRepository, never()).finish(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void run_shouldFailTheJobWhenKafkaRejectsADelivery() {
+        // Given
+        EventReplayJob job = runningJob(1_000_000);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(eventRepository.findReplayPage(any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(cursor(job.getFromTime())));
+        when(deliveryQueue.enqueue(any(UUID.class), any(UUID.class), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+
+        // When
+        replayService.run(job.getId());
+
+        // Then
+        verify(jobRepository, never()).checkpoint(any(), any(), any(), any(), anyLong(), any());
+        verify(jobRepository).finish(eq(job.getId()), eq(NODE), eq(EventReplayJob.ReplayStatus.FAILED), any(), any());
+    }
+
+    @Test
+    void run_shouldIgnoreJobsOwnedByAnotherNode() {
+        // Given
+        EventReplayJob job = runningJob(100);
+        job.setOwner("node-2");
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+
+        // When
+        replayService.run(job.getId());
+
+        // Then
+        verifyNoInteractions(eventRepository, deliveryQueue);
+    }
+
+    @Test
+    void start_shouldRejectEventTypesTheEndpointDoesNotSubscribeTo() {
+        // Given
+        givenEndpointSubscribedTo("payment.succeeded");
+        EventReplayRequestDTO request = EventReplayRequestDTO.builder()
+                .from(LocalDateTime.now().minusHours(4))
+                .eventTypes(List.of("payment.succeeded", "refund.created"))
+                .build();
+
+        // When & Then
+        assertThatThrownBy(() -> replayService.start(merchantId, endpointId, request))
+                .isInstanceOf(WebhookException.class)
+                .hasMessageContaining("refund.created");
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void start_shouldRejectAnEmptyTimeRange() {
+        // Given
+        givenEndpointSubscribedTo("payment.succeeded");
+        LocalDateTime now = LocalDateTime.now();
+        EventReplayRequestDTO request = EventReplayRequestDTO.builder().from(now).to(now.minusHours(1)).build();
+
+        // When & Then
+        assertThatThrownBy(() -> replayService.start(merchantId, endpointId, request))
+                .isInstanceOf(WebhookException.class);
+        verify(jobRepository, never()).save(any());
+    }
+
+    private void givenEndpointSubscribedTo(String eventType) {
+        Merchant merchant = TestDataBuilder.createMerchant();
+        merchant.setId(merchantId);
+        WebhookEndpoint endpoint = TestDataBuilder.createWebhookEndpoint(merchant);
+        endpoint.setId(endpointId);
+        endpoint.getSubscriptions().add(TestDataBuilder.createEventSubscription(endpoint, eventType));
+        when(endpointRepository.findByIdWithSubscriptions(endpointId)).thenReturn(Optional.of(endpoint));
+    }
+
+    private EventReplayJob runningJob(double ratePerSecond) {
+        LocalDateTime from = LocalDateTime.now().minusHours(6);
+        EventReplayJob job = EventReplayJob.builder()
+                .webhookEndpointId(endpointId)
+                .merchantId(merchantId)
+                .eventTypes(List.of("payment.succeeded"))
+                .fromTime(from)
+                .toTime(from.plusHours(3))
+                .ratePerSecond(ratePerSecond)
+                .status(EventReplayJob.ReplayStatus.RUNNING)
+                .owner(NODE)
+                .heartbeatAt(LocalDateTime.now())
+                .cursorCreatedAt(from)
+                .cursorEventId(new UUID(0, 0))
+                .build();
+        job.setId(UUID.randomUUID());
+        return job;
+    }
+
+    private static WebhookEventRepository.EventCursor cursor(LocalDateTime createdAt) {
+        UUID id = UUID.randomUUID();
+        return new WebhookEventRepository.EventCursor() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return createdAt;
+            }
+        };
+    }
+}
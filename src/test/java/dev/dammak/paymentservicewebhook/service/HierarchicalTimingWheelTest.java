@@ -0,0 +1,82 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    @Test
+    void advance_shouldFireEntryWithinOneTickOfDeadline() {
+        // Given
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1000, 8, START);
+        wheel.schedule("retry-1", START + 2500);
+
+        // When & Then
+        assertThat(wheel.advance(START + 1999)).isEmpty();
+        assertThat(wheel.advance(START + 2000)).containsExactly("retry-1");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void advance_shouldCascadeEntriesBeyondFirstLevel() {
+        // Given
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1000, 8, START);
+        long deadline = START + 200_000; // three levels deep with 8 buckets of 1s
+        wheel.schedule("far", deadline);
+
+        // When
+        List<String> fired = new ArrayList<>();
+        long firedAt = -1;
+        for (long now = START; now <= deadline + 1000 && fired.isEmpty(); now += 1000) {
+            fired.addAll(wheel.advance(now));
+            firedAt = now;
+        }
+
+        // Then
+        assertThat(fired).containsExactly("far");
+        assertThat(firedAt).isBetween(deadline - 1000, deadline + 1000);
+    }
+
+    @Test
+    void advance_shouldReturnOverdueEntriesImmediately() {
+        // Given
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1000, 8, START);
+        wheel.schedule("overdue", START - 60_000);
+
+        // When & Then
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance(START)).containsExactly("overdue");
+    }
+
+    @Test
+    void advance_shouldFireEntriesInDeadlineOrderAcrossLevels() {
+        // Given
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(1000, 4, START);
+        wheel.schedule("late", START + 30_000);
+        wheel.schedule("early", START + 3_000);
+        wheel.schedule("middle", START + 9_000);
+
+        // When
+        List<String> fired = new ArrayList<>();
+        for (long now = START; now <= START + 31_000; now += 1000) {
+            fired.addAll(wheel.advance(now));
+        }
+
+        // Then
+        assertThat(fired).containsExactly("early", "middle", "late");
+    }
+
+    @Test
+    void constructor_shouldRejectInvalidGeometry() {
+        // When & Then
+        assertThatThrownBy(() -> new HierarchicalTimingWheel<String>(0, 8, START))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
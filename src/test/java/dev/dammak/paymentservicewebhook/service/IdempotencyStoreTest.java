@@ -0,0 +1,98 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyStoreTest {
+
+    private static final Duration TTL = Duration.ofHours(24);
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private IdempotencyStore idempotencyStore;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyStore = new IdempotencyStore(redisTemplate, new SimpleMeterRegistry(), "redis", TTL, 100);
+    }
+
+    @Test
+    void claim_shouldClaimNewKeyWithTtl() {
+        // Given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("webhook:idempotency:key-1"), anyString(), eq(TTL))).thenReturn(true);
+
+        // When & Then
+        assertThat(idempotencyStore.claim("key-1")).isEqualTo(IdempotencyStore.ClaimResult.CLAIMED);
+    }
+
+    @Test
+    void claim_shouldRejectKeyClaimedByAnotherNode() {
+        // Given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), eq(TTL))).thenReturn(false);
+
+        // When & Then
+        assertThat(idempotencyStore.claim("key-1")).isEqualTo(IdempotencyStore.ClaimResult.DUPLICATE);
+    }
+
+    @Test
+    void claim_shouldAnswerRepeatedKeysFromLocalCache() {
+        // Given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), eq(TTL))).thenReturn(true);
+        idempotencyStore.claim("key-1");
+
+        // When
+        IdempotencyStore.ClaimResult result = idempotencyStore.claim("key-1");
+
+        // Then
+        assertThat(result).isEqualTo(IdempotencyStore.ClaimResult.DUPLICATE);
+        verify(valueOperations, times(1)).setIfAbsent(anyString(), anyString(), eq(TTL));
+    }
+
+    @Test
+    void claim_shouldReportUnavailableWhenRedisFails() {
+        // Given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), eq(TTL)))
+                .thenThrow(new RedisConnectionFailureException("connection refused"));
+
+        // When & Then
+        assertThat(idempotencyStore.claim("key-1")).isEqualTo(IdempotencyStore.ClaimResult.UNAVAILABLE);
+    }
+
+    @Test
+    void release_shouldAllowKeyToBeClaimedAgain() {
+        // Given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), eq(TTL))).thenReturn(true);
+        idempotencyStore.claim("key-1");
+
+        // When
+        idempotencyStore.release("key-1");
+
+        // Then
+        verify(redisTemplate).delete("webhook:idempotency:key-1");
+        assertThat(idempotencyStore.claim("key-1")).isEqualTo(IdempotencyStore.ClaimResult.CLAIMED);
+    }
+}
@@ -0,0 +1,103 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InFlightDeliveryRegistryTest {
+
+    private static final Duration LEASE = Duration.ofMinutes(5);
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final UUID eventId = UUID.randomUUID();
+    private final UUID endpointId = UUID.randomUUID();
+
+    @Test
+    void acquire_shouldRejectSecondAttemptUntilReleased() {
+        // Given
+        InFlightDeliveryRegistry registry = registry("memory", LEASE);
+
+        // When & Then
+        assertThat(registry.acquire(eventId, endpointId)).isTrue();
+        assertThat(registry.acquire(eventId, endpointId)).isFalse();
+        assertThat(registry.acquire(eventId, UUID.randomUUID())).isTrue();
+
+        registry.release(eventId, endpointId);
+        assertThat(registry.acquire(eventId, endpointId)).isTrue();
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void acquire_shouldTakeOverExpiredLease() {
+        // Given
+        InFlightDeliveryRegistry registry = registry("memory", Duration.ZERO);
+        registry.acquire(eventId, endpointId);
+
+        // When & Then
+        assertThat(registry.acquire(eventId, endpointId)).isTrue();
+    }
+
+    @Test
+    void acquire_shouldRejectAttemptInFlightOnAnotherNode() {
+        // Given
+        InFlightDeliveryRegistry registry = registry("redis", LEASE);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(startsWith("webhook:inflight:"), eq("node-a"), eq(LEASE))).thenReturn(false);
+
+        // When & Then
+        assertThat(registry.acquire(eventId, endpointId)).isFalse();
+    }
+
+    @Test
+    void acquire_shouldFallBackToLocalLeaseWhenRedisIsDown() {
+        // Given
+        InFlightDeliveryRegistry registry = registry("redis", LEASE);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        // When & Then
+        assertThat(registry.acquire(eventId, endpointId)).isTrue();
+        assertThat(registry.acquire(eventId, endpointId)).isFalse();
+    }
+
+    @Test
+    void release_shouldDeleteOnlyTheLeaseThisNodeHolds() {
+        // Given
+        InFlightDeliveryRegistry registry = registry("redis", LEASE);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), eq("node-a"), eq(LEASE))).thenReturn(true);
+        registry.acquire(eventId, endpointId);
+
+        // When
+        registry.release(eventId, endpointId);
+
+        // Then
+        verify(redisTemplate).execute(InFlightDeliveryRegistry.RELEASE_SCRIPT,
+                List.of("webhook:inflight:" + eventId + ":" + endpointId), "node-a");
+        verify(redisTemplate, never()).delete(anyString());
+    }
+
+    private InFlightDeliveryRegistry registry(String store, Duration lease) {
+        return new InFlightDeliveryRegistry(redisTemplate, new SimpleMeterRegistry(), store, lease, "node-a");
+    }
+}
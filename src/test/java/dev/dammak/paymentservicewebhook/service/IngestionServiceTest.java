@@ -0,0 +1,94 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.exception.WebhookException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionServiceTest {
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    private IngestionService ingestionService;
+
+    @BeforeEach
+    void setUp() {
+        ingestionService = new IngestionService(kafkaTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(ingestionService, "ackTimeout", 100L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void accept_shouldKeyTheEventByIdempotencyKey() {
+        // Given
+        Map<String, Object> payload = Map.of("amount", 100);
+        when(kafkaTemplate.send(eq(IngestionService.EVENTS_TOPIC), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        // When
+        UUID receiptId = ingestionService.accept("stripe", "payment.completed", payload, "idem-1", "10.0.0.1");
+
+        // Then
+        verify(kafkaTemplate).send(eq(IngestionService.EVENTS_TOPIC), eq("idem-1"), argThat(value -> {
+            Map<String, Object> message = (Map<String, Object>) value;
+            return receiptId.toString().equals(message.get("receiptId"))
+                    && "stripe".equals(message.get("provider"))
+                    && "payment.completed".equals(message.get("eventType"))
+                    && payload.equals(message.get("payload"))
+                    && message.get("receivedAt") instanceof Long;
+        }));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void accept_shouldKeyByReceiptWithoutAnIdempotencyKey() {
+        // Given
+        when(kafkaTemplate.send(eq(IngestionService.EVENTS_TOPIC), anyString(), any()))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        // When
+        UUID receiptId = ingestionService.accept("stripe", "payment.completed", Map.of(), null, "10.0.0.1");
+
+        // Then
+        verify(kafkaTemplate).send(eq(IngestionService.EVENTS_TOPIC), eq(receiptId.toString()), any());
+    }
+
+    @Test
+    void accept_shouldFailWhenTheBrokerRejectsTheEvent() {
+        // Given
+        when(kafkaTemplate.send(eq(IngestionService.EVENTS_TOPIC), anyString(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Broker unavailable")));
+
+        // When & Then
+        assertThatThrownBy(() -> ingestionService.accept("stripe", "payment.completed", Map.of(), "idem-1", null))
+                .isInstanceOf(WebhookException.class)
+                .hasMessageContaining("Broker unavailable");
+    }
+
+    @Test
+    void accept_shouldFailWhenTheBrokerDoesNotAcknowledgeInTime() {
+        // Given
+        when(kafkaTemplate.send(eq(IngestionService.EVENTS_TOPIC), anyString(), any()))
+                .thenReturn(new CompletableFuture<>());
+
+        // When & Then
+        assertThatThrownBy(() -> ingestionService.accept("stripe", "payment.completed", Map.of(), "idem-1", null))
+                .isInstanceOf(WebhookException.class);
+    }
+}
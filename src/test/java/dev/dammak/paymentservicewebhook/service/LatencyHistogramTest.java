@@ -0,0 +1,95 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentile_shouldBeExactForSmallValues() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 20; i++) {
+            histogram.record(i);
+        }
+
+        // When & Then
+        assertThat(histogram.percentile(50)).isEqualTo(10);
+        assertThat(histogram.percentile(95)).isEqualTo(19);
+        assertThat(histogram.percentile(100)).isEqualTo(20);
+    }
+
+    @Test
+    void percentile_shouldStayWithinRelativeErrorForLargeValues() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i);
+        }
+
+        // When & Then
+        assertThat((double) histogram.percentile(50)).isCloseTo(5_000, within(5_000 * 0.04));
+        assertThat((double) histogram.percentile(99)).isCloseTo(9_900, within(9_900 * 0.04));
+        assertThat(histogram.getTotalCount()).isEqualTo(10_000);
+    }
+
+    @Test
+    void merge_shouldMatchRecordingIntoOneHistogram() {
+        // Given
+        LatencyHistogram combined = new LatencyHistogram();
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        for (int i = 0; i < 5_000; i++) {
+            long value = ThreadLocalRandom.current().nextLong(1, 60_000);
+            combined.record(value);
+            (i % 2 == 0 ? first : second).record(value);
+        }
+
+        // When
+        first.merge(second);
+
+        // Then
+        assertThat(first.getTotalCount()).isEqualTo(combined.getTotalCount());
+        assertThat(first.percentile(50)).isEqualTo(combined.percentile(50));
+        assertThat(first.percentile(99)).isEqualTo(combined.percentile(99));
+    }
+
+    @Test
+    void toBytes_shouldRoundTripSparseCounts() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(250);
+        histogram.record(250);
+        histogram.record(Long.MAX_VALUE);
+
+        // When
+        byte[] bytes = histogram.toBytes();
+        LatencyHistogram restored = LatencyHistogram.fromBytes(bytes);
+
+        // Then
+        assertThat(bytes.length).isLessThan(16);
+        assertThat(restored.getTotalCount()).isEqualTo(4);
+        assertThat(restored.percentile(25)).isEqualTo(3);
+        assertThat(restored.percentile(75)).isEqualTo(histogram.percentile(75));
+        assertThat(restored.percentile(100)).isEqualTo(histogram.percentile(100));
+    }
+
+    @Test
+    void fromBytes_shouldRejectTruncatedInput() {
+        // When & Then
+        assertThatThrownBy(() -> LatencyHistogram.fromBytes(new byte[]{5, (byte) 0x80}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void percentile_shouldReturnZeroWhenEmpty() {
+        // When & Then
+        assertThat(new LatencyHistogram().percentile(99)).isZero();
+    }
+}
@@ -0,0 +1,223 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.repository.DeliveryOutboxRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private DeliveryOutboxRepository outboxRepository;
+
+    @Mock
+    private WebhookEventRepository eventRepository;
+
+    @Mock
+    private DeliveryQueue deliveryQueue;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void relay_shouldPublishAndDeleteAcknowledgedMessages() {
+        // Given
+        DeliveryOutboxRepository.OutboxEntry first = entry();
+        DeliveryOutboxRepository.OutboxEntry second = entry();
+        when(outboxRepository.lockBatch(eq(500), any(LocalDateTime.class))).thenReturn(List.of(first, second));
+        when(deliveryQueue.enqueue(any(UUID.class), any(UUID.class), any(UUID.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        relay(500).relay();
+
+        // Then
+        var inOrder = inOrder(transactionTemplate, outboxRepository, deliveryQueue);
+        inOrder.verify(transactionTemplate).execute(any());
+        inOrder.verify(outboxRepository).claim(eq(List.of(first.getId(), second.getId())), any(LocalDateTime.class));
+        inOrder.verify(deliveryQueue).enqueue(first.getEventId(), first.getEndpointId(), first.getMerchantId());
+        inOrder.verify(deliveryQueue).enqueue(second.getEventId(), second.getEndpointId(), second.getMerchantId());
+        inOrder.verify(transactionTemplate).execute(any());
+        inOrder.verify(outboxRepository).deleteByIds(List.of(first.getId(), second.getId()));
+        verify(eventRepository).markFanOutPublished(eq(Set.of(first.getEventId(), second.getEventId())),
+                any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(outboxRepository, never()).releaseClaims(anyCollection());
+        verify(outboxRepository, times(1)).lockBatch(eq(500), any(LocalDateTime.class));
+        assertThat(meterRegistry.get("webhook.outbox.relayed").tag("outcome", "success").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void relay_shouldKeepMessagesTheBrokerRejected() {
+        // Given
+        DeliveryOutboxRepository.OutboxEntry acknowledged = entry();
+        DeliveryOutboxRepository.OutboxEntry rejected = entry();
+        when(outboxRepository.lockBatch(eq(2), any(LocalDateTime.class))).thenReturn(List.of(acknowledged, rejected));
+        when(deliveryQueue.enqueue(eq(acknowledged.getEventId()), any(UUID.class), any(UUID.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(deliveryQueue.enqueue(eq(rejected.getEventId()), any(UUID.class), any(UUID.class)))
+                .thenThrow(new KafkaException("broker unavailable"));
+
+        // When
+        relay(2).relay();
+
+        // Then
+        verify(outboxRepository).deleteByIds(List.of(acknowledged.getId()));
+        verify(outboxRepository).releaseClaims(List.of(rejected.getId()));
+        verify(eventRepository).markFanOutPublished(eq(Set.of(acknowledged.getEventId())),
+                eq(acknowledged.getEventCreatedAt()), any(LocalDateTime.class));
+        verify(outboxRepository, times(1)).lockBatch(eq(2), any(LocalDateTime.class));
+        assertThat(meterRegistry.get("webhook.outbox.relayed").tag("outcome", "error").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void relay_shouldDrainFullBatchesUpToTheLimit() {
+        // Given
+        when(outboxRepository.lockBatch(eq(1), any(LocalDateTime.class))).thenAnswer(invocation -> List.of(entry()));
+        when(deliveryQueue.enqueue(any(UUID.class), any(UUID.class), any(UUID.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        relay(1).relay();
+
+        // Then
+        verify(outboxRepository, times(3)).lockBatch(eq(1), any(LocalDateTime.class));
+        verify(outboxRepository, times(3)).deleteByIds(anyCollection());
+    }
+
+    @Test
+    void relay_shouldStopAKeyAtItsFirstUnacknowledgedMessage() {
+        // Given
+        UUID endpointId = UUID.randomUUID();
+        DeliveryOutboxRepository.OutboxEntry failed = entry(endpointId);
+        DeliveryOutboxRepository.OutboxEntry behindFailed = entry(endpointId);
+        DeliveryOutboxRepository.OutboxEntry otherKey = entry(UUID.randomUUID());
+        when(outboxRepository.lockOrderedBatch(eq(500), any(LocalDateTime.class), eq("endpoint")))
+                .thenReturn(List.of(failed, otherKey, behindFailed));
+        when(deliveryQueue.enqueue(eq(failed.getEventId()), any(UUID.class), any(UUID.class)))
+                .thenReturn(CompletableFuture.failedFuture(new KafkaException("broker unavailable")));
+        when(deliveryQueue.enqueue(eq(otherKey.getEventId()), any(UUID.class), any(UUID.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // When
+        new OutboxRelay(outboxRepository, eventRepository, deliveryQueue, transactionTemplate, meterRegistry,
+                true, 500, 3, Duration.ofSeconds(1), "endpoint").relay();
+
+        // Then
+        verify(outboxRepository).lockClaims();
+        verify(deliveryQueue, never()).enqueue(eq(behindFailed.getEventId()), any(UUID.class), any(UUID.class));
+        verify(outboxRepository).deleteByIds(List.of(otherKey.getId()));
+        verify(outboxRepository).releaseClaims(List.of(failed.getId(), behindFailed.getId()));
+    }
+
+    @Test
+    void relay_shouldSendAKeysMessagesOneAfterAnother() {
+        // Given
+        UUID endpointId = UUID.randomUUID();
+        DeliveryOutboxRepository.OutboxEntry first = entry(endpointId);
+        DeliveryOutboxRepository.OutboxEntry second = entry(endpointId);
+        CompletableFuture<SendResult<String, Object>> firstAck = new CompletableFuture<>();
+        when(outboxRepository.lockOrderedBatch(eq(500), any(LocalDateTime.class), eq("endpoint")))
+                .thenReturn(List.of(first, second));
+        when(deliveryQueue.enqueue(eq(first.getEventId()), any(UUID.class), any(UUID.class))).thenAnswer(invocation -> {
+            // Acknowledged only after the relay has had a chance to send ahead
+            CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> firstAck.complete(null));
+            return firstAck;
+        });
+        when(deliveryQueue.enqueue(eq(second.getEventId()), any(UUID.class), any(UUID.class))).thenAnswer(invocation -> {
+            assertThat(firstAck).isCompleted();
+            return CompletableFuture.completedFuture(null);
+        });
+
+        // When
+        new OutboxRelay(outboxRepository, eventRepository, deliveryQueue, transactionTemplate, meterRegistry,
+                true, 500, 3, Duration.ofSeconds(5), "endpoint").relay();
+
+        // Then
+        verify(outboxRepository).deleteByIds(List.of(first.getId(), second.getId()));
+        verify(outboxRepository, never()).releaseClaims(anyCollection());
+    }
+
+    @Test
+    void relay_shouldDoNothingWhenDisabled() {
+        // When
+        new OutboxRelay(outboxRepository, eventRepository, deliveryQueue, transactionTemplate, meterRegistry,
+                false, 500, 3, Duration.ofSeconds(1), "none").relay();
+
+        // Then
+        verifyNoInteractions(outboxRepository, eventRepository, deliveryQueue);
+    }
+
+    private OutboxRelay relay(int batchSize) {
+        return new OutboxRelay(outboxRepository, eventRepository, deliveryQueue, transactionTemplate, meterRegistry,
+                true, batchSize, 3, Duration.ofSeconds(1), "none");
+    }
+
+    private static DeliveryOutboxRepository.OutboxEntry entry() {
+        return entry(UUID.randomUUID());
+    }
+
+    private static DeliveryOutboxRepository.OutboxEntry entry(UUID endpointId) {
+        UUID id = UUID.randomUUID();
+        UUID eventId = UUID.randomUUID();
+        UUID merchantId = UUID.randomUUID();
+        LocalDateTime eventCreatedAt = LocalDateTime.now().minusSeconds(1);
+        return new DeliveryOutboxRepository.OutboxEntry() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public UUID getEventId() {
+                return eventId;
+            }
+
+            @Override
+            public UUID getEndpointId() {
+                return endpointId;
+            }
+
+            @Override
+            public UUID getMerchantId() {
+                return merchantId;
+            }
+
+            @Override
+            public LocalDateTime getEventCreatedAt() {
+                return eventCreatedAt;
+            }
+        };
+    }
+}
@@ -0,0 +1,159 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionMaintenanceServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void maintainPartitions_shouldCreateUpcomingWeeksAndDropExpiredPartitions() throws Exception {
+        // Given
+        LocalDate thisWeek = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate expiredWeek = thisWeek.minusWeeks(20);
+        givenPostgres();
+        givenPartitions(List.of(
+                new String[]{"webhook_events_p" + compact(expiredWeek), bound(expiredWeek, expiredWeek.plusWeeks(1))},
+                new String[]{"webhook_events_p" + compact(thisWeek), bound(thisWeek, thisWeek.plusWeeks(1))}));
+        PartitionMaintenanceService service = service(true);
+
+        // When
+        service.maintainPartitions();
+
+        // Then
+        List<String> statements = executedStatements();
+        assertThat(statements).contains(
+                "CREATE TABLE IF NOT EXISTS webhook_events_p" + compact(thisWeek.plusWeeks(2))
+                        + " PARTITION OF webhook_events FOR VALUES FROM ('" + thisWeek.plusWeeks(2)
+                        + "') TO ('" + thisWeek.plusWeeks(3) + "')",
+                "ALTER TABLE webhook_events DETACH PARTITION webhook_events_p" + compact(expiredWeek),
+                "DROP TABLE webhook_events_p" + compact(expiredWeek));
+        assertThat(statements).noneMatch(sql -> sql.contains("DETACH PARTITION webhook_events_p" + compact(thisWeek)));
+    }
+
+    @Test
+    void maintainPartitions_shouldNotCreateWeeksCoveredByTheLegacyPartition() throws Exception {
+        // Given
+        LocalDate thisWeek = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        givenPostgres();
+        givenPartitions(List.<String[]>of(new String[]{"webhook_events_legacy",
+                "FOR VALUES FROM (MINVALUE) TO ('" + thisWeek.plusWeeks(1) + " 00:00:00')"}));
+        PartitionMaintenanceService service = service(false);
+
+        // When
+        service.maintainPartitions();
+
+        // Then
+        List<String> statements = executedStatements();
+        assertThat(statements).noneMatch(sql -> sql.contains("webhook_events_p" + compact(thisWeek)));
+        assertThat(statements).anyMatch(sql -> sql.contains("webhook_events_p" + compact(thisWeek.plusWeeks(1))));
+        assertThat(statements).noneMatch(sql -> sql.contains("DETACH"));
+    }
+
+    @Test
+    void maintainPartitions_shouldPurgeExpiredIdempotencyKeysInBatches() throws Exception {
+        // Given
+        givenPostgres();
+        givenPartitions(List.of());
+        when(jdbcTemplate.update(eq(PartitionMaintenanceService.PURGE_IDEMPOTENCY_KEYS_SQL), any(Timestamp.class),
+                eq(PartitionMaintenanceService.IDEMPOTENCY_KEY_PURGE_BATCH)))
+                .thenReturn(PartitionMaintenanceService.IDEMPOTENCY_KEY_PURGE_BATCH, 42);
+
+        // When
+        service(true).maintainPartitions();
+
+        // Then
+        ArgumentCaptor<Timestamp> cutoff = ArgumentCaptor.forClass(Timestamp.class);
+        verify(jdbcTemplate, times(2)).update(eq(PartitionMaintenanceService.PURGE_IDEMPOTENCY_KEYS_SQL),
+                cutoff.capture(), eq(PartitionMaintenanceService.IDEMPOTENCY_KEY_PURGE_BATCH));
+        assertThat(cutoff.getValue().toLocalDateTime())
+                .isCloseTo(LocalDateTime.now().minusDays(90), within(1, ChronoUnit.MINUTES));
+    }
+
+    @Test
+    void maintainPartitions_shouldDoNothingOutsidePostgres() {
+        // Given
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("H2");
+
+        // When
+        service(true).maintainPartitions();
+
+        // Then
+        verify(jdbcTemplate, never()).execute(anyString());
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void upperBound_shouldParseTheRangeBoundExpression() {
+        // When & Then
+        assertThat(PartitionMaintenanceService.upperBound(
+                "FOR VALUES FROM ('2026-10-19 00:00:00') TO ('2026-10-26 00:00:00')"))
+                .isEqualTo(LocalDateTime.of(2026, 10, 26, 0, 0));
+        assertThat(PartitionMaintenanceService.upperBound("DEFAULT")).isNull();
+    }
+
+    private PartitionMaintenanceService service(boolean dropExpired) {
+        return new PartitionMaintenanceService(jdbcTemplate, true, 4, Duration.ofDays(90), dropExpired);
+    }
+
+    private void givenPostgres() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenPartitions(List<String[]> webhookEventPartitions) throws Exception {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), anyString())).thenAnswer(invocation -> {
+            if (!"webhook_events".equals(invocation.getArgument(2))) {
+                return List.of();
+            }
+            RowMapper<Object> mapper = invocation.getArgument(1);
+            List<Object> rows = new ArrayList<>();
+            for (String[] partition : webhookEventPartitions) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn(partition[0]);
+                when(rs.getString(2)).thenReturn(partition[1]);
+                rows.add(mapper.mapRow(rs, rows.size()));
+            }
+            return rows;
+        });
+    }
+
+    private List<String> executedStatements() {
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, atLeastOnce()).execute(sql.capture());
+        return sql.getAllValues();
+    }
+
+    private static String bound(LocalDate from, LocalDate to) {
+        return "FOR VALUES FROM ('" + from + " 00:00:00') TO ('" + to + " 00:00:00')";
+    }
+
+    private static String compact(LocalDate date) {
+        return date.toString().replace("-", "");
+    }
+}
@@ -0,0 +1,97 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookEvent;
+import dev.dammak.paymentservicewebhook.repository.WebhookEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PreparedPayloadCacheTest {
+
+    @Mock
+    private WebhookEventRepository eventRepository;
+
+    @Mock
+    private SignatureService signatureService;
+
+    private PreparedPayloadCache payloadCache;
+
+    @BeforeEach
+    void setUp() {
+        payloadCache = new PreparedPayloadCache(eventRepository, signatureService, new SimpleMeterRegistry(), 2);
+    }
+
+    @Test
+    void get_shouldReusePreparedPayloadWithoutReloadingEvent() {
+        // Given
+        WebhookEvent event = event(UUID.randomUUID());
+        when(signatureService.canonicalize(event.getPayload())).thenReturn("{\"id\":1}".getBytes());
+        PreparedPayload prepared = payloadCache.prepare(event);
+
+        // When
+        PreparedPayload first = payloadCache.get(event.getId());
+        PreparedPayload second = payloadCache.get(event.getId());
+
+        // Then
+        assertThat(first).isSameAs(prepared);
+        assertThat(second).isSameAs(prepared);
+        assertThat(prepared.getReceivedAt()).isEqualTo(1_000L);
+        verify(signatureService, times(1)).canonicalize(any());
+        verifyNoInteractions(eventRepository);
+    }
+
+    @Test
+    void get_shouldRebuildEvictedPayloadFromStoredEvent() {
+        // Given
+        WebhookEvent evicted = event(UUID.randomUUID());
+        when(signatureService.canonicalize(any())).thenReturn("{}".getBytes());
+        payloadCache.prepare(evicted);
+        payloadCache.prepare(event(UUID.randomUUID()));
+        payloadCache.prepare(event(UUID.randomUUID()));
+        when(eventRepository.findById(evicted.getId())).thenReturn(Optional.of(evicted));
+
+        // When
+        PreparedPayload payload = payloadCache.get(evicted.getId());
+
+        // Then
+        assertThat(payload.getEventId()).isEqualTo(evicted.getId());
+        verify(eventRepository).findById(evicted.getId());
+    }
+
+    @Test
+    void get_shouldFailWhenEventDoesNotExist() {
+        // Given
+        UUID eventId = UUID.randomUUID();
+        when(eventRepository.findById(eventId)).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThatThrownBy(() -> payloadCache.get(eventId))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("Event not found");
+    }
+
+    private WebhookEvent event(UUID id) {
+        WebhookEvent event = WebhookEvent.builder()
+                .eventType("payment.succeeded")
+                .provider("stripe")
+                .payload(Map.of("id", 1))
+                .metadata(Map.of(WebhookEvent.METADATA_RECEIVED_AT, 1_000L))
+                .build();
+        event.setId(id);
+        return event;
+    }
+}
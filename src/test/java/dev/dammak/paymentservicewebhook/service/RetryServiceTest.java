@@ -0,0 +1,154 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.entity.WebhookDelivery;
+import dev.dammak.paymentservicewebhook.repository.WebhookDeliveryRepository;
+import dev.dammak.paymentservicewebhook.repository.WebhookDeliveryRepository.RetryCandidate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.ResourceNotFoundException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetryServiceTest {
+
+    @Mock
+    private WebhookDeliveryRepository deliveryRepository;
+
+    @Mock
+    private DeliveryService deliveryService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RetryService retryService;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        retryService = new RetryService(deliveryRepository, deliveryService, transactionManager,
+                meterRegistry, new WebhookMetrics(meterRegistry), "node-a", 2, 10, 300000, 30000, 1000, Duration.ofDays(7));
+    }
+
+    @Test
+    void processRetries_shouldClaimBatchesUntilOneComesBackShort() {
+        // Given
+        RetryCandidate first = candidate();
+        RetryCandidate second = candidate();
+        RetryCandidate third = candidate();
+        when(deliveryRepository.lockDueRetries(any(), any(), any(), eq(2)))
+                .thenReturn(List.of(first, second))
+                .thenReturn(List.of(third));
+        when(deliveryService.retryDelivery(any()))
+                .thenReturn(CompletableFuture.completedFuture(persistedDelivery()));
+
+        // When
+        retryService.processRetries();
+        retryService.fireDueRetries();
+
+        // Then
+        verify(deliveryRepository, times(2)).lockDueRetries(any(), any(), any(), eq(2));
+        verify(deliveryRepository).claim(eq(List.of(first.getId(), second.getId())), eq("node-a"), any(), any());
+        verify(deliveryRepository).claim(eq(List.of(third.getId())), eq("node-a"), any(), any());
+        verify(deliveryService).retryDelivery(third);
+        verify(deliveryRepository, never()).markRetryAbandoned(any(), any(), any());
+    }
+
+    @Test
+    void processRetries_shouldKeepClaimOpenWhenDispatchFails() {
+        // Given
+        RetryCandidate candidate = candidate();
+        when(deliveryRepository.lockDueRetries(any(), any(), any(), eq(2))).thenReturn(List.of(candidate));
+        when(deliveryService.retryDelivery(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("rejected")));
+
+        // When
+        retryService.processRetries();
+        retryService.fireDueRetries();
+
+        // Then
+        verify(deliveryRepository, never()).markRetryAbandoned(any(), any(), any());
+        verify(deliveryRepository, never()).releaseClaims(any(), any());
+    }
+
+    @Test
+    void processRetries_shouldEndRetriesWhoseEndpointIsGone() {
+        // Given
+        RetryCandidate candidate = candidate();
+        when(deliveryRepository.lockDueRetries(any(), any(), any(), eq(2))).thenReturn(List.of(candidate));
+        when(deliveryService.retryDelivery(any())).thenReturn(CompletableFuture.failedFuture(
+                new CompletionException(new ResourceNotFoundException("Endpoint not found"))));
+
+        // When
+        retryService.processRetries();
+        retryService.fireDueRetries();
+
+        // Then
+        verify(deliveryRepository).markRetryAbandoned(candidate.getId(), candidate.getCreatedAt(), "Endpoint not found");
+    }
+
+    @Test
+    void processRetries_shouldNotClaimWhenNothingIsDue() {
+        // Given
+        when(deliveryRepository.lockDueRetries(any(), any(), any(), eq(2))).thenReturn(List.of());
+
+        // When
+        retryService.processRetries();
+
+        // Then
+        verify(deliveryRepository, never()).claim(any(), any(), any(), any());
+        verifyNoInteractions(deliveryService);
+    }
+
+    @Test
+    void fireDueRetries_shouldHoldRetryUntilItFallsDue() {
+        // Given
+        RetryCandidate candidate = candidate(LocalDateTime.now().plusSeconds(20));
+        when(deliveryRepository.lockDueRetries(any(), any(), any(), eq(2))).thenReturn(List.of(candidate));
+
+        // When
+        retryService.processRetries();
+        retryService.fireDueRetries();
+
+        // Then
+        verifyNoInteractions(deliveryService);
+    }
+
+    private RetryCandidate candidate() {
+        return candidate(LocalDateTime.now().minusSeconds(1));
+    }
+
+    private RetryCandidate candidate(LocalDateTime nextRetryAt) {
+        UUID id = UUID.randomUUID();
+        UUID eventId = UUID.randomUUID();
+        UUID endpointId = UUID.randomUUID();
+        RetryCandidate candidate = mock(RetryCandidate.class);
+        lenient().when(candidate.getId()).thenReturn(id);
+        lenient().when(candidate.getEventId()).thenReturn(eventId);
+        lenient().when(candidate.getEndpointId()).thenReturn(endpointId);
+        lenient().when(candidate.getNextRetryAt()).thenReturn(nextRetryAt);
+        lenient().when(candidate.getCreatedAt()).thenReturn(nextRetryAt.minusMinutes(1));
+        return candidate;
+    }
+
+    private WebhookDelivery persistedDelivery() {
+        WebhookDelivery delivery = WebhookDelivery.builder()
+                .status(WebhookDelivery.DeliveryStatus.SUCCESS)
+                .build();
+        delivery.setId(UUID.randomUUID());
+        return delivery;
+    }
+}
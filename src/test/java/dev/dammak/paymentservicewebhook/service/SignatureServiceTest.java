@@ -0,0 +1,117 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SignatureServiceTest {
+
+    private static final String SECRET = "whsec_test";
+
+    private SignatureService signatureService;
+
+    @BeforeEach
+    void setUp() {
+        signatureService = new SignatureService();
+        ReflectionTestUtils.setField(signatureService, "signatureAlgorithm", "HmacSHA256");
+        ReflectionTestUtils.setField(signatureService, "macCacheSize", 2);
+    }
+
+    @Test
+    void canonicalize_shouldProduceSortedCompactJson() {
+        // Given
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("b", 2);
+        nested.put("a", 1);
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", "payment.created");
+        payload.put("data", nested);
+        payload.put("amounts", List.of(3, 1));
+
+        // When
+        String json = new String(signatureService.canonicalize(payload), StandardCharsets.UTF_8);
+
+        // Then
+        assertThat(json).isEqualTo("{\"amounts\":[3,1],\"data\":{\"a\":1,\"b\":2},\"type\":\"payment.created\"}");
+    }
+
+    @Test
+    void canonicalize_shouldNotDependOnInsertionOrder() {
+        // Given
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("id", "evt_1");
+        first.put("amount", 100);
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("amount", 100);
+        second.put("id", "evt_1");
+
+        // When & Then
+        assertThat(signatureService.generateSignature(first, SECRET))
+                .isEqualTo(signatureService.generateSignature(second, SECRET));
+    }
+
+    @Test
+    void sign_shouldMatchReferenceHmac() throws Exception {
+        // Given
+        byte[] body = "{\"id\":\"evt_1\"}".getBytes(StandardCharsets.UTF_8);
+        Mac reference = Mac.getInstance("HmacSHA256");
+        reference.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String expected = Base64.getEncoder().encodeToString(reference.doFinal(body));
+
+        // When & Then
+        assertThat(signatureService.sign(body, SECRET)).isEqualTo(expected);
+        // Cached Mac must be reset between messages
+        assertThat(signatureService.sign(body, SECRET)).isEqualTo(expected);
+    }
+
+    @Test
+    void sign_shouldKeepSecretsIsolatedWhenCacheEvicts() {
+        // Given
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        String first = signatureService.sign(body, "secret-1");
+
+        // When
+        signatureService.sign(body, "secret-2");
+        signatureService.sign(body, "secret-3");
+
+        // Then
+        assertThat(signatureService.sign(body, "secret-1")).isEqualTo(first);
+        assertThat(signatureService.sign(body, "secret-2")).isNotEqualTo(first);
+    }
+
+    @Test
+    void verifySignature_shouldAcceptValidAndRejectTamperedPayloads() {
+        // Given
+        byte[] body = "{\"id\":\"evt_1\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] signature = signatureService.sign(body, SECRET).getBytes(StandardCharsets.US_ASCII);
+
+        // When & Then
+        assertThat(signatureService.verifySignature(body, signature, SECRET)).isTrue();
+        assertThat(signatureService.verifySignature("{\"id\":\"evt_2\"}".getBytes(StandardCharsets.UTF_8),
+                signature, SECRET)).isFalse();
+        assertThat(signatureService.verifySignature(body, signature, "other-secret")).isFalse();
+        assertThat(signatureService.verifySignature(body, "not base64!".getBytes(StandardCharsets.US_ASCII),
+                SECRET)).isFalse();
+    }
+
+    @Test
+    void verifySignature_shouldSupportStringPayloads() {
+        // Given
+        String payload = "{\"id\":\"evt_1\"}";
+        String signature = signatureService.sign(payload.getBytes(StandardCharsets.UTF_8), SECRET);
+
+        // When & Then
+        assertThat(signatureService.verifySignature(payload, signature, SECRET)).isTrue();
+        assertThat(signatureService.verifySignature(payload, null, SECRET)).isFalse();
+    }
+}
@@ -0,0 +1,167 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.routing.EndpointDescriptor;
+import dev.dammak.paymentservicewebhook.routing.EndpointRoutingIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StaleEventSweeperTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private EndpointRoutingIndex routingIndex;
+
+    @Mock
+    private DeliveryQueue deliveryQueue;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void sweep_shouldSettleResolvedEventsAndRequeueOrphans() throws Exception {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.now().minusHours(1);
+        UUID orphanId = UUID.randomUUID();
+        EndpointDescriptor endpoint = EndpointDescriptor.builder()
+                .id(UUID.randomUUID())
+                .merchantId(UUID.randomUUID())
+                .build();
+        givenPostgres();
+        givenRows(StaleEventSweeper.SCAN_SQL, List.of(
+                new Object[]{UUID.randomUUID(), createdAt, null},
+                new Object[]{UUID.randomUUID(), createdAt, null},
+                new Object[]{orphanId, createdAt, null}));
+        when(jdbcTemplate.queryForList(eq(StaleEventSweeper.RESOLVE_SQL), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("DELIVERED", "FAILED"));
+        when(jdbcTemplate.update(eq(StaleEventSweeper.EXPIRE_SQL), any(Object[].class))).thenReturn(0);
+        givenRows(StaleEventSweeper.REQUEUE_SQL, List.<Object[]>of(new Object[]{orphanId, createdAt, "payment.completed"}));
+        when(routingIndex.lookup("payment.completed")).thenReturn(List.of(endpoint));
+
+        // When
+        sweeper(500, 100).sweep();
+
+        // Then
+        verify(jdbcTemplate).batchUpdate(eq(StaleEventSweeper.RESET_OUTSTANDING_SQL), argThat((List<Object[]> args) ->
+                args.size() == 1 && Integer.valueOf(1).equals(args.get(0)[0]) && Integer.valueOf(1).equals(args.get(0)[1])
+                        && args.get(0)[2] instanceof Timestamp && orphanId.equals(args.get(0)[3])));
+        verify(deliveryQueue).enqueue(orphanId, endpoint.getId(), endpoint.getMerchantId());
+        verify(jdbcTemplate, never()).batchUpdate(eq(StaleEventSweeper.NOTHING_TO_DELIVER_SQL), anyList());
+        assertThat(events("delivered")).isEqualTo(1.0);
+        assertThat(events("failed")).isEqualTo(1.0);
+        assertThat(events("requeued")).isEqualTo(1.0);
+        assertThat(meterRegistry.get("webhook.sweeper.backlog").gauge().value()).isZero();
+    }
+
+    @Test
+    void sweep_shouldMarkOrphansWithoutSubscribersDelivered() throws Exception {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.now().minusHours(1);
+        UUID orphanId = UUID.randomUUID();
+        givenPostgres();
+        givenRows(StaleEventSweeper.SCAN_SQL, List.<Object[]>of(new Object[]{orphanId, createdAt, null}));
+        when(jdbcTemplate.queryForList(eq(StaleEventSweeper.RESOLVE_SQL), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of());
+        when(jdbcTemplate.update(eq(StaleEventSweeper.EXPIRE_SQL), any(Object[].class))).thenReturn(0);
+        givenRows(StaleEventSweeper.REQUEUE_SQL, List.<Object[]>of(new Object[]{orphanId, createdAt, "payment.refunded"}));
+        when(routingIndex.lookup("payment.refunded")).thenReturn(List.of());
+
+        // When
+        sweeper(500, 100).sweep();
+
+        // Then
+        verify(deliveryQueue, never()).enqueue(any(), any(), any());
+        verify(jdbcTemplate).batchUpdate(eq(StaleEventSweeper.NOTHING_TO_DELIVER_SQL), argThat((List<Object[]> args) ->
+                args.size() == 1 && orphanId.equals(args.get(0)[1])
+                        && Timestamp.valueOf(createdAt).equals(args.get(0)[2])));
+        assertThat(events("delivered")).isEqualTo(1.0);
+    }
+
+    @Test
+    void sweep_shouldStopAfterMaxBatchesAndReportTheBacklog() throws Exception {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.now().minusHours(1);
+        givenPostgres();
+        givenRows(StaleEventSweeper.SCAN_SQL, List.<Object[]>of(new Object[]{UUID.randomUUID(), createdAt, null}));
+        when(jdbcTemplate.queryForList(eq(StaleEventSweeper.RESOLVE_SQL), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of());
+        when(jdbcTemplate.update(eq(StaleEventSweeper.EXPIRE_SQL), any(Object[].class))).thenReturn(0);
+        givenRows(StaleEventSweeper.REQUEUE_SQL, List.of());
+
+        // When
+        sweeper(1, 2).sweep();
+
+        // Then
+        verify(jdbcTemplate, times(2)).query(eq(StaleEventSweeper.SCAN_SQL), any(RowMapper.class), any(Object[].class));
+        assertThat(meterRegistry.get("webhook.sweeper.backlog").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    void requeue_shouldOnlyConsiderEventsWhoseFanOutNeverReachedTheBroker() {
+        // When & Then
+        assertThat(StaleEventSweeper.REQUEUE_SQL).contains("e.fanout_published_at IS NULL");
+        assertThat(StaleEventSweeper.RESET_OUTSTANDING_SQL).contains("fanout_published_at = ?");
+    }
+
+    @Test
+    void sweep_shouldDoNothingOutsidePostgres() {
+        // Given
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("H2");
+
+        // When
+        sweeper(500, 100).sweep();
+
+        // Then
+        verify(jdbcTemplate, never()).query(anyString(), any(RowMapper.class), any(Object[].class));
+        verifyNoInteractions(deliveryQueue);
+    }
+
+    private StaleEventSweeper sweeper(int batchSize, int maxBatchesPerRun) {
+        return new StaleEventSweeper(jdbcTemplate, routingIndex, deliveryQueue, meterRegistry, true,
+                Duration.ofMinutes(15), Duration.ofHours(24), Duration.ofDays(7), batchSize, maxBatchesPerRun);
+    }
+
+    private double events(String action) {
+        return meterRegistry.get("webhook.sweeper.events").tag("action", action).counter().count();
+    }
+
+    private void givenPostgres() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenRows(String sql, List<Object[]> rows) throws Exception {
+        when(jdbcTemplate.query(eq(sql), any(RowMapper.class), any(Object[].class))).thenAnswer(invocation -> {
+            RowMapper<Object> mapper = invocation.getArgument(1);
+            List<Object> mapped = new ArrayList<>();
+            for (Object[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getObject(1, UUID.class)).thenReturn((UUID) row[0]);
+                when(rs.getTimestamp(2)).thenReturn(Timestamp.valueOf((LocalDateTime) row[1]));
+                lenient().when(rs.getString(3)).thenReturn((String) row[2]);
+                mapped.add(mapper.mapRow(rs, mapped.size()));
+            }
+            return mapped;
+        });
+    }
+}
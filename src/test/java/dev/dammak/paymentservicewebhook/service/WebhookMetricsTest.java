@@ -0,0 +1,97 @@
+package dev.dammak.paymentservicewebhook.service;
+
+import dev.dammak.paymentservicewebhook.config.MetricsConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private WebhookMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        MetricsConfig config = new MetricsConfig();
+        ReflectionTestUtils.setField(config, "maxEventTypes", 2);
+        ReflectionTestUtils.setField(config, "maxEndpointHosts", 2);
+        meterRegistry.config()
+                .meterFilter(config.ingestEventTypeLimit())
+                .meterFilter(config.routingEventTypeLimit())
+                .meterFilter(config.deliveryEndpointHostLimit())
+                .meterFilter(config.retryEndpointHostLimit());
+        metrics = new WebhookMetrics(meterRegistry);
+    }
+
+    @Test
+    void recordDelivery_shouldTagByEndpointHostOutcomeAndAttempt() {
+        // When
+        metrics.recordDelivery("https://shop.example.com/hooks?x=1", WebhookMetrics.OUTCOME_SUCCESS, false, 120);
+        metrics.recordDelivery("https://shop.example.com/other", WebhookMetrics.OUTCOME_HTTP_ERROR, true, 80);
+
+        // Then
+        assertThat(meterRegistry.get("webhook.delivery.duration")
+                .tags("endpoint.host", "shop.example.com", "outcome", "success", "attempt", "first")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("webhook.delivery.duration")
+                .tags("endpoint.host", "shop.example.com", "outcome", "http_error", "attempt", "retry")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordIngest_shouldReportUnknownProvidersAsOther() {
+        // When
+        metrics.recordIngest("Stripe", "charge.succeeded", WebhookMetrics.OUTCOME_SUCCESS, System.nanoTime());
+        metrics.recordIngest("attacker-controlled-path", "charge.succeeded", WebhookMetrics.OUTCOME_ERROR, System.nanoTime());
+
+        // Then
+        assertThat(meterRegistry.get("webhook.ingest.duration").tag("provider", "stripe").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("webhook.ingest.duration").tag("provider", "other").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordDelivery_shouldReportHostsBeyondTheLimitAsOther() {
+        // When
+        metrics.recordDelivery("https://a.example.com", WebhookMetrics.OUTCOME_SUCCESS, false, 10);
+        metrics.recordDelivery("https://b.example.com", WebhookMetrics.OUTCOME_SUCCESS, false, 10);
+        metrics.recordDelivery("https://c.example.com", WebhookMetrics.OUTCOME_SUCCESS, false, 10);
+        metrics.recordDelivery("https://d.example.com", WebhookMetrics.OUTCOME_SUCCESS, false, 10);
+        metrics.recordDelivery("https://a.example.com", WebhookMetrics.OUTCOME_SUCCESS, false, 10);
+
+        // Then
+        assertThat(meterRegistry.find("webhook.delivery.duration").tag("endpoint.host", "c.example.com").timer()).isNull();
+        assertThat(meterRegistry.get("webhook.delivery.duration").tag("endpoint.host", "other").timer().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("webhook.delivery.duration").tag("endpoint.host", "a.example.com").timer().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.find("webhook.delivery.duration").timers()).hasSize(3);
+    }
+
+    @Test
+    void recordDelivery_shouldStopCachingUrlsBeyondTheLimit() {
+        // When
+        for (int i = 0; i < WebhookMetrics.MAX_CACHED_URLS + 10; i++) {
+            metrics.recordDelivery("https://a.example.com/hooks/" + i, WebhookMetrics.OUTCOME_SUCCESS, false, 10);
+        }
+
+        // Then
+        assertThat(metrics.cachedUrls()).isEqualTo(WebhookMetrics.MAX_CACHED_URLS);
+        assertThat(meterRegistry.get("webhook.delivery.duration").tag("endpoint.host", "a.example.com")
+                .timer().count()).isEqualTo(WebhookMetrics.MAX_CACHED_URLS + 10);
+    }
+
+    @Test
+    void deliveryStartedAndFinished_shouldTrackInFlightGauge() {
+        // When
+        metrics.deliveryStarted();
+        metrics.deliveryStarted();
+        metrics.deliveryFinished();
+
+        // Then
+        assertThat(meterRegistry.get("webhook.delivery.inflight").gauge().value()).isEqualTo(1.0);
+    }
+}
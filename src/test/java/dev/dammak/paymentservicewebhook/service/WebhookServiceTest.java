@@ -9,6 +9,7 @@ import dev.dammak.paymentservicewebhook.mapper.WebhookMapper;
 import dev.dammak.paymentservicewebhook.repository.EventSubscriptionRepository;
 import dev.dammak.paymentservicewebhook.repository.MerchantRepository;
 import dev.dammak.paymentservicewebhook.repository.WebhookEndpointRepository;
+import dev.dammak.paymentservicewebhook.routing.EndpointChangedEvent;
 import dev.dammak.paymentservicewebhook.util.TestDataBuilder;
 import org.apache.kafka.common.errors.ResourceNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,6 +19,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -48,6 +50,12 @@ class WebhookServiceTest {
     @Mock
     private WebhookMapper mapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private DeliveryStatisticsAggregator statisticsAggregator;
+
     @InjectMocks
     private WebhookService webhookService;
 
@@ -198,6 +206,7 @@ class WebhookServiceTest {
         assertThat(endpoint.getStatus()).isEqualTo(WebhookEndpoint.WebhookStatus.INACTIVE);
         verify(endpointRepository).findById(endpointId);
         verify(endpointRepository).save(endpoint);
+        verify(eventPublisher).publishEvent(new EndpointChangedEvent(endpointId));
     }
 
     @Test
@@ -245,12 +254,20 @@ class WebhookServiceTest {
         // Set merchant ID to match
         when(endpointRepository.findByIdWithMerchant(endpointId)).thenReturn(Optional.of(endpointWithMerchant));
         when(mapper.toEndpointDTO(endpointWithMerchant)).thenReturn(endpointDTO);
+        WebhookEndpointDTO.WebhookStatisticsDTO statistics = WebhookEndpointDTO.WebhookStatisticsDTO.builder()
+                .totalDeliveries(10L)
+                .successfulDeliveries(9L)
+                .failedDeliveries(1L)
+                .p99LatencyMs(480L)
+                .build();
+        when(statisticsAggregator.getStatistics(endpointId)).thenReturn(statistics);
 
         // When
         WebhookEndpointDTO result = webhookService.getEndpoint(merchantId, endpointId);
 
         // Then
         assertThat(result).isEqualTo(endpointDTO);
+        assertThat(result.getStatistics()).isEqualTo(statistics);
         verify(endpointRepository).findByIdWithMerchant(endpointId);
     }
 
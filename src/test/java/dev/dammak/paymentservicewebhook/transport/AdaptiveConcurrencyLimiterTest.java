@@ -0,0 +1,66 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void tryAcquire_shouldRejectOnceLimitIsReached() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 0.5, 1000);
+
+        // When & Then
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void release_shouldGrowLimitWhileEndpointIsHealthyAndBusy() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 0.5, 1000);
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        limiter.tryAcquire(); // rejected, already at the limit
+
+        // When
+        limiter.release(100, false);
+
+        // Then
+        assertThat(limiter.getLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void release_shouldCutLimitOnErrorsAndSlowResponses() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 10, 0.5, 1000);
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+
+        // When
+        limiter.release(100, true);
+        limiter.release(5000, false);
+
+        // Then
+        assertThat(limiter.getLimit()).isEqualTo(2);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void release_shouldNeverDropBelowMinimum() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 0.5, 1000);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire();
+            limiter.release(100, true);
+        }
+
+        // Then
+        assertThat(limiter.getLimit()).isEqualTo(1);
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+}
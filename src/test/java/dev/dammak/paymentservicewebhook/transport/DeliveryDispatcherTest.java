@@ -0,0 +1,162 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeliveryDispatcherTest {
+
+    @Mock
+    private DeliveryTransport deliveryTransport;
+
+    private DeliveryDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        // One slot per endpoint, two queued deliveries, breaker opens after 2 failed calls out of 2
+        dispatcher = dispatcher(2, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void submit_shouldQueueBehindBusyEndpointWithoutBlockingOthers() {
+        // Given
+        UUID slowEndpoint = UUID.randomUUID();
+        UUID healthyEndpoint = UUID.randomUUID();
+        CompletableFuture<DeliveryResponse> slowResponse = new CompletableFuture<>();
+        DeliveryRequest slow = request("https://slow.example.com");
+        DeliveryRequest healthy = request("https://healthy.example.com");
+        when(deliveryTransport.send(slow)).thenReturn(slowResponse);
+        when(deliveryTransport.send(healthy)).thenReturn(CompletableFuture.completedFuture(ok()));
+
+        // When
+        CompletableFuture<DeliveryResponse> first = dispatcher.submit(slowEndpoint, slow);
+        CompletableFuture<DeliveryResponse> queued = dispatcher.submit(slowEndpoint, slow);
+        CompletableFuture<DeliveryResponse> other = dispatcher.submit(healthyEndpoint, healthy);
+
+        // Then
+        assertThat(other).isCompleted();
+        assertThat(first).isNotDone();
+        assertThat(queued).isNotDone();
+        verify(deliveryTransport, times(1)).send(slow);
+
+        slowResponse.complete(ok());
+        assertThat(first).isCompleted();
+        verify(deliveryTransport, times(2)).send(slow);
+    }
+
+    @Test
+    void submit_shouldRejectWhenEndpointQueueIsFull() {
+        // Given
+        UUID endpointId = UUID.randomUUID();
+        when(deliveryTransport.send(any())).thenReturn(new CompletableFuture<>());
+        dispatcher.submit(endpointId, request("https://slow.example.com")); // in flight
+        dispatcher.submit(endpointId, request("https://slow.example.com")); // queued
+        dispatcher.submit(endpointId, request("https://slow.example.com")); // queued
+
+        // When
+        CompletableFuture<DeliveryResponse> rejected = dispatcher.submit(endpointId, request("https://slow.example.com"));
+
+        // Then
+        assertThatThrownBy(rejected::join)
+                .isInstanceOf(CompletionException.class)
+                .cause()
+                .isInstanceOf(EndpointRejectedException.class)
+                .extracting("retryAfter").isEqualTo(Duration.ofMillis(5000));
+    }
+
+    @Test
+    void submit_shouldOpenBreakerOnlyForFailingEndpoint() {
+        // Given
+        UUID failingEndpoint = UUID.randomUUID();
+        UUID healthyEndpoint = UUID.randomUUID();
+        DeliveryRequest failing = request("https://failing.example.com");
+        DeliveryRequest healthy = request("https://healthy.example.com");
+        when(deliveryTransport.send(failing))
+                .thenReturn(CompletableFuture.completedFuture(DeliveryResponse.builder().statusCode(503).build()));
+        when(deliveryTransport.send(healthy)).thenReturn(CompletableFuture.completedFuture(ok()));
+        dispatcher.submit(failingEndpoint, failing).join();
+        dispatcher.submit(failingEndpoint, failing).join();
+
+        // When
+        CompletableFuture<DeliveryResponse> rejected = dispatcher.submit(failingEndpoint, failing);
+        CompletableFuture<DeliveryResponse> delivered = dispatcher.submit(healthyEndpoint, healthy);
+
+        // Then
+        assertThatThrownBy(rejected::join)
+                .hasCauseInstanceOf(EndpointRejectedException.class)
+                .hasRootCauseInstanceOf(CallNotPermittedException.class);
+        assertThat(delivered.join().isSuccessful()).isTrue();
+        verify(deliveryTransport, times(2)).send(failing);
+    }
+
+    @Test
+    void submit_shouldDrainResponsesThatCompleteSynchronouslyWithoutRecursing() {
+        // Given
+        DeliveryDispatcher deepQueue = dispatcher(50_000, Duration.ofMinutes(10));
+        UUID endpointId = UUID.randomUUID();
+        DeliveryRequest blocked = request("https://merchant.example.com/first");
+        DeliveryRequest immediate = request("https://merchant.example.com");
+        CompletableFuture<DeliveryResponse> firstResponse = new CompletableFuture<>();
+        when(deliveryTransport.send(blocked)).thenReturn(firstResponse);
+        when(deliveryTransport.send(immediate)).thenReturn(CompletableFuture.completedFuture(ok()));
+        deepQueue.submit(endpointId, blocked);
+        List<CompletableFuture<DeliveryResponse>> queued = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            queued.add(deepQueue.submit(endpointId, immediate));
+        }
+
+        // When
+        firstResponse.complete(ok());
+
+        // Then
+        assertThat(queued).allSatisfy(delivery -> assertThat(delivery).isCompleted());
+    }
+
+    @Test
+    void evictIdle_shouldDropIdleBulkheadsOnly() {
+        // Given
+        DeliveryDispatcher evicting = dispatcher(2, Duration.ZERO);
+        DeliveryRequest idle = request("https://idle.example.com");
+        DeliveryRequest busy = request("https://busy.example.com");
+        when(deliveryTransport.send(idle)).thenReturn(CompletableFuture.completedFuture(ok()));
+        when(deliveryTransport.send(busy)).thenReturn(new CompletableFuture<>());
+        evicting.submit(UUID.randomUUID(), idle).join();
+        evicting.submit(UUID.randomUUID(), busy);
+
+        // When
+        evicting.evictIdle();
+
+        // Then
+        assertThat(evicting.bulkheadCount()).isEqualTo(1);
+    }
+
+    private DeliveryDispatcher dispatcher(int maxQueued, Duration idleEviction) {
+        return new DeliveryDispatcher(deliveryTransport, new SimpleMeterRegistry(),
+                1, 1, 1, 0.5, 1000, maxQueued, 50, 2, 30000, 5000, idleEviction);
+    }
+
+    private DeliveryRequest request(String url) {
+        return DeliveryRequest.builder().url(url).body(new byte[0]).build();
+    }
+
+    private DeliveryResponse ok() {
+        return DeliveryResponse.builder().statusCode(200).body("ok").build();
+    }
+}
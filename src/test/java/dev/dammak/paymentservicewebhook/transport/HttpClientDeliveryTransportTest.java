@@ -0,0 +1,133 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpClientDeliveryTransportTest {
+
+    private HttpServer server;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicReference<String> receivedBody = new AtomicReference<>();
+    private final AtomicReference<String> receivedSignature = new AtomicReference<>();
+
+    private final HttpClientDeliveryTransport transport =
+            new HttpClientDeliveryTransport(HttpClient.Version.HTTP_1_1, 1000);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/ok", exchange -> {
+            receivedBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            receivedSignature.set(exchange.getRequestHeaders().getFirst("X-Webhook-Signature"));
+            respond(exchange, 200, "ok");
+        });
+        server.createContext("/error", exchange -> respond(exchange, 500, "boom"));
+        server.createContext("/large", exchange -> respond(exchange, 200, "a".repeat(20_000)));
+        server.createContext("/endless", exchange -> respond(exchange, 200, "a".repeat(1_000_000)));
+        server.createContext("/slow", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "late");
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void send_shouldPostTheBodyAndSkipRestrictedHeaders() throws Exception {
+        // When
+        DeliveryResponse response = transport.send(request("/ok", Duration.ofSeconds(5), Map.of(
+                "X-Webhook-Signature", "sha256=abc",
+                "Content-Type", "application/json",
+                "Connection", "close"))).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getBody()).isEqualTo("ok");
+        assertThat(receivedBody.get()).isEqualTo("{\"id\":1}");
+        assertThat(receivedSignature.get()).isEqualTo("sha256=abc");
+    }
+
+    @Test
+    void send_shouldReturnErrorStatusesAsResponses() throws Exception {
+        // When
+        DeliveryResponse response = transport.send(request("/error", Duration.ofSeconds(5), Map.of()))
+                .get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(500);
+        assertThat(response.getBody()).isEqualTo("boom");
+        assertThat(response.isSuccessful()).isFalse();
+    }
+
+    @Test
+    void send_shouldKeepOnlyTheStartOfALargeBody() throws Exception {
+        // When
+        DeliveryResponse large = transport.send(request("/large", Duration.ofSeconds(5), Map.of()))
+                .get(5, TimeUnit.SECONDS);
+        DeliveryResponse endless = transport.send(request("/endless", Duration.ofSeconds(5), Map.of()))
+                .get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(large.getStatusCode()).isEqualTo(200);
+        assertThat(large.getBody()).hasSize(HttpClientDeliveryTransport.MAX_BODY_BYTES);
+        assertThat(endless.getStatusCode()).isEqualTo(200);
+        assertThat(endless.getBody()).hasSize(HttpClientDeliveryTransport.MAX_BODY_BYTES);
+    }
+
+    @Test
+    void send_shouldApplyThePerRequestTimeout() throws Exception {
+        // When
+        CompletableFuture<DeliveryResponse> response = transport.send(request("/slow", Duration.ofMillis(200), Map.of()));
+
+        // Then
+        assertThat(response).failsWithin(5, TimeUnit.SECONDS)
+                .withThrowableOfType(ExecutionException.class)
+                .withCauseInstanceOf(HttpTimeoutException.class);
+    }
+
+    private DeliveryRequest request(String path, Duration timeout, Map<String, String> headers) {
+        return DeliveryRequest.builder()
+                .url("http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort() + path)
+                .headers(headers)
+                .body("{\"id\":1}".getBytes(StandardCharsets.UTF_8))
+                .timeout(timeout)
+                .build();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
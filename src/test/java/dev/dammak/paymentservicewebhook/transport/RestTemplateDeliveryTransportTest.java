@@ -0,0 +1,89 @@
+package dev.dammak.paymentservicewebhook.transport;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+class RestTemplateDeliveryTransportTest {
+
+    private static final String URL = "https://merchant.example.com/webhooks";
+
+    private MockRestServiceServer server;
+    private RestTemplateDeliveryTransport transport;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        transport = new RestTemplateDeliveryTransport(restTemplate);
+    }
+
+    @Test
+    void send_shouldPostTheBodyAndHeaders() {
+        // Given
+        server.expect(requestTo(URL))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(header("X-Webhook-Signature", "sha256=abc"))
+                .andExpect(content().string("{\"id\":1}"))
+                .andRespond(withSuccess("ok", null));
+
+        // When
+        DeliveryResponse response = transport.send(request()).join();
+
+        // Then
+        server.verify();
+        assertThat(response.getStatusCode()).isEqualTo(200);
+        assertThat(response.getBody()).isEqualTo("ok");
+        assertThat(response.isSuccessful()).isTrue();
+    }
+
+    @Test
+    void send_shouldReturnErrorStatusesAsResponses() {
+        // Given
+        server.expect(requestTo(URL)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE).body("down"));
+
+        // When
+        DeliveryResponse response = transport.send(request()).join();
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(503);
+        assertThat(response.getBody()).isEqualTo("down");
+        assertThat(response.isSuccessful()).isFalse();
+    }
+
+    @Test
+    void send_shouldFailTheFutureWhenTheEndpointIsUnreachable() {
+        // Given
+        server.expect(requestTo(URL)).andRespond(withException(new IOException("Connection refused")));
+
+        // When
+        CompletableFuture<DeliveryResponse> response = transport.send(request());
+
+        // Then
+        assertThat(response).isCompletedExceptionally();
+        assertThat(response.exceptionNow()).isInstanceOf(ResourceAccessException.class);
+    }
+
+    private static DeliveryRequest request() {
+        return DeliveryRequest.builder()
+                .url(URL)
+                .headers(Map.of("X-Webhook-Signature", "sha256=abc", "Content-Type", "application/json"))
+                .body("{\"id\":1}".getBytes(StandardCharsets.UTF_8))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+    }
+}